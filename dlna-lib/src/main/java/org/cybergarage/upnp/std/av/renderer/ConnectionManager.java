@@ -10,11 +10,17 @@
 *
 *	02/22/08
 *		- first revision.
+*	10/17/26
+*		- Changed the connections to a ConcurrentHashMap of the IDs and getNextConnectionID() to an AtomicInteger.
 *
 ******************************************************************/
 
 package org.cybergarage.upnp.std.av.renderer;
 
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
 import org.cybergarage.util.*;
 import org.cybergarage.upnp.*;
 import org.cybergarage.upnp.control.*;
@@ -200,7 +206,6 @@ public class ConnectionManager implements ActionListener, QueryListener
 	
 	public ConnectionManager(MediaRenderer render)
 	{
-		maxConnectionID = 0;
 		setMediaRenderer(render);
 	}
 	
@@ -240,65 +245,53 @@ public class ConnectionManager implements ActionListener, QueryListener
 	// ConnectionID
 	////////////////////////////////////////////////
 	
-	private int maxConnectionID;
+	private AtomicInteger maxConnectionID = new AtomicInteger(0);
 	
 	public int getNextConnectionID()
 	{
-		lock();
-		maxConnectionID++;
-		unlock();
-		return maxConnectionID;
+		return maxConnectionID.incrementAndGet();
 	}
 	
 	////////////////////////////////////////////////
 	// ConnectionInfoList
 	////////////////////////////////////////////////
 	
-	// Thanks for Brian Owens (12/02/04)
-	private ConnectionInfoList conInfoList = new ConnectionInfoList();;
+	// Integer of ConnectionID -> ConnectionInfo
+	private ConcurrentHashMap conInfoMap = new ConcurrentHashMap();
 	
+	// Returns a snapshot of the current connections in the order of the IDs.
 	public ConnectionInfoList getConnectionInfoList()
 	{
+		Object conIDs[] = conInfoMap.keySet().toArray();
+		Arrays.sort(conIDs);
+		ConnectionInfoList conInfoList = new ConnectionInfoList();
+		for (int n=0; n<conIDs.length; n++) {
+			ConnectionInfo info = (ConnectionInfo)conInfoMap.get(conIDs[n]);
+			// Removed after the snapshot of the IDs
+			if (info != null)
+				conInfoList.add(info);
+		}
 		return conInfoList;
 	}
 	
 	public ConnectionInfo getConnectionInfo(int id)
 	{
-		int size = conInfoList.size();
-		for (int n=0; n<size; n++) {
-			ConnectionInfo info = conInfoList.getConnectionInfo(n);
-			if (info.getID() == id)
-				return info;
-		}
-		return null;
+		return (ConnectionInfo)conInfoMap.get(Integer.valueOf(id));
 	}
 	
 	public void addConnectionInfo(ConnectionInfo info)
 	{
-		lock();
-		conInfoList.add(info);
-		unlock();
+		conInfoMap.put(Integer.valueOf(info.getID()), info);
 	}
 	
 	public void removeConnectionInfo(int id)
 	{
-		lock();
-		int size = conInfoList.size();
-		for (int n=0; n<size; n++) {
-			ConnectionInfo info = conInfoList.getConnectionInfo(n);
-			if (info.getID() == id) {
-				conInfoList.remove(info);
-				break;
-			}
-		}
-		unlock();
+		conInfoMap.remove(Integer.valueOf(id));
 	}
 	
 	public void removeConnectionInfo(ConnectionInfo info)
 	{
-		lock();
-		conInfoList.remove(info);
-		unlock();
+		conInfoMap.remove(Integer.valueOf(info.getID()), info);
 	}
 	
 	////////////////////////////////////////////////
@@ -332,17 +325,15 @@ public class ConnectionManager implements ActionListener, QueryListener
 	
 	private boolean getCurrentConnectionIDs(Action action)
 	{
-		String conIDs = "";
-		lock();
-		int size = conInfoList.size();
-		for (int n=0; n<size; n++) {
-			ConnectionInfo info = conInfoList.getConnectionInfo(n);
+		Object conIDs[] = conInfoMap.keySet().toArray();
+		Arrays.sort(conIDs);
+		StringBuffer conIDsBuf = new StringBuffer();
+		for (int n=0; n<conIDs.length; n++) {
 			if (0 < n)
-				conIDs += ",";
-			conIDs += Integer.toString(info.getID());
+				conIDsBuf.append(",");
+			conIDsBuf.append(conIDs[n]);
 		}
-		action.getArgument(CONNECTIONIDS).setValue(conIDs);
-		unlock();
+		action.getArgument(CONNECTIONIDS).setValue(conIDsBuf.toString());
 		return true;
 	}
 	
@@ -352,8 +343,7 @@ public class ConnectionManager implements ActionListener, QueryListener
 	
 	private boolean getCurrentConnectionInfo(Action action)
 	{
-		int id = action.getArgument(RCSID).getIntegerValue();
-		lock();
+		int id = action.getArgument(CONNECTIONID).getIntegerValue();
 		ConnectionInfo info = getConnectionInfo(id);
 		if (info != null) { 
 			action.getArgument(RCSID).setValue(info.getRcsID());
@@ -371,7 +361,6 @@ public class ConnectionManager implements ActionListener, QueryListener
 			action.getArgument(DIRECTION).setValue(ConnectionInfo.OUTPUT);
 			action.getArgument(STATUS).setValue(ConnectionInfo.UNKNOWN);
 		}
-		unlock();
 		return true;
 	}
 	
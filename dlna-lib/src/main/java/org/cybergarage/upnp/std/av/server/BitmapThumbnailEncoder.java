@@ -0,0 +1,113 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File: BitmapThumbnailEncoder.java
+*
+*	Revision;
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server;
+
+import java.io.*;
+
+import android.graphics.*;
+
+import org.cybergarage.util.*;
+import org.cybergarage.upnp.std.av.server.object.item.*;
+
+// The thumbnail encoder of Android. ContentDirectory checks BitmapFactory with the class name before creating this class.
+public class BitmapThumbnailEncoder implements ThumbnailEncoder
+{
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+
+	public final static String BITMAP_FACTORY_CLASS = "android.graphics.BitmapFactory";
+	public final static int DEFAULT_QUALITY = 85;
+
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+
+	public BitmapThumbnailEncoder()
+	{
+		setQuality(DEFAULT_QUALITY);
+	}
+
+	////////////////////////////////////////////////
+	// Quality
+	////////////////////////////////////////////////
+
+	private int quality;
+
+	public void setQuality(int quality)
+	{
+		this.quality = quality;
+	}
+
+	public int getQuality()
+	{
+		return quality;
+	}
+
+	////////////////////////////////////////////////
+	// encode
+	////////////////////////////////////////////////
+
+	// Returns the largest power of 2 which decodes the image not smaller than the thumbnail.
+	private static int getSampleSize(int width, int height, int thumbWidth, int thumbHeight)
+	{
+		int sampleSize = 1;
+		while ((thumbWidth * sampleSize * 2) <= width && (thumbHeight * sampleSize * 2) <= height)
+			sampleSize *= 2;
+		return sampleSize;
+	}
+
+	public byte[] encode(byte data[], int maxWidth, int maxHeight)
+	{
+		if (data == null || data.length <= 0)
+			return null;
+
+		BitmapFactory.Options boundsOpts = new BitmapFactory.Options();
+		boundsOpts.inJustDecodeBounds = true;
+		BitmapFactory.decodeByteArray(data, 0, data.length, boundsOpts);
+		if (boundsOpts.outWidth <= 0 || boundsOpts.outHeight <= 0)
+			return null;
+		int thumbSize[] = ItemNode.getThumbnailResolution(boundsOpts.outWidth, boundsOpts.outHeight, maxWidth, maxHeight);
+
+		// The full size bitmap isn't allocated with inSampleSize.
+		BitmapFactory.Options decodeOpts = new BitmapFactory.Options();
+		decodeOpts.inSampleSize = getSampleSize(boundsOpts.outWidth, boundsOpts.outHeight, thumbSize[0], thumbSize[1]);
+		Bitmap bitmap = null;
+		Bitmap thumbBitmap = null;
+		try {
+			bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, decodeOpts);
+			if (bitmap == null)
+				return null;
+			thumbBitmap = bitmap;
+			if (bitmap.getWidth() != thumbSize[0] || bitmap.getHeight() != thumbSize[1])
+				thumbBitmap = Bitmap.createScaledBitmap(bitmap, thumbSize[0], thumbSize[1], true);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			if (thumbBitmap.compress(Bitmap.CompressFormat.JPEG, quality, out) == false)
+				return null;
+			return out.toByteArray();
+		}
+		catch (OutOfMemoryError e) {
+			Debug.warning("Thumbnail can't be decoded : " + boundsOpts.outWidth + "x" + boundsOpts.outHeight);
+			return null;
+		}
+		finally {
+			if (thumbBitmap != null && thumbBitmap != bitmap)
+				thumbBitmap.recycle();
+			if (bitmap != null)
+				bitmap.recycle();
+		}
+	}
+}
@@ -0,0 +1,58 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File : ByteRange.java
+*
+*	Revision:
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server;
+
+public class ByteRange
+{
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+	
+	public ByteRange(long firstPos, long lastPos)
+	{
+		this.firstPos = firstPos;
+		this.lastPos = lastPos;
+	}
+
+	////////////////////////////////////////////////
+	// Position
+	////////////////////////////////////////////////
+
+	private long firstPos;
+	private long lastPos;
+	
+	public long getFirstPosition()
+	{
+		return firstPos;
+	}
+	
+	// The last position is inclusive as Content-Range.
+	public long getLastPosition()
+	{
+		return lastPos;
+	}
+	
+	public long getLength()
+	{
+		return lastPos - firstPos + 1;
+	}
+
+	// Returns the value of Content-Range such as "bytes 0-499/1234".
+	public String getContentRange(long instanceLen)
+	{
+		return "bytes " + Long.toString(firstPos) + "-" + Long.toString(lastPos) + "/" + Long.toString(instanceLen);
+	}
+}
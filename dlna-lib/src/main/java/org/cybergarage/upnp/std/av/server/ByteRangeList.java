@@ -0,0 +1,110 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File : ByteRangeList.java
+*
+*	Revision:
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server;
+
+import java.util.*;
+
+public class ByteRangeList extends Vector
+{
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+	
+	public final static String BYTES_UNIT = "bytes";
+	// More ranges are ignored and the whole content is returned.
+	public final static int MAX_RANGES = 32;
+	
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+	
+	public ByteRangeList() 
+	{
+	}
+	
+	////////////////////////////////////////////////
+	// Methods
+	////////////////////////////////////////////////
+	
+	public ByteRange getByteRange(int n)
+	{
+		return (ByteRange)get(n);
+	}
+
+	////////////////////////////////////////////////
+	// parse
+	////////////////////////////////////////////////
+	
+	// Parses the Range header such as "bytes=0-499,-500,1000-".
+	// Returns null when the header should be ignored, or an empty list when no range is satisfiable.
+	public final static ByteRangeList parse(String value, long contentLen)
+	{
+		if (value == null)
+			return null;
+		value = value.trim();
+		int unitIdx = value.indexOf('=');
+		if (unitIdx < 0)
+			return null;
+		if (value.substring(0, unitIdx).trim().equalsIgnoreCase(BYTES_UNIT) == false)
+			return null;
+		
+		ByteRangeList rangeList = new ByteRangeList();
+		int nRangeSpecs = 0;
+		StringTokenizer rangeTokens = new StringTokenizer(value.substring(unitIdx + 1), ",");
+		try {
+			while (rangeTokens.hasMoreTokens() == true) {
+				String rangeSpec = rangeTokens.nextToken().trim();
+				if (rangeSpec.length() <= 0)
+					continue;
+				nRangeSpecs++;
+				int idx = rangeSpec.indexOf('-');
+				if (idx < 0)
+					return null;
+				String firstStr = rangeSpec.substring(0, idx).trim();
+				String lastStr = rangeSpec.substring(idx + 1).trim();
+				long firstPos;
+				long lastPos;
+				if (firstStr.length() <= 0) {
+					// Suffix range of the last bytes
+					long suffixLen = Long.parseLong(lastStr);
+					if (suffixLen <= 0 || contentLen <= 0)
+						continue;
+					firstPos = Math.max(0, contentLen - suffixLen);
+					lastPos = contentLen - 1;
+				}
+				else {
+					firstPos = Long.parseLong(firstStr);
+					lastPos = (lastStr.length() <= 0) ? Long.MAX_VALUE : Long.parseLong(lastStr);
+					if (firstPos < 0 || lastPos < firstPos)
+						return null;
+					if (contentLen <= firstPos)
+						continue;
+					if (contentLen <= lastPos)
+						lastPos = contentLen - 1;
+				}
+				if (MAX_RANGES <= rangeList.size())
+					return null;
+				rangeList.add(new ByteRange(firstPos, lastPos));
+			}
+		}
+		catch (NumberFormatException e) {
+			return null;
+		}
+		if (nRangeSpecs <= 0)
+			return null;
+		return rangeList;
+	}
+}
@@ -10,11 +10,15 @@
 *
 *	06/19/04
 *		- first revision.
+*	10/17/26
+*		- Added the transferred bytes and the bandwidth limit of the connection.
 *
 ******************************************************************/
 
 package org.cybergarage.upnp.std.av.server;
 
+import java.util.concurrent.atomic.*;
+
 public class ConnectionInfo
 {
 	////////////////////////////////////////////////
@@ -40,6 +44,11 @@ public class ConnectionInfo
 		setPeerConnectionID(-1);
 		setDirection(OUTPUT);
 		setStatus(UNKNOWN);
+		startTime = System.currentTimeMillis();
+		transferredBytes = new AtomicLong(0);
+		mimeClassTransferredBytes = null;
+		tokenBucket = null;
+		bandwidthPriority = false;
 	}
 		
 	////////////////////////////////////////////////
@@ -169,5 +178,77 @@ public class ConnectionInfo
 	{
 		return status;
 	}
+
+	////////////////////////////////////////////////
+	// TransferredBytes
+	////////////////////////////////////////////////
+	
+	private long startTime;
+	private AtomicLong transferredBytes;
+	private AtomicLong mimeClassTransferredBytes;
+
+	public long getStartTime()
+	{
+		return startTime;
+	}
+	
+	public void addTransferredBytes(long nBytes)
+	{
+		transferredBytes.addAndGet(nBytes);
+	}
+	
+	public long getTransferredBytes()
+	{
+		return transferredBytes.get();
+	}
+	
+	// Returns the average bytes per second since the connection is started.
+	public long getTransferRate()
+	{
+		long elapsedTime = System.currentTimeMillis() - startTime;
+		if (elapsedTime <= 0)
+			return 0;
+		return (getTransferredBytes() * 1000) / elapsedTime;
+	}
+	
+	// The counter of ConnectionManager shared by the connections of the same MIME class.
+	public void setMimeClassTransferredBytes(AtomicLong counter)
+	{
+		mimeClassTransferredBytes = counter;
+	}
+	
+	public AtomicLong getMimeClassTransferredBytes()
+	{
+		return mimeClassTransferredBytes;
+	}
+	
+	////////////////////////////////////////////////
+	// Bandwidth
+	////////////////////////////////////////////////
+	
+	private TokenBucket tokenBucket;
+	private boolean bandwidthPriority;
+
+	// The bucket of the connection, or null when the connection isn't limited.
+	public void setTokenBucket(TokenBucket bucket)
+	{
+		tokenBucket = bucket;
+	}
+	
+	public TokenBucket getTokenBucket()
+	{
+		return tokenBucket;
+	}
+	
+	// The priority connection such as audio doesn't wait for the global limit of MediaServer.
+	public void setBandwidthPriority(boolean flag)
+	{
+		bandwidthPriority = flag;
+	}
+	
+	public boolean hasBandwidthPriority()
+	{
+		return bandwidthPriority;
+	}
 }
 
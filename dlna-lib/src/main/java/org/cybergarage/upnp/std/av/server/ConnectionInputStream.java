@@ -0,0 +1,61 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File : ConnectionInputStream.java
+*
+*	Revision:
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server;
+
+import java.io.*;
+
+// The content stream of the items without the file, which is read within the bandwidth of the connection.
+public class ConnectionInputStream extends FilterInputStream
+{
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+	
+	public ConnectionInputStream(InputStream in, ConnectionManager conMan, ConnectionInfo conInfo)
+	{
+		super(in);
+		this.conMan = conMan;
+		this.conInfo = conInfo;
+	}
+	
+	private ConnectionManager conMan;
+	private ConnectionInfo conInfo;
+	
+	public ConnectionInfo getConnectionInfo()
+	{
+		return conInfo;
+	}
+	
+	////////////////////////////////////////////////
+	// read
+	////////////////////////////////////////////////
+	
+	public int read() throws IOException
+	{
+		int b = super.read();
+		if (0 <= b)
+			conMan.transfer(conInfo, 1);
+		return b;
+	}
+	
+	public int read(byte buf[], int off, int len) throws IOException
+	{
+		int readLen = super.read(buf, off, len);
+		if (0 < readLen)
+			conMan.transfer(conInfo, readLen);
+		return readLen;
+	}
+}
@@ -15,11 +15,20 @@
 *	12/02/04
 *		- Brian Owens <brian@b-owens.com>
 *		- Fixed to initialize conInfoList.
+*	10/17/26
+*		- Added the bandwidth limits of MediaServer and each connection by the MIME class, and the transferred bytes.
+*		- Changed GetProtocolInfo to return the cached protocolInfos of ContentDirectory with the DLNA.ORG_PN profiles.
+*		- Changed the connections to a ConcurrentHashMap of the IDs and getNextConnectionID() to an AtomicInteger.
 *
 ******************************************************************/
 
 package org.cybergarage.upnp.std.av.server;
 
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
 import org.cybergarage.util.*;
 import org.cybergarage.upnp.*;
 import org.cybergarage.upnp.control.*;
@@ -65,6 +74,10 @@ public class ConnectionManager implements ActionListener, QueryListener
 	public final static String UNKNOWN = "Unknown";
 	public final static String INPUT = "Input";
 	public final static String OUTPUT = "Output";
+
+	public final static String MIME_CLASS_VIDEO = "video";
+	public final static String MIME_CLASS_AUDIO = "audio";
+	public final static String MIME_CLASS_IMAGE = "image";
 	
 	public final static String SCPD = 
 		"<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
@@ -207,7 +220,12 @@ public class ConnectionManager implements ActionListener, QueryListener
 	public ConnectionManager(MediaServer mserver)
 	{
 		setMediaServer(mserver);
-		maxConnectionID = 0;
+		bandwidthBucket = new TokenBucket();
+		connectionBandwidthLimitMap = new HashMap();
+		bandwidthPriorityClassSet = new HashSet();
+		bandwidthPriorityClassSet.add(MIME_CLASS_AUDIO);
+		transferredBytes = new AtomicLong(0);
+		transferredBytesMap = new ConcurrentHashMap();
 	}
 	
 	////////////////////////////////////////////////
@@ -251,65 +269,189 @@ public class ConnectionManager implements ActionListener, QueryListener
 	// ConnectionID
 	////////////////////////////////////////////////
 	
-	private int maxConnectionID;
+	private AtomicInteger maxConnectionID = new AtomicInteger(0);
 	
 	public int getNextConnectionID()
 	{
-		lock();
-		maxConnectionID++;
-		unlock();
-		return maxConnectionID;
+		return maxConnectionID.incrementAndGet();
 	}
 	
 	////////////////////////////////////////////////
 	// ConnectionInfoList
 	////////////////////////////////////////////////
 	
-	// Thanks for Brian Owens (12/02/04)
-	private ConnectionInfoList conInfoList = new ConnectionInfoList();;
+	// Integer of ConnectionID -> ConnectionInfo
+	private ConcurrentHashMap conInfoMap = new ConcurrentHashMap();
 	
+	// Returns a snapshot of the current connections in the order of the IDs.
 	public ConnectionInfoList getConnectionInfoList()
 	{
+		Object conIDs[] = conInfoMap.keySet().toArray();
+		Arrays.sort(conIDs);
+		ConnectionInfoList conInfoList = new ConnectionInfoList();
+		for (int n=0; n<conIDs.length; n++) {
+			ConnectionInfo info = (ConnectionInfo)conInfoMap.get(conIDs[n]);
+			// Removed after the snapshot of the IDs
+			if (info != null)
+				conInfoList.add(info);
+		}
 		return conInfoList;
 	}
 	
 	public ConnectionInfo getConnectionInfo(int id)
 	{
-		int size = conInfoList.size();
-		for (int n=0; n<size; n++) {
-			ConnectionInfo info = conInfoList.getConnectionInfo(n);
-			if (info.getID() == id)
-				return info;
-		}
-		return null;
+		return (ConnectionInfo)conInfoMap.get(Integer.valueOf(id));
 	}
 	
 	public void addConnectionInfo(ConnectionInfo info)
+	{
+		conInfoMap.put(Integer.valueOf(info.getID()), info);
+	}
+	
+	public void removeConnectionInfo(int id)
+	{
+		conInfoMap.remove(Integer.valueOf(id));
+	}
+	
+	public void removeConnectionInfo(ConnectionInfo info)
+	{
+		conInfoMap.remove(Integer.valueOf(info.getID()), info);
+	}
+
+	////////////////////////////////////////////////
+	// Bandwidth
+	////////////////////////////////////////////////
+	
+	// Whole MediaServer
+	private TokenBucket bandwidthBucket;
+	// MIME class -> Long of the limit of each connection
+	private HashMap connectionBandwidthLimitMap;
+	// MIME classes which don't wait for bandwidthBucket
+	private HashSet bandwidthPriorityClassSet;
+	
+	// Returns the top level type such as "video" of the MIME type or the protocolInfo.
+	public final static String getMimeClass(String mimeType)
+	{
+		if (mimeType == null)
+			return "";
+		String protocolInfo[] = mimeType.split(":");
+		if (3 <= protocolInfo.length)
+			mimeType = protocolInfo[2];
+		int idx = mimeType.indexOf('/');
+		if (idx < 0)
+			return "";
+		return mimeType.substring(0, idx).trim().toLowerCase(Locale.US);
+	}
+	
+	// Bytes per second of all connections, or TokenBucket.UNLIMITED.
+	public void setBandwidthLimit(long bytesPerSec)
+	{
+		bandwidthBucket.setRate(bytesPerSec);
+	}
+	
+	public long getBandwidthLimit()
+	{
+		return bandwidthBucket.getRate();
+	}
+	
+	// Bytes per second of each connection of the MIME class such as MIME_CLASS_VIDEO.
+	public void setConnectionBandwidthLimit(String mimeClass, long bytesPerSec)
 	{
 		lock();
-		conInfoList.add(info);
+		if (0 < bytesPerSec)
+			connectionBandwidthLimitMap.put(mimeClass, Long.valueOf(bytesPerSec));
+		else
+			connectionBandwidthLimitMap.remove(mimeClass);
 		unlock();
 	}
 	
-	public void removeConnectionInfo(int id)
+	public long getConnectionBandwidthLimit(String mimeClass)
 	{
 		lock();
-		int size = conInfoList.size();
-		for (int n=0; n<size; n++) {
-			ConnectionInfo info = conInfoList.getConnectionInfo(n);
-			if (info.getID() == id) {
-				conInfoList.remove(info);
-				break;
-			}
-		}
+		Long limit = (Long)connectionBandwidthLimitMap.get(mimeClass);
 		unlock();
+		return (limit != null) ? limit.longValue() : TokenBucket.UNLIMITED;
 	}
 	
-	public void removeConnectionInfo(ConnectionInfo info)
+	// The connections of the priority MIME class don't wait for the limit of MediaServer, and
+	// the others share the rest. MIME_CLASS_AUDIO is the priority class as default.
+	public void setBandwidthPriority(String mimeClass, boolean flag)
+	{
+		lock();
+		if (flag == true)
+			bandwidthPriorityClassSet.add(mimeClass);
+		else
+			bandwidthPriorityClassSet.remove(mimeClass);
+		unlock();
+	}
+	
+	public boolean hasBandwidthPriority(String mimeClass)
 	{
 		lock();
-		conInfoList.remove(info);
+		boolean hasPriority = bandwidthPriorityClassSet.contains(mimeClass);
 		unlock();
+		return hasPriority;
+	}
+	
+	// Sets the bandwidth limit of the output connection from the MIME class of the protocolInfo.
+	public void prepareBandwidth(ConnectionInfo info)
+	{
+		String mimeClass = getMimeClass(info.getProtocolInfo());
+		long limit = getConnectionBandwidthLimit(mimeClass);
+		info.setTokenBucket((limit != TokenBucket.UNLIMITED) ? new TokenBucket(limit) : null);
+		info.setBandwidthPriority(hasBandwidthPriority(mimeClass));
+		info.setMimeClassTransferredBytes(getTransferredBytesCounter(mimeClass));
+	}
+	
+	////////////////////////////////////////////////
+	// TransferredBytes
+	////////////////////////////////////////////////
+	
+	private AtomicLong transferredBytes;
+	// MIME class -> AtomicLong
+	private ConcurrentHashMap transferredBytesMap;
+	
+	private AtomicLong getTransferredBytesCounter(String mimeClass)
+	{
+		AtomicLong counter = (AtomicLong)transferredBytesMap.get(mimeClass);
+		if (counter != null)
+			return counter;
+		counter = new AtomicLong(0);
+		AtomicLong prevCounter = (AtomicLong)transferredBytesMap.putIfAbsent(mimeClass, counter);
+		return (prevCounter != null) ? prevCounter : counter;
+	}
+	
+	public long getTransferredBytes()
+	{
+		return transferredBytes.get();
+	}
+	
+	public long getTransferredBytes(String mimeClass)
+	{
+		return getTransferredBytesCounter(mimeClass).get();
+	}
+	
+	// Waits for the bandwidth of the connection and MediaServer before the bytes are sent, and counts them.
+	// This is called for every chunk, so the counter of the MIME class is taken from prepareBandwidth().
+	public void transfer(ConnectionInfo info, long nBytes) throws InterruptedIOException
+	{
+		try {
+			TokenBucket conBucket = info.getTokenBucket();
+			if (conBucket != null)
+				conBucket.take(nBytes);
+			bandwidthBucket.take(nBytes, info.hasBandwidthPriority());
+		}
+		catch (InterruptedException e) {
+			throw new InterruptedIOException("Content export is interrupted : " + info.getID());
+		}
+		info.addTransferredBytes(nBytes);
+		transferredBytes.addAndGet(nBytes);
+		AtomicLong mimeClassCounter = info.getMimeClassTransferredBytes();
+		if (mimeClassCounter == null) {
+			mimeClassCounter = getTransferredBytesCounter(getMimeClass(info.getProtocolInfo()));
+			info.setMimeClassTransferredBytes(mimeClassCounter);
+		}
+		mimeClassCounter.addAndGet(nBytes);
 	}
 	
 	////////////////////////////////////////////////
@@ -324,15 +466,7 @@ public class ConnectionManager implements ActionListener, QueryListener
 		
 		if (actionName.equals(GETPROTOCOLINFO) == true) {
 			// Source
-			String sourceValue = "";
-			int mimeTypeCnt = getContentDirectory().getNFormats();
-			for (int n=0; n<mimeTypeCnt; n++) {
-				if (0 < n)
-					sourceValue += ",";
-				Format format = getContentDirectory().getFormat(n);
-				String mimeType = format.getMimeType();
-				sourceValue += HTTP_GET + ":*:" + mimeType + ":*";
-			}
+			String sourceValue = getContentDirectory().getSourceProtocolInfo();
 			action.getArgument(SOURCE).setValue(sourceValue);
 			// Sink
 			action.getArgument(SINK).setValue("");
@@ -365,17 +499,15 @@ public class ConnectionManager implements ActionListener, QueryListener
 	
 	private boolean getCurrentConnectionIDs(Action action)
 	{
-		String conIDs = "";
-		lock();
-		int size = conInfoList.size();
-		for (int n=0; n<size; n++) {
-			ConnectionInfo info = conInfoList.getConnectionInfo(n);
+		Object conIDs[] = conInfoMap.keySet().toArray();
+		Arrays.sort(conIDs);
+		StringBuffer conIDsBuf = new StringBuffer();
+		for (int n=0; n<conIDs.length; n++) {
 			if (0 < n)
-				conIDs += ",";
-			conIDs += Integer.toString(info.getID());
+				conIDsBuf.append(",");
+			conIDsBuf.append(conIDs[n]);
 		}
-		action.getArgument(CONNECTIONIDS).setValue(conIDs);
-		unlock();
+		action.getArgument(CONNECTIONIDS).setValue(conIDsBuf.toString());
 		return true;
 	}
 	
@@ -385,8 +517,7 @@ public class ConnectionManager implements ActionListener, QueryListener
 	
 	private boolean getCurrentConnectionInfo(Action action)
 	{
-		int id = action.getArgument(RCSID).getIntegerValue();
-		lock();
+		int id = action.getArgument(CONNECTIONID).getIntegerValue();
 		ConnectionInfo info = getConnectionInfo(id);
 		if (info != null) {
 			action.getArgument(RCSID).setValue(info.getRcsID());
@@ -404,7 +535,6 @@ public class ConnectionManager implements ActionListener, QueryListener
 			action.getArgument(DIRECTION).setValue(ConnectionInfo.OUTPUT);
 			action.getArgument(STATUS).setValue(ConnectionInfo.UNKNOWN);
 		}
-		unlock();
 		return true;
 	}
 	
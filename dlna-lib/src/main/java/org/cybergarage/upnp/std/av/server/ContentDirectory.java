@@ -26,6 +26,29 @@
 *		- Changed contentExportRequestRecieved() to set the ConnectionInfo.
 *	08/07/04
 *		- Implemented for GetSearchCapabilities request.
+*	10/17/26
+*		- Changed findContentNodeByID() to use a hash index of the content nodes instead of walking the tree.
+*		- Changed sortContentNodeList() to use a stable multi-key sort instead of a selection sort for each key.
+*		- Changed browseDirectChildrenActionReceived() to reuse the cached sorted child nodes of the container.
+*		- Changed Browse and Search to honor the Filter argument.
+*		- Added SearchIndex to answer Search from an inverted index of dc:title, dc:creator, upnp:class and dc:date.
+*		- Changed Search to parse the criteria into a SearchExpression tree and cache the compiled expressions.
+*		- Changed Search to walk the items and containers lazily and stop when the requested page is filled.
+*		- Changed removeDirectory() and removeAllDirectories() to close the removed directories.
+*		- Added reserveContentID() to keep the IDs which are restored from a catalog.
+*		- Added getFormat(FormatHeader) and getFormat(String).
+*		- Added the album art export with ThumbnailCache.
+*		- Changed contentExportRequestRecieved() to return the Range requests of the content files with ContentExportResponse.
+*		- Changed contentExportRequestRecieved() to send the content within the bandwidth of ConnectionManager.
+*		- Changed GetSortCapabilities, GetSearchCapabilities and GetProtocolInfo to return the cached strings which are rebuilt only when the caps or the formats are added.
+*		- Added ContainerUpdateIDs events of the updated containers which are moderated to 0.2 Hz.
+*		- Changed run() to wait for the updates and the next rescan instead of polling SystemUpdateID every two seconds.
+*		- Changed Browse and Search to read the tree in the lock which ContainerNode takes to change the child nodes.
+*		- Changed addDirectory() to keep the ID of the directory which is restored with Directory::restoreID().
+*		- Changed notifyUpdate() to public for the directories which change isPollingRequired().
+*		- Changed Search to return 708 for the invalid SearchCriteria.
+*		- Changed the album art export to encode and cache the JPEG_TN thumbnail with ThumbnailEncoder instead of caching the original image.
+*		- Changed the content export to remove the connection and close the stream in finally.
 *
 ******************************************************************/
 
@@ -33,6 +56,7 @@ package org.cybergarage.upnp.std.av.server;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.atomic.*;
 
 import org.cybergarage.util.*;
 import org.cybergarage.http.*;
@@ -109,7 +133,13 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 	
 	public final static String CONTENT_EXPORT_URI = "/ExportContent";
 	public final static String CONTENT_IMPORT_URI = "/ImportContent";
+	public final static String ALBUMART_EXPORT_URI = "/ExportAlbumArt";
 	public final static String CONTENT_ID = "id";
+	public final static String ALBUMART_THUMBNAIL = "thumbnail";
+	public final static String ALBUMART_THUMBNAIL_CACHE_SUFFIX = ":TN";
+	
+	public final static int INVALID_SEARCH_CRITERIA = 708;
+	public final static String INVALID_SEARCH_CRITERIA_DESCRIPTION = "Unsupported or invalid search criteria";
 	
 	public final static String SCPD = 
 		"<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" + 
@@ -522,15 +552,16 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 	{
 		setMediaServer(mserver);
 		
-		systemUpdateID = 0;
 		maxContentID = 0;
 		
 		setSystemUpdateInterval(DEFAULT_SYSTEMUPDATEID_INTERVAL);
 		setContentUpdateInterval(DEFAULT_CONTENTUPDATE_INTERVAL);
+		setContainerUpdateIDsInterval(DEFAULT_CONTAINERUPDATEIDS_INTERVAL);
 		
 		initRootNode();
 		initSortCaps();
 		initSearchCaps();
+		initThumbnailEncoder();
 	}
 	
 	////////////////////////////////////////////////
@@ -553,6 +584,8 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 	// Mutex
 	////////////////////////////////////////////////
 	
+	// Locks the tree of the content nodes. ContainerNode takes it to add or remove the child nodes,
+	// and Browse and Search hold it while they read the tree. The lock isn't reentrant.
 	private Mutex mutex = new Mutex();
 	
 	public void lock()
@@ -569,16 +602,67 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 	// ContentID
 	////////////////////////////////////////////////
 	
-	private int systemUpdateID;
+	private AtomicInteger systemUpdateID = new AtomicInteger(0);
 	
-	public synchronized void updateSystemUpdateID()
+	public void updateSystemUpdateID()
 	{
-		systemUpdateID++;
+		systemUpdateID.incrementAndGet();
+		notifyUpdate();
 	}
 
-	public synchronized int getSystemUpdateID()
+	public int getSystemUpdateID()
 	{
-		return systemUpdateID;
+		return systemUpdateID.get();
+	}
+	
+	////////////////////////////////////////////////
+	// ContainerUpdateIDs
+	////////////////////////////////////////////////
+	
+	// Containers which are updated since the last ContainerUpdateIDs event.
+	private LinkedHashSet updatedContainerNodeSet = new LinkedHashSet();
+	
+	public void addUpdatedContainerNode(ContainerNode conNode)
+	{
+		synchronized (updatedContainerNodeSet) {
+			updatedContainerNodeSet.add(conNode);
+		}
+		notifyUpdate();
+	}
+	
+	private boolean hasUpdatedContainerNodes()
+	{
+		synchronized (updatedContainerNodeSet) {
+			return (0 < updatedContainerNodeSet.size()) ? true : false;
+		}
+	}
+	
+	// Returns the pairs of the container ID and the update ID such as "1,3,12,5" of the updated containers, and
+	// clears them. Returns null when no container is updated.
+	private String getContainerUpdateIDs()
+	{
+		ContainerNode conNodes[];
+		synchronized (updatedContainerNodeSet) {
+			if (updatedContainerNodeSet.size() <= 0)
+				return null;
+			conNodes = (ContainerNode[])updatedContainerNodeSet.toArray(new ContainerNode[updatedContainerNodeSet.size()]);
+			updatedContainerNodeSet.clear();
+		}
+		StringBuffer idsBuf = new StringBuffer();
+		for (int n=0; n<conNodes.length; n++) {
+			String id = conNodes[n].getID();
+			// The removed containers can't be browsed any more.
+			if (findContentNodeByID(id) != conNodes[n])
+				continue;
+			if (0 < idsBuf.length())
+				idsBuf.append(",");
+			idsBuf.append(id);
+			idsBuf.append(",");
+			idsBuf.append(conNodes[n].getContainerUpdateID());
+		}
+		if (idsBuf.length() <= 0)
+			return null;
+		return idsBuf.toString();
 	}
 	
 	////////////////////////////////////////////////
@@ -598,6 +682,13 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 		return getNextContentID();
 	}
 	
+	// The next IDs are greater than the reserved ID such as an ID restored from a catalog.
+	public synchronized void reserveContentID(int id)
+	{
+		if (maxContentID < id)
+			maxContentID = id;
+	}
+	
 	public int getNextContainerID()
 	{
 		return getNextContentID();
@@ -613,6 +704,7 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 	{
 		rootNode = new RootNode();
 		rootNode.setContentDirectory(this);
+		addContentNodeIndex(rootNode);
 	}
 	
 	public RootNode getRootNode()
@@ -639,6 +731,7 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 	public boolean addPlugIn(Format format)
 	{
 		formatList.add(format);
+		clearSourceProtocolInfo();
 		return true;
 	}
 
@@ -647,6 +740,16 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 		return formatList.getFormat(file);
 	}
 
+	public Format getFormat(FormatHeader header)
+	{
+		return formatList.getFormat(header);
+	}
+
+	public Format getFormat(String mimeType)
+	{
+		return formatList.getFormat(mimeType);
+	}
+
 	public Format getFormat(int n)
 	{
 		return formatList.getFormat(n);
@@ -657,6 +760,41 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 		return formatList.size();
 	}
 	
+	// Source of GetProtocolInfo which is built only when the formats are changed.
+	private String sourceProtocolInfo = null;
+	
+	private synchronized void clearSourceProtocolInfo()
+	{
+		sourceProtocolInfo = null;
+	}
+	
+	public synchronized String getSourceProtocolInfo()
+	{
+		if (sourceProtocolInfo != null)
+			return sourceProtocolInfo;
+		
+		// The protocolInfos of the same MIME types are returned once.
+		LinkedHashSet protocolInfoSet = new LinkedHashSet();
+		int formatCnt = getNFormats();
+		for (int n=0; n<formatCnt; n++) {
+			String mimeType = getFormat(n).getMimeType();
+			String profileIDs[] = DLNAProfile.getProfileIDs(mimeType);
+			for (int i=0; i<profileIDs.length; i++)
+				protocolInfoSet.add(ConnectionManager.HTTP_GET + ":*:" + mimeType + ":" + DLNAProfile.ORG_PN + "=" + profileIDs[i]);
+			protocolInfoSet.add(ConnectionManager.HTTP_GET + ":*:" + mimeType + ":*");
+		}
+		
+		StringBuffer protocolInfoBuf = new StringBuffer();
+		Iterator protocolInfoIt = protocolInfoSet.iterator();
+		while (protocolInfoIt.hasNext() == true) {
+			if (0 < protocolInfoBuf.length())
+				protocolInfoBuf.append(",");
+			protocolInfoBuf.append((String)protocolInfoIt.next());
+		}
+		sourceProtocolInfo = protocolInfoBuf.toString();
+		return sourceProtocolInfo;
+	}
+	
 	/*
 	public String []getFormatMimeTypes()
 	{
@@ -679,6 +817,7 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 	public boolean addSortCap(SortCap sortCap)
 	{
 		sortCapList.add(sortCap);
+		clearSortCapabilities();
 		return true;
 	}
 
@@ -704,18 +843,29 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 		addSortCap(new DCDateSortCap());
 	}
 	
-	private String getSortCapabilities()
+	// SortCaps which is built only when the sort caps are changed.
+	private String sortCapabilities = null;
+	
+	private synchronized void clearSortCapabilities()
+	{
+		sortCapabilities = null;
+	}
+	
+	private synchronized String getSortCapabilities()
 	{
-		String sortCapsStr = "";
+		if (sortCapabilities != null)
+			return sortCapabilities;
+		StringBuffer sortCapsBuf = new StringBuffer();
 		int nSortCaps = getNSortCaps();
 		for (int n=0; n<nSortCaps; n++) {
 			SortCap sortCap = getSortCap(n);
 			String type = sortCap.getType();
 			if (0 < n)
-				sortCapsStr += ",";
-			sortCapsStr += type;
+				sortCapsBuf.append(",");
+			sortCapsBuf.append(type);
 		}
-		return sortCapsStr;
+		sortCapabilities = sortCapsBuf.toString();
+		return sortCapabilities;
 	}
 	
 	////////////////////////////////////////////////
@@ -727,6 +877,7 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 	public boolean addSearchCap(SearchCap searchCap)
 	{
 		searchCapList.add(searchCap);
+		clearSearchCapabilities();
 		return true;
 	}
 
@@ -754,20 +905,34 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 	{
 		addSearchCap(new IdSearchCap());
 		addSearchCap(new TitleSearchCap());
+		addSearchCap(new CreatorSearchCap());
+		addSearchCap(new ClassSearchCap());
+		addSearchCap(new DateSearchCap());
 	}
 	
-	private String getSearchCapabilities()
+	// SearchCaps which is built only when the search caps are changed.
+	private String searchCapabilities = null;
+	
+	private synchronized void clearSearchCapabilities()
 	{
-		String searchCapsStr = "";
+		searchCapabilities = null;
+	}
+	
+	private synchronized String getSearchCapabilities()
+	{
+		if (searchCapabilities != null)
+			return searchCapabilities;
+		StringBuffer searchCapsBuf = new StringBuffer();
 		int nSearchCaps = getNSearchCaps();
 		for (int n=0; n<nSearchCaps; n++) {
 			SearchCap searchCap = getSearchCap(n);
 			String type = searchCap.getPropertyName();
 			if (0 < n)
-				searchCapsStr += ",";
-			searchCapsStr += type;
+				searchCapsBuf.append(",");
+			searchCapsBuf.append(type);
 		}
-		return searchCapsStr;
+		searchCapabilities = searchCapsBuf.toString();
+		return searchCapabilities;
 	}
 	
 	////////////////////////////////////////////////
@@ -784,7 +949,13 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 	public boolean addDirectory(Directory dir)
 	{
 		dir.setContentDirectory(this);
-		dir.setID(getNextContainerID());
+		// Keep the ID of the last run unless it is used by another node.
+		int id = dir.restoreID();
+		if (0 < id && findContentNodeByID(Integer.toString(id)) == null)
+			reserveContentID(id);
+		else
+			id = getNextContainerID();
+		dir.setID(id);
 		dir.updateContentList();
 		dirList.add(dir);
 		rootNode.addContentNode(dir);
@@ -801,7 +972,8 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 		if (dirNode == null)
 			return false;
 		dirList.remove(dirNode);
-		rootNode.removeNode(dirNode);
+		rootNode.removeContentNode(dirNode);
+		dirNode.close();
 
 		//Update SysteUpdateID
 		updateSystemUpdateID();
@@ -811,6 +983,12 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 
 	public boolean removeAllDirectories()
 	{	
+		int dirCnt = dirList.size();
+		for (int n=0; n<dirCnt; n++) {
+			Directory dirNode = dirList.getDirectory(n);
+			rootNode.removeContentNode(dirNode);
+			dirNode.close();
+		}
 		dirList.removeAllElements();
 		return true;
 	}
@@ -825,13 +1003,49 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 		return dirList.getDirectory(n);
 	}
 
+	////////////////////////////////////////////////
+	// ContentNode Index
+	////////////////////////////////////////////////
+	
+	private ContentNodeMap contentNodeMap = new ContentNodeMap();
+	
+	public void addContentNodeIndex(ContentNode node)
+	{
+		contentNodeMap.addContentNode(node);
+		searchIndex.addContentNode(node);
+		if (node.isContainerNode() == false)
+			return;
+		ContainerNode conNode = (ContainerNode)node;
+		int nodeCnt = conNode.getNContentNodes();
+		for (int n=0; n<nodeCnt; n++)
+			addContentNodeIndex(conNode.getContentNode(n));
+	}
+	
+	// Returns true when the node is attached under the root node and indexed.
+	public boolean hasContentNodeIndex(ContentNode node)
+	{
+		return (contentNodeMap.getContentNode(node.getID()) == node) ? true : false;
+	}
+	
+	public void removeContentNodeIndex(ContentNode node)
+	{
+		contentNodeMap.removeContentNode(node);
+		searchIndex.removeContentNode(node);
+		if (node.isContainerNode() == false)
+			return;
+		ContainerNode conNode = (ContainerNode)node;
+		int nodeCnt = conNode.getNContentNodes();
+		for (int n=0; n<nodeCnt; n++)
+			removeContentNodeIndex(conNode.getContentNode(n));
+	}
+	
 	////////////////////////////////////////////////
 	// findContentNodeBy*
 	////////////////////////////////////////////////
 	
 	public ContentNode findContentNodeByID(String id)
 	{
-		return getRootNode().findContentNodeByID(id);		
+		return contentNodeMap.getContentNode(id);
 	}
 
 	////////////////////////////////////////////////
@@ -846,12 +1060,24 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 		
 		if (actionName.equals(BROWSE) == true) {
 			BrowseAction browseAct = new BrowseAction(action);
-			return browseActionReceived(browseAct);
+			lock();
+			try {
+				return browseActionReceived(browseAct);
+			}
+			finally {
+				unlock();
+			}
 		}
 		
 		if (actionName.equals(SEARCH) == true) {
 			SearchAction searchAct = new SearchAction(action);
-			return searchActionReceived(searchAct);
+			lock();
+			try {
+				return searchActionReceived(searchAct);
+			}
+			finally {
+				unlock();
+			}
 		}
 		
 		//@id,@parentID,dc:title,dc:date,upnp:class,res@protocolInfo
@@ -904,6 +1130,7 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 			return false;
 
 		DIDLLite didlLite = new DIDLLite();
+		didlLite.setFilter(action.getFilter());
 		didlLite.setContentNode(node);
 		String result = didlLite.toString();
 		
@@ -922,25 +1149,6 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 	// Browse (DirectChildren/Sort)
 	////////////////////////////////////////////////
 
-	private void sortContentNodeList(ContentNode conNode[], SortCap sortCap, boolean ascSeq)
-	{	
-		// Selection Sort
-		int nConNode = conNode.length;
-		for (int i=0; i<(nConNode-1); i++) {
-			int selIdx = i;
-			for (int j=(i+1); j<nConNode; j++) {
-				int cmpRet = sortCap.compare(conNode[selIdx], conNode[j]);
-				if (ascSeq == true && cmpRet < 0)
-					selIdx = j;
-				if (ascSeq == false && 0 < cmpRet)
-					selIdx = j;
-			}
-			ContentNode conTmp = conNode[i];
-			conNode[i] = conNode[selIdx];
-			conNode[selIdx] = conTmp;
-		}
-	}
-	
 	private SortCriterionList getSortCriteriaArray(String sortCriteria)
 	{
 		SortCriterionList sortCriList = new SortCriterionList();
@@ -952,45 +1160,45 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 		return sortCriList;
 	}
 	
-	private ContentNodeList sortContentNodeList(ContentNodeList contentNodeList, String sortCriteria)
+	private ContentNodeComparator getContentNodeComparator(String sortCriteria)
 	{	
 		if (sortCriteria == null || sortCriteria.length() <= 0)
-			return contentNodeList;
+			return null;
 			
-		int nChildNodes = contentNodeList.size();
-		ContentNode conNode[] = new ContentNode[nChildNodes];
-		for (int n=0; n<nChildNodes; n++)
-			conNode[n] = contentNodeList.getContentNode(n);
-		
 		SortCriterionList sortCritList = getSortCriteriaArray(sortCriteria);
-		int nSortCrit = sortCritList.size();
-		for (int n=0; n<nSortCrit; n++) {
-			String sortStr = sortCritList.getSortCriterion(n);
-			Debug.message("[" + n + "] = " + sortStr);
-			boolean ascSeq = true;
-			char firstSortChar = sortStr.charAt(0);
-			if (firstSortChar == '-')
-				ascSeq = false;
-			if (firstSortChar == '+' || firstSortChar == '-')
-				sortStr = sortStr.substring(1);
-			SortCap sortCap = getSortCap(sortStr);
-			if (sortCap == null)
-				continue;
-			Debug.message("  ascSeq = " + ascSeq);
-			Debug.message("  sortCap = " + sortCap.getType());
-			sortContentNodeList(conNode, sortCap, ascSeq);
-		}
+		ContentNodeComparator conNodeComp = new ContentNodeComparator(sortCritList, sortCapList);
+		if (conNodeComp.getNSortCaps() <= 0)
+			return null;
 		
-		ContentNodeList sortedContentNodeList = new ContentNodeList();
-		for (int n=0; n<nChildNodes; n++)
-			sortedContentNodeList.add(conNode[n]);
-		return sortedContentNodeList;
+		return conNodeComp;
 	}
 	
 	////////////////////////////////////////////////
 	// Browse (DirectChildren)
 	////////////////////////////////////////////////
 	
+	private ContentNode[] getSortedContentNodes(ContainerNode containerNode, String sortCriteria)
+	{
+		ContentNodeComparator conNodeComp = getContentNodeComparator(sortCriteria);
+		if (conNodeComp == null)
+			return null;
+		
+		String normalizedSortCriteria = conNodeComp.getSortCriteria();
+		int updateID = getSystemUpdateID();
+		ContentNode conNode[] = containerNode.getSortedContentNodes(normalizedSortCriteria, updateID);
+		if (conNode != null)
+			return conNode;
+		
+		int nChildNodes = containerNode.getNContentNodes();
+		conNode = new ContentNode[nChildNodes];
+		for (int n=0; n<nChildNodes; n++)
+			conNode[n] = containerNode.getContentNode(n);
+		conNodeComp.sort(conNode);
+		containerNode.setSortedContentNodes(normalizedSortCriteria, updateID, conNode);
+		
+		return conNode;
+	}
+	
 	private boolean browseDirectChildrenActionReceived(BrowseAction action)
 	{
 		String objID = action.getObjectID();
@@ -999,16 +1207,11 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 			return false;
 	
 		ContainerNode containerNode = (ContainerNode)node;
-		ContentNodeList contentNodeList = new ContentNodeList();
-		int nChildNodes = containerNode.getNContentNodes();
-		for (int n=0; n<nChildNodes; n++) {
-			ContentNode cnode = containerNode.getContentNode(n);
-			contentNodeList.add(cnode);
-		}
 
-		// Sort Content Node Lists
+		// Sort Content Nodes
 		String sortCriteria = action.getSortCriteria();
-		ContentNodeList sortedContentNodeList = sortContentNodeList(contentNodeList, sortCriteria);
+		ContentNode sortedContentNode[] = getSortedContentNodes(containerNode, sortCriteria);
+		int nChildNodes = (sortedContentNode != null) ? sortedContentNode.length : containerNode.getNContentNodes();
 			
 		int startingIndex = action.getStartingIndex();
 		if (startingIndex <= 0)
@@ -1018,9 +1221,10 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 			requestedCount = nChildNodes;
 			
 		DIDLLite didlLite = new DIDLLite();
+		didlLite.setFilter(action.getFilter());
 		int numberReturned = 0;
 		for (int n=startingIndex; (n<nChildNodes && numberReturned<requestedCount); n++) {
-			ContentNode cnode = sortedContentNodeList.getContentNode(n);
+			ContentNode cnode = (sortedContentNode != null) ? sortedContentNode[n] : containerNode.getContentNode(n);
 			didlLite.addContentNode(cnode);
 			cnode.setParentID(objID);
 			numberReturned++;
@@ -1039,53 +1243,80 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 	// Search
 	////////////////////////////////////////////////
 
-	private SearchCriteriaList getSearchCriteriaList(String searchStr)
+	public final static int SEARCH_EXPRESSION_CACHE_SIZE = 32;
+	
+	private LinkedHashMap searchExprMap = new LinkedHashMap(SEARCH_EXPRESSION_CACHE_SIZE + 1, 0.75f, true) {
+		protected boolean removeEldestEntry(Map.Entry eldest) {
+			return (SEARCH_EXPRESSION_CACHE_SIZE < size());
+		}
+	};
+	
+	public SearchExpression getSearchExpression(String searchCri)
 	{
-		SearchCriteriaList searchList = new SearchCriteriaList();
-
-		if (searchStr == null)
-			return searchList;
-		if (searchStr.compareTo("*") == 0)
-			return searchList;
-
-		StringTokenizer searchCriTokenizer = new StringTokenizer(searchStr, SearchCriteria.WCHARS);
-			while (searchCriTokenizer.hasMoreTokens() == true) {
-			String prop = searchCriTokenizer.nextToken();
-			if (searchCriTokenizer.hasMoreTokens() == false)
-				break;
-			String binOp = searchCriTokenizer.nextToken();
-			if (searchCriTokenizer.hasMoreTokens() == false)
-				break;
-			String value = searchCriTokenizer.nextToken();
-			value = StringUtil.trim(value, "\"");
-			String logOp = "";
-			if (searchCriTokenizer.hasMoreTokens() == true)
-				logOp = searchCriTokenizer.nextToken();
-			SearchCriteria searchCri = new SearchCriteria();
-			searchCri.setProperty(prop);
-			searchCri.setOperation(binOp);
-			searchCri.setValue(value);
-			searchCri.setLogic(logOp);
-			searchList.add(searchCri);
+		if (searchCri == null)
+			searchCri = "";
+		synchronized (searchExprMap) {
+			SearchExpression searchExpr = (SearchExpression)searchExprMap.get(searchCri);
+			if (searchExpr != null)
+				return searchExpr;
 		}
-
-		return searchList;
+		SearchExpression searchExpr = new SearchCriteriaParser().parse(searchCri);
+		if (searchExpr == null)
+			return null;
+		synchronized (searchExprMap) {
+			searchExprMap.put(searchCri, searchExpr);
+		}
+		return searchExpr;
 	}
 	
-	private int getSearchContentList(ContainerNode node, SearchCriteriaList searchCriList, SearchCapList searchCapList, ContentNodeList contentNodeList)
+	private SearchIndex searchIndex = new SearchIndex();
+	
+	public SearchIndex getSearchIndex()
 	{
-		if (searchCriList.compare(node, searchCapList) == true)
-			contentNodeList.add(node);
-
-		int nChildNodes = node.getNContentNodes();
-		for (int n=0; n<nChildNodes; n++) {
-			ContentNode cnode = node.getContentNode(n);
-			if (cnode.isContainerNode())
-				getSearchContentList((ContainerNode)cnode, searchCriList, searchCapList, contentNodeList);
+		return searchIndex;
+	}
+	
+	public void updateContentNodeIndex(ContentNode node)
+	{
+		searchIndex.updateContentNode(node);
+		// The metadata of the child is changed.
+		org.cybergarage.xml.Node parentNode = node.getParentNode();
+		if (parentNode instanceof ContainerNode)
+			((ContainerNode)parentNode).updateContainerUpdateID();
+	}
+	
+	private boolean isDescendantNode(ContentNode node, ContainerNode conNode)
+	{
+		org.cybergarage.xml.Node parentNode = node.getParentNode();
+		while (parentNode != null) {
+			if (parentNode == conNode)
+				return true;
+			parentNode = parentNode.getParentNode();
 		}
-		return contentNodeList.size();
+		return false;
 	}
-
+	
+	private int countIndexedSearchContentNodes(ContainerNode conNode, BitSet docSet)
+	{
+		int nMatches = 0;
+		// Every indexed node is under the root node, so only the ancestors of the others have to be checked.
+		if (conNode == getRootNode()) {
+			nMatches = docSet.cardinality();
+			int rootDocID = searchIndex.getDocID(conNode);
+			if (0 <= rootDocID && docSet.get(rootDocID) == true)
+				nMatches--;
+			return nMatches;
+		}
+		for (int docID = docSet.nextSetBit(0); 0 <= docID; docID = docSet.nextSetBit(docID + 1)) {
+			ContentNode cnode = searchIndex.getContentNode(docID);
+			if (cnode == null)
+				continue;
+			if (isDescendantNode(cnode, conNode) == true)
+				nMatches++;
+		}
+		return nMatches;
+	}
+	
 	private boolean searchActionReceived(SearchAction action)
 	{
 		String contaierID = action.getContainerID();
@@ -1095,42 +1326,76 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 
 		ContainerNode containerNode = (ContainerNode)node;
 		String searchCriteria = action.getSearchCriteria();
-		SearchCriteriaList searchCriList = getSearchCriteriaList(searchCriteria);
-		SearchCapList searchCapList = getSearchCapList();
-
-		int n;
-		ContentNodeList contentNodeList = new ContentNodeList();
-		int nChildNodes = containerNode.getNContentNodes();
-		for (n=0; n<nChildNodes; n++) {
-			ContentNode cnode = containerNode.getContentNode(n);
-			if (cnode.isContainerNode())
-				getSearchContentList((ContainerNode)cnode, searchCriList, searchCapList, contentNodeList);
+		SearchExpression searchExpr = getSearchExpression(searchCriteria);
+		if (searchExpr == null) {
+			action.setStatus(INVALID_SEARCH_CRITERIA, INVALID_SEARCH_CRITERIA_DESCRIPTION);
+			return false;
 		}
-		nChildNodes = contentNodeList.size();
 
-		// Sort Content Node Lists
-		String sortCriteria = action.getSortCriteria();
-		ContentNodeList sortedContentNodeList = sortContentNodeList(contentNodeList, sortCriteria);
+		// Match the nodes with the index if possible, otherwise compare each node under the container.
+		BitSet docSet = searchExpr.lookup(searchIndex);
+		ContentNodeSearchIterator searchIt;
+		if (docSet != null)
+			searchIt = new ContentNodeSearchIterator(containerNode, docSet, searchIndex);
+		else
+			searchIt = new ContentNodeSearchIterator(containerNode, searchExpr, getSearchCapList());
 
 		int startingIndex = action.getStartingIndex();
 		if (startingIndex <= 0)
 			startingIndex = 0;
 		int requestedCount = action.getRequestedCount();
-		if (requestedCount == 0)
-			requestedCount = nChildNodes;
 
 		DIDLLite didlLite = new DIDLLite();
+		didlLite.setFilter(action.getFilter());
 		int numberReturned = 0;
-		for (n=startingIndex; (n<nChildNodes && numberReturned<requestedCount); n++) {
-			ContentNode cnode = sortedContentNodeList.getContentNode(n);
-			didlLite.addContentNode(cnode);
-			numberReturned++;
+		int totalMatches = 0;
+		
+		String sortCriteria = action.getSortCriteria();
+		ContentNodeComparator conNodeComp = getContentNodeComparator(sortCriteria);
+		if (conNodeComp != null) {
+			// All matched nodes are needed to sort them.
+			ContentNodeList contentNodeList = new ContentNodeList();
+			while (searchIt.hasNext() == true)
+				contentNodeList.add(searchIt.next());
+			totalMatches = contentNodeList.size();
+			ContentNode sortedContentNode[] = new ContentNode[totalMatches];
+			contentNodeList.copyInto(sortedContentNode);
+			conNodeComp.sort(sortedContentNode);
+			for (int n=startingIndex; n<totalMatches; n++) {
+				if (0 < requestedCount && requestedCount <= numberReturned)
+					break;
+				didlLite.addContentNode(sortedContentNode[n]);
+				numberReturned++;
+			}
+		}
+		else {
+			// Stop the traversal as soon as the requested page is filled.
+			while (searchIt.hasNext() == true) {
+				if (0 < requestedCount && requestedCount <= numberReturned)
+					break;
+				ContentNode cnode = searchIt.nextContentNode();
+				totalMatches++;
+				if (totalMatches <= startingIndex)
+					continue;
+				didlLite.addContentNode(cnode);
+				numberReturned++;
+			}
+			if (docSet != null)
+				totalMatches = countIndexedSearchContentNodes(containerNode, docSet);
+			else {
+				// The index can't answer the criteria, so TotalMatches costs the walk of the whole container
+				// and only the DIDL-Lite of the page is saved.
+				while (searchIt.hasNext() == true) {
+					searchIt.next();
+					totalMatches++;
+				}
+			}
 		}
 
 		String result = didlLite.toString();
 		action.setResult(result);
 		action.setNumberReturned(numberReturned);
-		action.setTotalMaches(nChildNodes);
+		action.setTotalMaches(totalMatches);
 		action.setUpdateID(getSystemUpdateID());
 
 		return true;
@@ -1149,6 +1414,19 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 	//	HTTP Server	
 	////////////////////////////////////////////////
 
+	private ConnectionInfo addOutputConnectionInfo(String contentType)
+	{
+		ConnectionManager conMan = getMediaServer().getConnectionManager();
+		int conID = conMan.getNextConnectionID();
+		ConnectionInfo conInfo = new ConnectionInfo(conID);
+		conInfo.setProtocolInfo(contentType);
+		conInfo.setDirection(ConnectionInfo.OUTPUT);
+		conInfo.setStatus(ConnectionInfo.OK);
+		conMan.prepareBandwidth(conInfo);
+		conMan.addConnectionInfo(conInfo);
+		return conInfo;
+	}
+	
 	public void contentExportRequestRecieved(HTTPRequest httpReq)
 	{
 		String uri = httpReq.getURI();
@@ -1192,37 +1470,157 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 
 		long contentLen = itemNode.getContentLength();
 		String contentType = itemNode.getMimeType();
-		InputStream contentIn = itemNode.getContentInputStream();		
+		File contentFile = itemNode.getContentFile();
 		
-		if (contentLen <= 0 || contentType.length() <= 0 || contentIn == null) {
+		if (contentLen <= 0 || contentType.length() <= 0) {
+			httpReq.returnBadRequest();
+			return;
+		}
+
+		// The ranges of the file are read from the positions.
+		if (contentFile != null) {
+			ConnectionManager conMan = getMediaServer().getConnectionManager();
+			ConnectionInfo conInfo = addOutputConnectionInfo(contentType);
+			try {
+				ContentExportResponse contentRes = new ContentExportResponse(contentFile, contentType);
+				contentRes.setConnectionInfo(conMan, conInfo);
+				contentRes.post(httpReq);
+			}
+			finally {
+				conMan.removeConnectionInfo(conInfo);
+			}
+			return;
+		}
+		
+		InputStream contentIn = itemNode.getContentInputStream();		
+		if (contentIn == null) {
 			httpReq.returnBadRequest();
 			return;
 		}
 
 		MediaServer mserver = getMediaServer();
 		ConnectionManager conMan = mserver.getConnectionManager();
-		int conID = conMan.getNextConnectionID();
-		ConnectionInfo conInfo = new ConnectionInfo(conID);
-		conInfo.setProtocolInfo(contentType);
-		conInfo.setDirection(ConnectionInfo.OUTPUT);
-		conInfo.setStatus(ConnectionInfo.OK);
-		conMan.addConnectionInfo(conInfo);
-		
-		// Thanks for Robert Johansson <robert.johansson@kreatel.se>
-		HTTPResponse httpRes = new HTTPResponse();
-		httpRes.setContentType(contentType);
-		httpRes.setStatusCode(HTTPStatus.OK);
-		httpRes.setContentLength(contentLen);
-		httpRes.setContentInputStream(contentIn);
+		ConnectionInfo conInfo = addOutputConnectionInfo(contentType);
+		try {
+			contentIn = new ConnectionInputStream(contentIn, conMan, conInfo);
+			
+			// Thanks for Robert Johansson <robert.johansson@kreatel.se>
+			HTTPResponse httpRes = new HTTPResponse();
+			httpRes.setContentType(contentType);
+			httpRes.setStatusCode(HTTPStatus.OK);
+			httpRes.setContentLength(contentLen);
+			httpRes.setContentInputStream(contentIn);
 
-		httpReq.post(httpRes);
+			httpReq.post(httpRes);
+		}
+		finally {
+			// The connection is removed even when the post throws not to be left in GetCurrentConnectionIDs.
+			try {
+				contentIn.close();
+			}
+			catch (Exception e) {}
+			conMan.removeConnectionInfo(conInfo);
+		}
+	}
+	
+	////////////////////////////////////////////////
+	//	Album Art
+	////////////////////////////////////////////////
 
+	private ThumbnailCache thumbnailCache = null;
+	
+	public void setThumbnailCache(ThumbnailCache cache)
+	{
+		thumbnailCache = cache;
+	}
+	
+	public ThumbnailCache getThumbnailCache()
+	{
+		return thumbnailCache;
+	}
+	
+	private ThumbnailEncoder thumbnailEncoder = null;
+	
+	// BitmapThumbnailEncoder is used on Android, otherwise no thumbnail is created.
+	private void initThumbnailEncoder()
+	{
 		try {
-			contentIn.close();
+			Class.forName(BitmapThumbnailEncoder.BITMAP_FACTORY_CLASS);
+			setThumbnailEncoder(new BitmapThumbnailEncoder());
+		}
+		catch (Throwable e) {
+			setThumbnailEncoder(null);
+		}
+	}
+	
+	// The album arts are published as JPEG_TN with the thumbnails of the encoder. Set it before the directories are added.
+	public void setThumbnailEncoder(ThumbnailEncoder encoder)
+	{
+		thumbnailEncoder = encoder;
+	}
+	
+	public ThumbnailEncoder getThumbnailEncoder()
+	{
+		return thumbnailEncoder;
+	}
+	
+	// Returns the thumbnail which is encoded only once with the cache.
+	private byte[] getAlbumArtThumbnailData(ItemNode itemNode)
+	{
+		ThumbnailEncoder encoder = thumbnailEncoder;
+		if (encoder == null)
+			return null;
+		ThumbnailCache cache = thumbnailCache;
+		String key = itemNode.getAlbumArtCacheKey() + ALBUMART_THUMBNAIL_CACHE_SUFFIX;
+		if (cache != null) {
+			byte data[] = cache.get(key);
+			if (data != null)
+				return data;
+		}
+		byte data[] = encoder.encode(itemNode.getAlbumArtData(), ItemNode.THUMBNAIL_MAX_WIDTH, ItemNode.THUMBNAIL_MAX_HEIGHT);
+		if (cache != null && data != null && 0 < data.length)
+			cache.put(key, data);
+		return data;
+	}
+	
+	public void albumArtExportRequestRecieved(HTTPRequest httpReq)
+	{
+		String uri = httpReq.getURI();
+		if (uri.startsWith(ALBUMART_EXPORT_URI) == false) {
+			httpReq.returnBadRequest();
+			return;
+		}
+
+		String id = httpReq.getParameterList().getValue(CONTENT_ID);
+		ContentNode node = findContentNodeByID(id);
+		if (!(node instanceof ItemNode)) {
+			httpReq.returnBadRequest();
+			return;
 		}
-		catch (Exception e) {}
 		
-		conMan.removeConnectionInfo(conID);
+		ItemNode itemNode = (ItemNode)node;
+		String contentType = itemNode.getAlbumArtMimeType();
+		if (contentType.length() <= 0) {
+			httpReq.returnResponse(HTTPStatus.NOT_FOUND);
+			return;
+		}
+		byte albumArt[];
+		if (httpReq.getParameterList().getParameter(ALBUMART_THUMBNAIL) != null) {
+			contentType = ThumbnailEncoder.MIME_TYPE;
+			albumArt = getAlbumArtThumbnailData(itemNode);
+		}
+		else
+			albumArt = itemNode.getAlbumArtData();
+		if (albumArt == null || albumArt.length <= 0) {
+			httpReq.returnResponse(HTTPStatus.NOT_FOUND);
+			return;
+		}
+		
+		HTTPResponse httpRes = new HTTPResponse();
+		httpRes.setContentType(contentType);
+		httpRes.setStatusCode(HTTPStatus.OK);
+		httpRes.setContent(albumArt);
+		httpReq.post(httpRes);
 	}
 	
 	////////////////////////////////////////////////
@@ -1244,6 +1642,19 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 		return "http://" + getInterfaceAddress() + ":" + getHTTPPort() + CONTENT_EXPORT_URI + "?" + CONTENT_ID + "=" + id;
 	}			
 
+	public String getAlbumArtExportURL(String id)
+	{
+		return "http://" + getInterfaceAddress() + ":" + getHTTPPort() + ALBUMART_EXPORT_URI + "?" + CONTENT_ID + "=" + id;
+	}			
+
+	// Returns the URL of the JPEG_TN thumbnail of the album art, or null when no ThumbnailEncoder is set.
+	public String getAlbumArtThumbnailURL(String id)
+	{
+		if (thumbnailEncoder == null)
+			return null;
+		return getAlbumArtExportURL(id) + "&" + ALBUMART_THUMBNAIL + "=1";
+	}
+
 	public String getContentImportURL(String id)
 	{
 		return "http://" + getInterfaceAddress() + ":" + getHTTPPort() + CONTENT_IMPORT_URI + "?" + CONTENT_ID + "=" + id;
@@ -1255,9 +1666,12 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 
 	private final static int DEFAULT_SYSTEMUPDATEID_INTERVAL = 2000;
 	private final static int DEFAULT_CONTENTUPDATE_INTERVAL = 60000;
+	// ContainerUpdateIDs is moderated to 0.2 Hz.
+	private final static int DEFAULT_CONTAINERUPDATEIDS_INTERVAL = 5000;
 	
 	private long systemUpdateIDInterval;
 	private long contentUpdateInterval;
+	private long containerUpdateIDsInterval;
 	
 	public void setSystemUpdateInterval(long itime)
 	{
@@ -1279,32 +1693,98 @@ public class ContentDirectory extends ThreadCore implements ActionListener, Quer
 		return contentUpdateInterval;
 	}
 	
+	public void setContainerUpdateIDsInterval(long itime)
+	{
+		containerUpdateIDsInterval = itime;
+	}
+	
+	public long getContainerUpdateIDsInterval()
+	{
+		return containerUpdateIDsInterval;
+	}
+	
+	private Object updateLock = new Object();
+	private boolean updateNotified = false;
+	
+	// Wakes up run() to send the events of the updated IDs. The directories call it also when
+	// isPollingRequired() is changed, because run() sleeps without any timer while no directory is polled.
+	public void notifyUpdate()
+	{
+		synchronized (updateLock) {
+			updateNotified = true;
+			updateLock.notifyAll();
+		}
+	}
+	
+	// Waits for notifyUpdate() or the timeout, and returns immediately when it is notified after the last wait.
+	// The timeout is 0 to wait only for notifyUpdate().
+	private void waitUpdate(long timeout) throws InterruptedException
+	{
+		synchronized (updateLock) {
+			if (updateNotified == false)
+				updateLock.wait(timeout);
+			updateNotified = false;
+		}
+	}
+	
+	// Sleeps until an ID is updated or the next rescan, so the idle server doesn't wake up. The events
+	// of the updates are coalesced not to be sent more than once in the intervals.
 	public void run()
 	{
 		MediaServer mserver = getMediaServer();
 		StateVariable varSystemUpdateID = mserver.getStateVariable(SYSTEMUPDATEID);
+		StateVariable varContainerUpdateIDs = mserver.getStateVariable(CONTAINERUPDATEIDS);
 		
 		int lastSystemUpdateID = 0;
+		long lastSystemUpdateIDTime = 0;
 		long lastContentUpdateTime = System.currentTimeMillis();
+		long lastContainerUpdateIDsTime = 0;
 		
 		while (isRunnable() == true) {
-			try {
-				Thread.sleep(getSystemUpdateIDInterval());
-			} catch (InterruptedException e) {}
-
+			long currTime = System.currentTimeMillis();
+			long waitTime = Long.MAX_VALUE;
+			
 			// Update SystemUpdateID
 			int currSystemUpdateID = getSystemUpdateID();
 			if (lastSystemUpdateID != currSystemUpdateID) {
-				varSystemUpdateID.setValue(currSystemUpdateID);
-				lastSystemUpdateID = currSystemUpdateID;
+				long elapsedTime = currTime - lastSystemUpdateIDTime;
+				if (getSystemUpdateIDInterval() <= elapsedTime) {
+					varSystemUpdateID.setValue(currSystemUpdateID);
+					lastSystemUpdateID = currSystemUpdateID;
+					lastSystemUpdateIDTime = currTime;
+				}
+				else
+					waitTime = Math.min(waitTime, getSystemUpdateIDInterval() - elapsedTime);
 			}
 
-			// Update Content Directory			
-			long currTime = System.currentTimeMillis();
-			if (getContentUpdateInterval() < (currTime - lastContentUpdateTime)) {
-				getDirectoryList().update();
-				lastContentUpdateTime = currTime;
+			// Update ContainerUpdateIDs with the containers which are updated since the last event.
+			if (hasUpdatedContainerNodes() == true) {
+				long elapsedTime = currTime - lastContainerUpdateIDsTime;
+				if (getContainerUpdateIDsInterval() <= elapsedTime) {
+					String containerUpdateIDs = getContainerUpdateIDs();
+					if (containerUpdateIDs != null)
+						varContainerUpdateIDs.setValue(containerUpdateIDs);
+					lastContainerUpdateIDsTime = currTime;
+				}
+				else
+					waitTime = Math.min(waitTime, getContainerUpdateIDsInterval() - elapsedTime);
+			}
+
+			// Update Content Directory
+			if (getDirectoryList().isPollingRequired() == true) {
+				long elapsedTime = currTime - lastContentUpdateTime;
+				if (getContentUpdateInterval() <= elapsedTime) {
+					getDirectoryList().update();
+					lastContentUpdateTime = System.currentTimeMillis();
+					// The updated IDs are checked again before waiting.
+					continue;
+				}
+				waitTime = Math.min(waitTime, getContentUpdateInterval() - elapsedTime);
 			}
+			
+			try {
+				waitUpdate((waitTime != Long.MAX_VALUE) ? waitTime : 0);
+			} catch (InterruptedException e) {}
 		}
 	}
 }
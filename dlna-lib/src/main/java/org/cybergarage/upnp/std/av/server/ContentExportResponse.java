@@ -0,0 +1,248 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File : ContentExportResponse.java
+*
+*	Revision:
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+import org.cybergarage.util.*;
+import org.cybergarage.http.*;
+
+// Returns a content file with the Range requests. HTTPRequest.post() skips the input stream
+// to the first position and supports only one range, so the response is written to the socket
+// here and each range is read from the position of the file with a heap buffer.
+//
+// The ranges can't be sent with FileChannel.transferTo() (sendfile(2)). HTTPServer of CyberLink
+// accepts the sockets with a plain ServerSocket, which have no SocketChannel, and Device doesn't
+// allow to replace the server.
+public class ContentExportResponse
+{
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+	
+	public final static String ACCEPT_RANGES = "Accept-Ranges";
+	public final static String MULTIPART_BYTERANGES = "multipart/byteranges";
+	public final static String BOUNDARY_PREFIX = "CyberLinkByteRanges";
+	
+	private final static int BUFFER_SIZE = 64 * 1024;
+	
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+	
+	public ContentExportResponse(File file, String contentType)
+	{
+		contentFile = file;
+		this.contentType = contentType;
+		conMan = null;
+		conInfo = null;
+	}
+	
+	////////////////////////////////////////////////
+	// Member
+	////////////////////////////////////////////////
+	
+	private File contentFile;
+	private String contentType;
+	
+	public File getFile()
+	{
+		return contentFile;
+	}
+	
+	public String getContentType()
+	{
+		return contentType;
+	}
+	
+	////////////////////////////////////////////////
+	// Connection
+	////////////////////////////////////////////////
+	
+	private ConnectionManager conMan;
+	private ConnectionInfo conInfo;
+	
+	// The content is sent within the bandwidth of the connection and counted when it is set.
+	public void setConnectionInfo(ConnectionManager conMan, ConnectionInfo conInfo)
+	{
+		this.conMan = conMan;
+		this.conInfo = conInfo;
+	}
+	
+	public ConnectionInfo getConnectionInfo()
+	{
+		return conInfo;
+	}
+	
+	private void transferred(long nBytes) throws IOException
+	{
+		if (conMan == null || conInfo == null)
+			return;
+		conMan.transfer(conInfo, nBytes);
+	}
+	
+	////////////////////////////////////////////////
+	// Multipart
+	////////////////////////////////////////////////
+	
+	private static String createBoundary()
+	{
+		return BOUNDARY_PREFIX + Long.toHexString(System.currentTimeMillis()) + Integer.toHexString(new Random().nextInt());
+	}
+	
+	private byte[] getPartHeader(String boundary, ByteRange range, long contentLen)
+	{
+		String partHeader = 
+			"--" + boundary + HTTP.CRLF +
+			HTTP.CONTENT_TYPE + ": " + contentType + HTTP.CRLF +
+			HTTP.CONTENT_RANGE + ": " + range.getContentRange(contentLen) + HTTP.CRLF +
+			HTTP.CRLF;
+		return partHeader.getBytes();
+	}
+	
+	private static byte[] getCloseDelimiter(String boundary)
+	{
+		return ("--" + boundary + "--" + HTTP.CRLF).getBytes();
+	}
+	
+	////////////////////////////////////////////////
+	// write
+	////////////////////////////////////////////////
+	
+	private static void writeHeader(OutputStream out, HTTPResponse httpRes) throws IOException
+	{
+		httpRes.setDate(Calendar.getInstance());
+		out.write(httpRes.getHeader().getBytes());
+		out.write(HTTP.CRLF.getBytes());
+		out.flush();
+	}
+	
+	private void writeRange(OutputStream out, RandomAccessFile in, ByteRange range, byte buf[]) throws IOException
+	{
+		in.seek(range.getFirstPosition());
+		long remainLen = range.getLength();
+		while (0 < remainLen) {
+			int readLen = in.read(buf, 0, (int)Math.min(buf.length, remainLen));
+			if (readLen < 0)
+				throw new EOFException("Content is truncated : " + in.getFilePointer());
+			out.write(buf, 0, readLen);
+			remainLen -= readLen;
+			transferred(readLen);
+		}
+	}
+	
+	////////////////////////////////////////////////
+	// post
+	////////////////////////////////////////////////
+	
+	public boolean post(HTTPRequest httpReq)
+	{
+		long contentLen = contentFile.length();
+		ByteRangeList rangeList = ByteRangeList.parse(httpReq.getHeaderValue(HTTP.RANGE), contentLen);
+		
+		HTTPResponse httpRes = new HTTPResponse();
+		httpRes.setHeader(ACCEPT_RANGES, ByteRangeList.BYTES_UNIT);
+		
+		// No satisfiable range
+		if (rangeList != null && rangeList.size() <= 0) {
+			httpRes.setStatusCode(HTTPStatus.INVALID_RANGE);
+			httpRes.setHeader(HTTP.CONTENT_RANGE, "bytes */" + Long.toString(contentLen));
+			httpRes.setContentLength(0);
+			return post(httpReq, httpRes, null, null);
+		}
+		
+		// Whole content
+		if (rangeList == null) {
+			rangeList = new ByteRangeList();
+			if (0 < contentLen)
+				rangeList.add(new ByteRange(0, contentLen - 1));
+			httpRes.setStatusCode(HTTPStatus.OK);
+			httpRes.setContentType(contentType);
+			httpRes.setContentLength(contentLen);
+			return post(httpReq, httpRes, rangeList, null);
+		}
+		
+		httpRes.setStatusCode(HTTPStatus.PARTIAL_CONTENT);
+		
+		// Single range
+		if (rangeList.size() == 1) {
+			ByteRange range = rangeList.getByteRange(0);
+			httpRes.setContentType(contentType);
+			httpRes.setHeader(HTTP.CONTENT_RANGE, range.getContentRange(contentLen));
+			httpRes.setContentLength(range.getLength());
+			return post(httpReq, httpRes, rangeList, null);
+		}
+		
+		// Multiple ranges
+		String boundary = createBoundary();
+		long multipartLen = 0;
+		int nRanges = rangeList.size();
+		for (int n=0; n<nRanges; n++) {
+			ByteRange range = rangeList.getByteRange(n);
+			multipartLen += getPartHeader(boundary, range, contentLen).length + range.getLength() + HTTP.CRLF.length();
+		}
+		multipartLen += getCloseDelimiter(boundary).length;
+		httpRes.setContentType(MULTIPART_BYTERANGES + "; boundary=" + boundary);
+		httpRes.setContentLength(multipartLen);
+		return post(httpReq, httpRes, rangeList, boundary);
+	}
+	
+	private boolean post(HTTPRequest httpReq, HTTPResponse httpRes, ByteRangeList rangeList, String boundary)
+	{
+		RandomAccessFile in = null;
+		try {
+			Socket sock = httpReq.getSocket().getSocket();
+			OutputStream out = sock.getOutputStream();
+			writeHeader(out, httpRes);
+			if (httpReq.isHeadRequest() == true || rangeList == null)
+				return true;
+			
+			long contentLen = contentFile.length();
+			in = new RandomAccessFile(contentFile, "r");
+			byte buf[] = new byte[BUFFER_SIZE];
+			int nRanges = rangeList.size();
+			for (int n=0; n<nRanges; n++) {
+				ByteRange range = rangeList.getByteRange(n);
+				if (boundary != null)
+					out.write(getPartHeader(boundary, range, contentLen));
+				writeRange(out, in, range, buf);
+				if (boundary != null)
+					out.write(HTTP.CRLF.getBytes());
+			}
+			if (boundary != null)
+				out.write(getCloseDelimiter(boundary));
+			out.flush();
+		}
+		catch (IOException e) {
+			// The renderers usually close the connection while seeking. The connection is closed
+			// not to be kept alive after a partial response.
+			Debug.warning(e);
+			httpReq.getSocket().close();
+			return false;
+		}
+		finally {
+			if (in != null) {
+				try {
+					in.close();
+				}
+				catch (IOException e) {}
+			}
+		}
+		return true;
+	}
+}
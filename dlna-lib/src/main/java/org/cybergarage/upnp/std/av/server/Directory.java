@@ -10,6 +10,10 @@
 *
 *	11/11/03
 *		- first revision.
+*	10/17/26
+*		- Added close() to release the resources of the removed directory.
+*		- Added isPollingRequired() not to rescan the directories which apply the changes by themselves.
+*		- Added restoreID() to reserve the IDs of the restored contents before the ID of the directory is assigned.
 *
 ******************************************************************/
 
@@ -49,12 +53,39 @@ public abstract class Directory extends ContainerNode
 	}
 	
 
+	////////////////////////////////////////////////
+	// ID
+	////////////////////////////////////////////////
+	
+	// Called by ContentDirectory before the ID of the directory is assigned. A directory which restores the
+	// contents of the last run reserves their IDs here, and returns its ID of the last run to keep it, or -1.
+	public int restoreID()
+	{
+		return -1;
+	}
+
 	////////////////////////////////////////////////
 	// update
 	////////////////////////////////////////////////
 	
 	public abstract boolean update();
 	
+	// Returns false when the directory applies the changes by itself such as with a watcher,
+	// so ContentDirectory doesn't wake up to call update() periodically.
+	public boolean isPollingRequired()
+	{
+		return true;
+	}
+	
+	////////////////////////////////////////////////
+	// close
+	////////////////////////////////////////////////
+	
+	// Releases the resources such as threads when the directory is removed.
+	public void close()
+	{
+	}
+	
 	public void updateContentList()
 	{
 		if (update() == true) {
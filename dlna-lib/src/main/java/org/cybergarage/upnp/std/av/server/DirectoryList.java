@@ -10,6 +10,8 @@
 *
 *	11/11/03
 *		- first revision.
+*	10/17/26
+*		- Added isPollingRequired().
 *
 ******************************************************************/
 
@@ -63,5 +65,16 @@ public class DirectoryList extends Vector
 		}
 	}
 	
+	public boolean isPollingRequired()
+	{
+		int dirCnt = size();
+		for (int n=0; n<dirCnt; n++) {
+			Directory dir = getDirectory(n);
+			if (dir.isPollingRequired() == true)
+				return true;
+		}
+		return false;
+	}
+	
 }
 
@@ -11,6 +11,9 @@
 *	03/30/05
 *		- Added a constructor that read the description from memory instead of the file.
 *		- Changed it as the default constructor.
+*	10/17/26
+*		- Added ExportAlbumArt.
+*		- Added RequestScheduler to bound the control requests and the media streams.
 *
 ******************************************************************/
 
@@ -143,6 +146,7 @@ public class MediaServer extends Device
 	
 	private ConnectionManager conMan;
 	private ContentDirectory conDir;
+	private RequestScheduler reqScheduler = new RequestScheduler();
 	
 	public ConnectionManager getConnectionManager()
 	{
@@ -154,6 +158,11 @@ public class MediaServer extends Device
 		return conDir;
 	}	
 	
+	public RequestScheduler getRequestScheduler()
+	{
+		return reqScheduler;
+	}
+	
 	////////////////////////////////////////////////
 	//	ContentDirectory	
 	////////////////////////////////////////////////
@@ -211,6 +220,22 @@ public class MediaServer extends Device
 	////////////////////////////////////////////////
 	
 	public void httpRequestRecieved(HTTPRequest httpReq)
+	{
+		RequestPool reqPool = getRequestScheduler().getRequestPool(httpReq);
+		if (reqPool.enter() == false) {
+			Debug.message("Request is rejected : " + reqPool);
+			getRequestScheduler().returnServiceUnavailable(httpReq);
+			return;
+		}
+		try {
+			performHttpRequest(httpReq);
+		}
+		finally {
+			reqPool.exit();
+		}
+	}
+	
+	private void performHttpRequest(HTTPRequest httpReq)
 	{
 		String uri = httpReq.getURI();
 		Debug.message("uri = " + uri);
@@ -219,6 +244,11 @@ public class MediaServer extends Device
 			getContentDirectory().contentExportRequestRecieved(httpReq);
 			return;
 		}
+		
+		if (uri.startsWith(ContentDirectory.ALBUMART_EXPORT_URI) == true) {
+			getContentDirectory().albumArtExportRequestRecieved(httpReq);
+			return;
+		}
 			 
 		super.httpRequestRecieved(httpReq);
 	}
@@ -0,0 +1,236 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File : RequestPool.java
+*
+*	Revision:
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server;
+
+// Bounds the requests of a kind which are handled at the same time. The other requests wait in
+// the queue for maxWaitTime at most, and are rejected when the queue is full or the time is over.
+public class RequestPool
+{
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+
+	public final static int UNLIMITED = 0;
+
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+
+	public RequestPool(String name, int maxActiveRequests, int maxQueuedRequests, long maxWaitTime)
+	{
+		this.name = name;
+		this.maxActiveRequests = maxActiveRequests;
+		this.maxQueuedRequests = maxQueuedRequests;
+		this.maxWaitTime = maxWaitTime;
+		nActiveRequests = 0;
+		nQueuedRequests = 0;
+		resetMetrics();
+	}
+
+	////////////////////////////////////////////////
+	// Name
+	////////////////////////////////////////////////
+
+	private String name;
+
+	public String getName()
+	{
+		return name;
+	}
+
+	////////////////////////////////////////////////
+	// Limits
+	////////////////////////////////////////////////
+
+	private int maxActiveRequests;
+	private int maxQueuedRequests;
+	private long maxWaitTime;
+
+	// UNLIMITED handles all requests at once.
+	public synchronized void setMaxActiveRequests(int value)
+	{
+		maxActiveRequests = value;
+		notifyAll();
+	}
+
+	public synchronized int getMaxActiveRequests()
+	{
+		return maxActiveRequests;
+	}
+
+	public synchronized void setMaxQueuedRequests(int value)
+	{
+		maxQueuedRequests = value;
+	}
+
+	public synchronized int getMaxQueuedRequests()
+	{
+		return maxQueuedRequests;
+	}
+
+	// Milliseconds
+	public synchronized void setMaxWaitTime(long value)
+	{
+		maxWaitTime = value;
+	}
+
+	public synchronized long getMaxWaitTime()
+	{
+		return maxWaitTime;
+	}
+
+	////////////////////////////////////////////////
+	// enter/exit
+	////////////////////////////////////////////////
+
+	private int nActiveRequests;
+	private int nQueuedRequests;
+
+	private boolean isFull()
+	{
+		if (maxActiveRequests <= UNLIMITED)
+			return false;
+		return (maxActiveRequests <= nActiveRequests) ? true : false;
+	}
+
+	// Returns false when the request is rejected. Call exit() after the request is handled when true is returned.
+	public synchronized boolean enter()
+	{
+		long startTime = System.currentTimeMillis();
+
+		// The new requests don't pass the queued requests.
+		if (isFull() == false && nQueuedRequests <= 0) {
+			nActiveRequests++;
+			accepted(0);
+			return true;
+		}
+
+		if (maxQueuedRequests <= nQueuedRequests) {
+			nRejectedRequests++;
+			return false;
+		}
+
+		nQueuedRequests++;
+		if (maxQueueDepth < nQueuedRequests)
+			maxQueueDepth = nQueuedRequests;
+		try {
+			long deadline = startTime + maxWaitTime;
+			while (isFull() == true) {
+				long waitTime = deadline - System.currentTimeMillis();
+				if (waitTime <= 0) {
+					nRejectedRequests++;
+					return false;
+				}
+				wait(waitTime);
+			}
+		}
+		catch (InterruptedException e) {
+			nRejectedRequests++;
+			return false;
+		}
+		finally {
+			nQueuedRequests--;
+		}
+
+		nActiveRequests++;
+		accepted(System.currentTimeMillis() - startTime);
+		return true;
+	}
+
+	public synchronized void exit()
+	{
+		nActiveRequests--;
+		notifyAll();
+	}
+
+	////////////////////////////////////////////////
+	// Metrics
+	////////////////////////////////////////////////
+
+	private long nAcceptedRequests;
+	private long nRejectedRequests;
+	private int maxQueueDepth;
+	private long totalWaitTime;
+	private long maxWaitTimeOfRequests;
+
+	private void accepted(long waitTime)
+	{
+		nAcceptedRequests++;
+		totalWaitTime += waitTime;
+		if (maxWaitTimeOfRequests < waitTime)
+			maxWaitTimeOfRequests = waitTime;
+	}
+
+	public synchronized void resetMetrics()
+	{
+		nAcceptedRequests = 0;
+		nRejectedRequests = 0;
+		maxQueueDepth = 0;
+		totalWaitTime = 0;
+		maxWaitTimeOfRequests = 0;
+	}
+
+	public synchronized int getActiveRequests()
+	{
+		return nActiveRequests;
+	}
+
+	// Current queue depth
+	public synchronized int getQueuedRequests()
+	{
+		return nQueuedRequests;
+	}
+
+	public synchronized int getMaxQueueDepth()
+	{
+		return maxQueueDepth;
+	}
+
+	public synchronized long getAcceptedRequests()
+	{
+		return nAcceptedRequests;
+	}
+
+	public synchronized long getRejectedRequests()
+	{
+		return nRejectedRequests;
+	}
+
+	// Milliseconds in the queue of the accepted requests
+	public synchronized long getAverageWaitTime()
+	{
+		if (nAcceptedRequests <= 0)
+			return 0;
+		return totalWaitTime / nAcceptedRequests;
+	}
+
+	public synchronized long getMaxRequestWaitTime()
+	{
+		return maxWaitTimeOfRequests;
+	}
+
+	public synchronized String toString()
+	{
+		return name +
+			" : active=" + nActiveRequests +
+			", queued=" + nQueuedRequests +
+			", maxQueued=" + maxQueueDepth +
+			", accepted=" + nAcceptedRequests +
+			", rejected=" + nRejectedRequests +
+			", avgWait=" + getAverageWaitTime() + "ms" +
+			", maxWait=" + maxWaitTimeOfRequests + "ms";
+	}
+}
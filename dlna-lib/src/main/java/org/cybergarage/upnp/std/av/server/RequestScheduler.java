@@ -0,0 +1,116 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File : RequestScheduler.java
+*
+*	Revision:
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server;
+
+import org.cybergarage.http.*;
+
+// Admits the HTTP requests of MediaServer into the bounded pools of the control requests and
+// the media streams. HTTPServer of CyberLink still creates a thread for each connection, but
+// only the admitted requests work, and the others are answered with 503 and Retry-After at once.
+public class RequestScheduler
+{
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+
+	public final static int SERVICE_UNAVAILABLE = 503;
+	public final static String SERVICE_UNAVAILABLE_PHRASE = "Service Unavailable";
+	public final static String RETRY_AFTER = "Retry-After";
+
+	public final static String CONTROL = "Control";
+	public final static String MEDIA = "Media";
+
+	public final static int DEFAULT_CONTROL_ACTIVE_REQUESTS = 8;
+	public final static int DEFAULT_CONTROL_QUEUED_REQUESTS = 32;
+	public final static long DEFAULT_CONTROL_WAIT_TIME = 5000;
+	public final static int DEFAULT_MEDIA_ACTIVE_REQUESTS = 8;
+	public final static int DEFAULT_MEDIA_QUEUED_REQUESTS = 8;
+	public final static long DEFAULT_MEDIA_WAIT_TIME = 2000;
+	public final static int DEFAULT_RETRY_AFTER = 2;
+
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+
+	public RequestScheduler()
+	{
+		controlPool = new RequestPool(CONTROL, DEFAULT_CONTROL_ACTIVE_REQUESTS, DEFAULT_CONTROL_QUEUED_REQUESTS, DEFAULT_CONTROL_WAIT_TIME);
+		mediaPool = new RequestPool(MEDIA, DEFAULT_MEDIA_ACTIVE_REQUESTS, DEFAULT_MEDIA_QUEUED_REQUESTS, DEFAULT_MEDIA_WAIT_TIME);
+		retryAfter = DEFAULT_RETRY_AFTER;
+	}
+
+	////////////////////////////////////////////////
+	// RequestPool
+	////////////////////////////////////////////////
+
+	private RequestPool controlPool;
+	private RequestPool mediaPool;
+
+	// SOAP actions, descriptions, subscriptions and album arts which are short
+	public RequestPool getControlPool()
+	{
+		return controlPool;
+	}
+
+	// Content exports which keep the pool while the content is streamed
+	public RequestPool getMediaPool()
+	{
+		return mediaPool;
+	}
+
+	public RequestPool getRequestPool(HTTPRequest httpReq)
+	{
+		String uri = httpReq.getURI();
+		if (uri != null && uri.startsWith(ContentDirectory.CONTENT_EXPORT_URI) == true)
+			return mediaPool;
+		return controlPool;
+	}
+
+	////////////////////////////////////////////////
+	// Retry-After
+	////////////////////////////////////////////////
+
+	private int retryAfter;
+
+	// Seconds
+	public void setRetryAfter(int value)
+	{
+		retryAfter = value;
+	}
+
+	public int getRetryAfter()
+	{
+		return retryAfter;
+	}
+
+	// HTTPStatus has no reason phrase of 503.
+	private static class ServiceUnavailableResponse extends HTTPResponse
+	{
+		public String getStatusLineString()
+		{
+			return "HTTP/" + getVersion() + " " + SERVICE_UNAVAILABLE + " " + SERVICE_UNAVAILABLE_PHRASE + HTTP.CRLF;
+		}
+	}
+
+	public boolean returnServiceUnavailable(HTTPRequest httpReq)
+	{
+		HTTPResponse httpRes = new ServiceUnavailableResponse();
+		httpRes.setStatusCode(SERVICE_UNAVAILABLE);
+		httpRes.setHeader(RETRY_AFTER, retryAfter);
+		httpRes.setContentLength(0);
+		return httpReq.post(httpRes);
+	}
+}
@@ -0,0 +1,230 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File: ThumbnailCache.java
+*
+*	Revision;
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server;
+
+import java.io.*;
+import java.security.*;
+import java.util.*;
+
+import org.cybergarage.util.*;
+
+// The thumbnails which are encoded by ThumbnailEncoder such as the JPEG_TN of the album arts are stored
+// as the files in the directory, and the least recently used files are deleted when the total size exceeds the max size.
+public class ThumbnailCache
+{
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+
+	public final static long DEFAULT_MAX_SIZE = 32 * 1024 * 1024;
+	public final static String FILE_SUFFIX = ".thm";
+
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+
+	public ThumbnailCache(File dir, long maxSize)
+	{
+		cacheDir = dir;
+		this.maxSize = maxSize;
+		entryMap = new LinkedHashMap(16, 0.75f, true);
+		totalSize = 0;
+		load();
+	}
+
+	public ThumbnailCache(File dir)
+	{
+		this(dir, DEFAULT_MAX_SIZE);
+	}
+
+	////////////////////////////////////////////////
+	// Member
+	////////////////////////////////////////////////
+
+	private File cacheDir;
+	private long maxSize;
+	// File name -> Length of the file in the access order
+	private LinkedHashMap entryMap;
+	private long totalSize;
+
+	public File getDirectory()
+	{
+		return cacheDir;
+	}
+
+	public long getMaxSize()
+	{
+		return maxSize;
+	}
+
+	public synchronized long getTotalSize()
+	{
+		return totalSize;
+	}
+
+	public synchronized int size()
+	{
+		return entryMap.size();
+	}
+
+	////////////////////////////////////////////////
+	// load
+	////////////////////////////////////////////////
+
+	// The files of the last run are restored in the order of the modified time.
+	private void load()
+	{
+		if (cacheDir.exists() == false)
+			cacheDir.mkdirs();
+		File file[] = cacheDir.listFiles();
+		if (file == null)
+			return;
+		Arrays.sort(file, new Comparator() {
+			public int compare(Object obj1, Object obj2) {
+				long time1 = ((File)obj1).lastModified();
+				long time2 = ((File)obj2).lastModified();
+				if (time1 == time2)
+					return 0;
+				return (time1 < time2) ? -1 : 1;
+			}
+		});
+		for (int n=0; n<file.length; n++) {
+			String name = file[n].getName();
+			if (name.endsWith(FILE_SUFFIX) == false)
+				continue;
+			long len = file[n].length();
+			entryMap.put(name, Long.valueOf(len));
+			totalSize += len;
+		}
+		evict();
+	}
+
+	////////////////////////////////////////////////
+	// Key
+	////////////////////////////////////////////////
+
+	private static String getFileName(String key)
+	{
+		try {
+			MessageDigest md = MessageDigest.getInstance("MD5");
+			byte digest[] = md.digest(key.getBytes("UTF-8"));
+			StringBuffer name = new StringBuffer();
+			for (int n=0; n<digest.length; n++) {
+				String hex = Integer.toHexString(digest[n] & 0xFF);
+				if (hex.length() < 2)
+					name.append('0');
+				name.append(hex);
+			}
+			name.append(FILE_SUFFIX);
+			return name.toString();
+		}
+		catch (Exception e) {
+			return Integer.toHexString(key.hashCode()) + FILE_SUFFIX;
+		}
+	}
+
+	////////////////////////////////////////////////
+	// get/put
+	////////////////////////////////////////////////
+
+	public byte[] get(String key)
+	{
+		String name = getFileName(key);
+		synchronized (this) {
+			if (entryMap.get(name) == null)
+				return null;
+		}
+		File file = new File(cacheDir, name);
+		try {
+			byte data[] = FileUtil.load(file);
+			if (data != null && 0 < data.length)
+				return data;
+		}
+		catch (Exception e) {
+			Debug.warning(e);
+		}
+		remove(name);
+		return null;
+	}
+
+	public boolean put(String key, byte data[])
+	{
+		if (data == null || maxSize < data.length)
+			return false;
+		String name = getFileName(key);
+		File file = new File(cacheDir, name);
+		File tmpFile = new File(cacheDir, name + ".tmp");
+		FileOutputStream out = null;
+		try {
+			out = new FileOutputStream(tmpFile);
+			out.write(data);
+			out.close();
+			out = null;
+			if (file.exists() == true)
+				file.delete();
+			if (tmpFile.renameTo(file) == false)
+				return false;
+		}
+		catch (IOException e) {
+			Debug.warning(e);
+			tmpFile.delete();
+			return false;
+		}
+		finally {
+			if (out != null) {
+				try {
+					out.close();
+				}
+				catch (IOException e) {}
+			}
+		}
+		synchronized (this) {
+			Long oldLen = (Long)entryMap.put(name, Long.valueOf(data.length));
+			if (oldLen != null)
+				totalSize -= oldLen.longValue();
+			totalSize += data.length;
+			evict();
+		}
+		return true;
+	}
+
+	private synchronized void remove(String name)
+	{
+		Long len = (Long)entryMap.remove(name);
+		if (len != null)
+			totalSize -= len.longValue();
+	}
+
+	private synchronized void evict()
+	{
+		Iterator entryIt = entryMap.entrySet().iterator();
+		while (maxSize < totalSize && entryIt.hasNext() == true) {
+			Map.Entry entry = (Map.Entry)entryIt.next();
+			new File(cacheDir, (String)entry.getKey()).delete();
+			totalSize -= ((Long)entry.getValue()).longValue();
+			entryIt.remove();
+		}
+	}
+
+	public synchronized void clear()
+	{
+		Iterator nameIt = entryMap.keySet().iterator();
+		while (nameIt.hasNext() == true)
+			new File(cacheDir, (String)nameIt.next()).delete();
+		entryMap.clear();
+		totalSize = 0;
+	}
+}
@@ -0,0 +1,26 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File: ThumbnailEncoder.java
+*
+*	Revision;
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server;
+
+// Creates the JPEG_TN thumbnail of an image such as an album art.
+public interface ThumbnailEncoder
+{
+	public final static String MIME_TYPE = "image/jpeg";
+
+	// Returns the JPEG of the image which is scaled to fit within maxWidth x maxHeight with
+	// ItemNode.getThumbnailResolution(), or null when the image can't be decoded.
+	public abstract byte[] encode(byte data[], int maxWidth, int maxHeight);
+}
@@ -0,0 +1,101 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File : TokenBucket.java
+*
+*	Revision:
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server;
+
+// Limits the bytes per second of the content export. The tokens are refilled at the rate
+// up to the burst, and a take may leave the bucket in debt which the following takes wait for.
+public class TokenBucket
+{
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+
+	public final static long UNLIMITED = 0;
+
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+
+	public TokenBucket(long bytesPerSec)
+	{
+		setRate(bytesPerSec);
+	}
+
+	public TokenBucket()
+	{
+		this(UNLIMITED);
+	}
+
+	////////////////////////////////////////////////
+	// Rate
+	////////////////////////////////////////////////
+
+	private long rate;
+	private long burst;
+	private double tokens;
+	private long lastRefillTime;
+
+	// The burst is the tokens of a second.
+	public synchronized void setRate(long bytesPerSec)
+	{
+		rate = (0 < bytesPerSec) ? bytesPerSec : UNLIMITED;
+		burst = rate;
+		tokens = burst;
+		lastRefillTime = System.nanoTime();
+		notifyAll();
+	}
+
+	public synchronized long getRate()
+	{
+		return rate;
+	}
+
+	public synchronized boolean isLimited()
+	{
+		return (rate != UNLIMITED) ? true : false;
+	}
+
+	////////////////////////////////////////////////
+	// take
+	////////////////////////////////////////////////
+
+	private void refill()
+	{
+		long now = System.nanoTime();
+		tokens = Math.min(burst, tokens + ((double)(now - lastRefillTime) * rate) / 1000000000);
+		lastRefillTime = now;
+	}
+
+	// Waits until the bucket isn't in debt, and takes the bytes.
+	// The priority takes don't wait and leave the debt to the other takes.
+	public synchronized void take(long nBytes, boolean priority) throws InterruptedException
+	{
+		while (rate != UNLIMITED) {
+			refill();
+			if (priority == true || 0 < tokens) {
+				tokens -= nBytes;
+				return;
+			}
+			long waitTime = (long)((-tokens * 1000) / rate) + 1;
+			wait(waitTime);
+		}
+	}
+
+	public void take(long nBytes) throws InterruptedException
+	{
+		take(nBytes, false);
+	}
+}
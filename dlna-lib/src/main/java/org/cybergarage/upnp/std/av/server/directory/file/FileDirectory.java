@@ -10,17 +10,35 @@
 *
 *	02/10/04
 *		- first revision.
+*	10/17/26
+*		- Changed updateItemNodeList() to update the search index of the modified items.
+*		- Changed update() to diff the files with a map of the last scan instead of searching the items for each file.
+*		- Changed updateItemNode() not to update SystemUpdateID for each item.
+*		- Added the watch mode which applies the changes from FileDirectoryWatcher instead of the periodic rescan.
+*		- Added the parallel scan with FileDirectoryScanner and FileDirectoryScanListener for the progress.
+*		- Added the persistent catalog to restore the items and the IDs without probing the files at the start.
+*		- Changed to read the file header only once to detect the format and extract the metadata.
+*		- Added the album art of the items.
+*		- Changed dc:date to the date of DatedFormatObject such as DateTimeOriginal of EXIF.
+*		- Added isPollingRequired() which returns false while the directory is watched.
+*		- Changed the scan to keep the items under the directories which can't be listed, and to abort when the root directory can't be listed.
+*		- Changed the parallel scan not to hold the lock of ContentDirectory during the whole merge.
+*		- Added restoreID() which keeps the container ID in the catalog and reserves the IDs of the catalog items.
+*		- Added the resolution of the album art to choose the DLNA profile of it, and the JPEG_TN thumbnail of it.
+*		- Changed to wake up ContentDirectory when the watcher is started or stopped, and to poll again when the watcher fails.
 *
 ******************************************************************/
 
 package org.cybergarage.upnp.std.av.server.directory.file;
 
 import java.io.*;
+import java.util.*;
 
 import org.cybergarage.util.*;
 import org.cybergarage.xml.*;
 import org.cybergarage.upnp.std.av.server.*;
 import org.cybergarage.upnp.std.av.server.object.*;
+import org.cybergarage.upnp.std.av.server.object.format.*;
 import org.cybergarage.upnp.std.av.server.object.item.file.*;
 
 public class FileDirectory extends Directory
@@ -55,187 +73,675 @@ public class FileDirectory extends Directory
 	// create/updateItemNode
 	////////////////////////////////////////////////
 	
-	private boolean updateItemNode(FileItemNode itemNode, File file)
+	// Reads only the leading bytes of the album art which is stored in the file as it is, and parses the resolution.
+	private static void setAlbumArtResolution(FileDirectoryCatalog.Record record, File file, AlbumArtFormatObject albumArtObj)
+	{
+		byte data[];
+		int len;
+		if (0 <= record.albumArtOffset) {
+			len = Math.min(record.albumArtLength, FormatHeader.DEFAULT_SIZE);
+			if (len <= 0)
+				return;
+			data = new byte[len];
+			RandomAccessFile in = null;
+			try {
+				in = new RandomAccessFile(file, "r");
+				in.seek(record.albumArtOffset);
+				in.readFully(data);
+			}
+			catch (Exception e) {
+				Debug.warning(e);
+				return;
+			}
+			finally {
+				if (in != null) {
+					try {
+						in.close();
+					}
+					catch (IOException e) {}
+				}
+			}
+		}
+		else {
+			data = albumArtObj.getAlbumArtData();
+			if (data == null)
+				return;
+			len = data.length;
+		}
+		ImageIOFormat imgFormat = ImageIOFormat.createObject(record.albumArtMimeType, data, len);
+		if (imgFormat == null)
+			return;
+		record.albumArtWidth = imgFormat.getWidth();
+		record.albumArtHeight = imgFormat.getHeight();
+	}
+	
+	private FileDirectoryCatalog.Record createItemRecord(File file, long timeStamp, long length, Format format, FormatObject formatObj)
+	{
+		FileDirectoryCatalog.Record record = new FileDirectoryCatalog.Record();
+		record.path = file.getPath();
+		record.timeStamp = timeStamp;
+		record.length = length;
+		record.title = formatObj.getTitle();
+		record.creator = formatObj.getCreator();
+		record.upnpClass = format.getMediaClass();
+		record.mimeType = format.getMimeType();
+		record.attrList = formatObj.getAttributeList();
+		if (formatObj instanceof AlbumArtFormatObject) {
+			AlbumArtFormatObject albumArtObj = (AlbumArtFormatObject)formatObj;
+			if (albumArtObj.hasAlbumArt() == true) {
+				record.albumArtMimeType = albumArtObj.getAlbumArtMimeType();
+				record.albumArtOffset = albumArtObj.getAlbumArtOffset();
+				record.albumArtLength = albumArtObj.getAlbumArtLength();
+				setAlbumArtResolution(record, file, albumArtObj);
+			}
+		}
+		if (formatObj instanceof DatedFormatObject)
+			record.date = ((DatedFormatObject)formatObj).getDateTime();
+		return record;
+	}
+	
+	private boolean updateItemNode(FileItemNode itemNode, File file, FileDirectoryCatalog.Record record)
 	{
-		Format format = getContentDirectory().getFormat(file);
-		if (format == null)
-			return false;
-		FormatObject formatObj = format.createObject(file);
-		
 		// File/TimeStamp
 		itemNode.setFile(file);
 		
 		// Title
-		String title = formatObj.getTitle();
+		String title = record.title;
 		if (0 < title.length())
 			itemNode.setTitle(title);
 			
 		// Creator
-		String creator = formatObj.getCreator();
+		String creator = record.creator;
 		if (0 < creator.length())
 			itemNode.setCreator(creator);
 
 		// Media Class
-		String mediaClass = format.getMediaClass();
+		String mediaClass = record.upnpClass;
 		if (0 < mediaClass.length())
 			itemNode.setUPnPClass(mediaClass);
 
 		// Date
-		long lastModTime = file.lastModified();
-		itemNode.setDate(lastModTime);
+		itemNode.setDate((0 <= record.date) ? record.date : record.timeStamp);
 		
 		// Storatge Used
-		try {
-			long fileSize = file.length();
-			itemNode.setStorageUsed(fileSize);	
-		}
-		catch (Exception e) {
-			Debug.warning(e);
-		}
+		itemNode.setStorageUsed(record.length);	
 		
 		// ProtocolInfo
-		String mimeType = format.getMimeType();
+		String mimeType = record.mimeType;
 		String protocol = ConnectionManager.HTTP_GET + ":*:" + mimeType + ":*";
 		String id = itemNode.getID();
 		String url = getContentDirectory().getContentExportURL(id);
-		AttributeList objAttrList = formatObj.getAttributeList();
+		AttributeList objAttrList = record.attrList;
 		itemNode.setResource(url, protocol, objAttrList);
 		
-		// Update SystemUpdateID
-		getContentDirectory().updateSystemUpdateID();
+		// Album Art
+		itemNode.setAlbumArtSource(record.albumArtMimeType, record.albumArtOffset, record.albumArtLength);
+		if (itemNode.hasAlbumArt() == true)
+			itemNode.setAlbumArt(getContentDirectory().getAlbumArtExportURL(id), record.albumArtMimeType, record.albumArtWidth, record.albumArtHeight, getContentDirectory().getAlbumArtThumbnailURL(id));
+		else
+			itemNode.removeAlbumArt();
+		
+		itemNode.setLastFileStatus(record.timeStamp, record.length);
 		
 		return true;
 	}
 	
-	private FileItemNode createCompareItemNode(File file)
+	private void removeItemNode(FileItemNode itemNode)
 	{
-		Format format = getContentDirectory().getFormat(file);
-		if (format == null)
-			return null;
-		FileItemNode itemNode = new FileItemNode();
-		itemNode.setFile(file);
-		return itemNode;
+		removeContentNode(itemNode);
+		if (catalog != null)
+			catalog.remove(itemNode.getFile());
 	}
 	
 	////////////////////////////////////////////////
-	// FileList
+	// updateItemNodeList
 	////////////////////////////////////////////////
 	
-	private int getDirectoryItemNodeList(File dirFile, FileItemNodeList itemNodeList)
+	// File -> FileItemNode of the last scan.
+	private HashMap itemNodeMap = new HashMap();
+	
+	// Moves the item of the file from itemNodeMap to currItemNodeMap, and returns true when the item is added, updated or removed.
+	private boolean updateFileItemNode(File file, HashMap currItemNodeMap)
+	{
+		long timeStamp = file.lastModified();
+		long length = file.length();
+		FileItemNode itemNode = (FileItemNode)itemNodeMap.get(file);
+		
+		// Not modified, so the format isn't probed again.
+		if (itemNode != null && itemNode.isFileStatusChanged(timeStamp, length) == false) {
+			currItemNodeMap.put(file, itemNodeMap.remove(file));
+			return false;
+		}
+
+		// The header is read once for the detection and the metadata.
+		FormatHeader header = new FormatHeader(file);
+		Format format = getContentDirectory().getFormat(header);
+		FormatObject formatObj = null;
+		if (format != null)
+			formatObj = FormatList.createObject(format, header);
+		
+		return updateFileItemNode(file, timeStamp, length, format, formatObj, currItemNodeMap);
+	}
+	
+	private boolean updateFileItemNode(File file, long timeStamp, long length, Format format, FormatObject formatObj, HashMap currItemNodeMap)
+	{
+		FileItemNode itemNode = (FileItemNode)itemNodeMap.remove(file);
+		
+		if (format == null || formatObj == null) {
+			if (itemNode == null)
+				return false;
+			removeItemNode(itemNode);
+			return true;
+		}
+		
+		FileDirectoryCatalog.Record record = createItemRecord(file, timeStamp, length, format, formatObj);
+		if (itemNode == null) {
+			itemNode = new FileItemNode();
+			itemNode.setID(getContentDirectory().getNextItemID());
+			itemNode.setFormat(format);
+			updateItemNode(itemNode, file, record);
+			addContentNode(itemNode);
+		}
+		else {
+			// The item is modified in the lock as the child nodes of ContainerNode.
+			ContentDirectory cdir = getContentDirectory();
+			cdir.lock();
+			try {
+				itemNode.setFormat(format);
+				updateItemNode(itemNode, file, record);
+			}
+			finally {
+				cdir.unlock();
+			}
+			cdir.updateContentNodeIndex(itemNode);
+		}
+		currItemNodeMap.put(file, itemNode);
+		if (catalog != null) {
+			record.id = itemNode.getID();
+			catalog.put(record);
+		}
+		
+		return true;
+	}
+	
+	// Moves the items under the directory which can't be listed, such as an unmounted volume or a permission
+	// error, from itemNodeMap to currItemNodeMap, so they aren't removed until the directory is listed again.
+	private void keepDirectoryItemNodes(File dirFile, HashMap currItemNodeMap)
+	{
+		if (currItemNodeMap == itemNodeMap)
+			return;
+		String dirPath = dirFile.getPath() + File.separator;
+		Iterator itemFileIt = itemNodeMap.keySet().iterator();
+		while (itemFileIt.hasNext() == true) {
+			File itemFile = (File)itemFileIt.next();
+			if (itemFile.getPath().startsWith(dirPath) == false)
+				continue;
+			currItemNodeMap.put(itemFile, itemNodeMap.get(itemFile));
+			itemFileIt.remove();
+		}
+	}
+	
+	// Returns -1 when the directory can't be listed.
+	private int updateDirectoryItemNodeList(File dirFile, HashMap currItemNodeMap)
 	{
 		File childFile[] = dirFile.listFiles();
+		if (childFile == null) {
+			Debug.warning("Can't list the directory : " + dirFile);
+			keepDirectoryItemNodes(dirFile, currItemNodeMap);
+			return -1;
+		}
+		
+		int updateCnt = 0;
 		int fileCnt = childFile.length;
 		for (int n=0; n<fileCnt; n++) {
 			File file = childFile[n];
 			if (file.isDirectory() == true) {
-				getDirectoryItemNodeList(file, itemNodeList);
+				int dirUpdateCnt = updateDirectoryItemNodeList(file, currItemNodeMap);
+				if (0 < dirUpdateCnt)
+					updateCnt += dirUpdateCnt;
 				continue;
 			}
-			if (file.isFile() == true) {
-				FileItemNode itemNode = createCompareItemNode(file);
-				if (itemNode == null)
-					continue;						
-				itemNodeList.add(itemNode);
+			if (file.isFile() == false)
+				continue;
+
+			if (updateFileItemNode(file, currItemNodeMap) == true)
+				updateCnt++;
+			fileScanned();
+		}
+		
+		return updateCnt;
+	}
+	
+	// Removes the items of the files which weren't found in the scan.
+	private int removeDeletedItemNodes(HashMap currItemNodeMap)
+	{
+		int removedCnt = 0;
+		Iterator itemNodeIt = itemNodeMap.values().iterator();
+		while (itemNodeIt.hasNext() == true) {
+			FileItemNode itemNode = (FileItemNode)itemNodeIt.next();
+			removeItemNode(itemNode);
+			removedCnt++;
+		}
+		itemNodeMap = currItemNodeMap;
+		return removedCnt;
+	}
+	
+	private boolean updateItemNodeList()
+	{
+		postScanStarted();
+		
+		int updateCnt;
+		if (1 < getScanThreadCount())
+			updateCnt = updateItemNodeListInParallel();
+		else {
+			HashMap currItemNodeMap = new HashMap();
+			String path = getPath();
+			File pathFile = new File(path);
+			updateCnt = updateDirectoryItemNodeList(pathFile, currItemNodeMap);
+			if (updateCnt < 0) {
+				// The scan is aborted and all items are kept.
+				itemNodeMap.putAll(currItemNodeMap);
+				postScanFinished();
+				return false;
 			}
+			updateCnt += removeDeletedItemNodes(currItemNodeMap);
 		}
-		return itemNodeList.size();
+		flushCatalog();
+		
+		postScanFinished();
+		
+		return (0 < updateCnt) ? true : false;
 	}
 	
-	private FileItemNodeList getCurrentDirectoryItemNodeList()
+	private int updateItemNodeListInParallel()
 	{
-		FileItemNodeList itemNodeList = new FileItemNodeList();
 		String path = getPath();
 		File pathFile = new File(path);
-		getDirectoryItemNodeList(pathFile, itemNodeList);
-		return itemNodeList;
+		FileDirectoryScanner scanner = new FileDirectoryScanner(this, itemNodeMap, getScanThreadCount());
+		// The scan is aborted and all items are kept when the root directory can't be listed.
+		if (scanner.scan(pathFile) == false)
+			return 0;
+		scannedFileCnt = scanner.getNScannedFiles();
+		
+		int updateCnt = 0;
+		HashMap currItemNodeMap = new HashMap();
+		Iterator fileIt = scanner.getUnchangedFiles().iterator();
+		while (fileIt.hasNext() == true) {
+			File file = (File)fileIt.next();
+			currItemNodeMap.put(file, itemNodeMap.remove(file));
+		}
+		Iterator dirIt = scanner.getUnlistedDirectories().iterator();
+		while (dirIt.hasNext() == true)
+			keepDirectoryItemNodes((File)dirIt.next(), currItemNodeMap);
+		FileDirectoryScanner.Result result[] = scanner.getResults();
+		for (int n=0; n<result.length; n++) {
+			if (updateFileItemNode(result[n].file, result[n].timeStamp, result[n].length, result[n].format, result[n].formatObj, currItemNodeMap) == true)
+				updateCnt++;
+		}
+		updateCnt += removeDeletedItemNodes(currItemNodeMap);
+		
+		return updateCnt;
 	}
-
+	
+	private boolean updateItemNodeList(Set changedFileSet)
+	{
+		int updateCnt = 0;
+		Iterator fileIt = changedFileSet.iterator();
+		while (fileIt.hasNext() == true) {
+			File file = (File)fileIt.next();
+			if (file.isDirectory() == true) {
+				int dirUpdateCnt = updateDirectoryItemNodeList(file, itemNodeMap);
+				if (0 < dirUpdateCnt)
+					updateCnt += dirUpdateCnt;
+				continue;
+			}
+			if (file.isFile() == true) {
+				if (updateFileItemNode(file, itemNodeMap) == true)
+					updateCnt++;
+				continue;
+			}
+			
+			// Deleted file or directory
+			FileItemNode itemNode = (FileItemNode)itemNodeMap.remove(file);
+			if (itemNode != null) {
+				removeItemNode(itemNode);
+				updateCnt++;
+				continue;
+			}
+			String dirPath = file.getPath() + File.separator;
+			Iterator itemFileIt = itemNodeMap.keySet().iterator();
+			while (itemFileIt.hasNext() == true) {
+				File itemFile = (File)itemFileIt.next();
+				if (itemFile.getPath().startsWith(dirPath) == false)
+					continue;
+				removeItemNode((FileItemNode)itemNodeMap.get(itemFile));
+				itemFileIt.remove();
+				updateCnt++;
+			}
+		}
+		flushCatalog();
+		return (0 < updateCnt) ? true : false;
+	}
+	
 	////////////////////////////////////////////////
-	// updateItemNodeList
+	// Catalog
 	////////////////////////////////////////////////
+
+	private FileDirectoryCatalog catalog = null;
+	private boolean catalogRestored = false;
+	// Records which are loaded by restoreID() and restored by the first update()
+	private FileDirectoryCatalog.Record catalogRecord[] = null;
 	
-	private FileItemNode getItemNode(File file)
+	// Set the catalog file before the directory is added to ContentDirectory to restore the items from it.
+	public void setCatalogFile(File file)
 	{
-		int nContents = getNContentNodes();
-		for (int n=0; n<nContents; n++) {
-			ContentNode cnode = getContentNode(n);
-			if ((cnode instanceof FileItemNode) == false)
-				continue;
-			FileItemNode itemNode = (FileItemNode)cnode;
-			if (itemNode.equals(file) == true)
-				return itemNode;
+		synchronized (updateLock) {
+			catalog = (file != null) ? new FileDirectoryCatalog(file) : null;
+			catalogRestored = false;
+			catalogRecord = null;
 		}
-		return null;
 	}
 	
-	private void addItemNode(FileItemNode itemNode)
+	public File getCatalogFile()
 	{
-		addContentNode(itemNode);
+		FileDirectoryCatalog currCatalog = catalog;
+		if (currCatalog == null)
+			return null;
+		return currCatalog.getFile();
 	}
 	
-	private boolean updateItemNodeList(FileItemNode newItemNode)
+	// Loads the catalog, and reserves the IDs of the items not to be taken by the new IDs of this and the following directories.
+	private FileDirectoryCatalog.Record[] loadCatalog()
 	{
-		File newItemNodeFile = newItemNode.getFile();
-		FileItemNode currItemNode = getItemNode(newItemNodeFile);
-		if (currItemNode == null) {
-			int newItemID = getContentDirectory().getNextItemID();
-			newItemNode.setID(newItemID);
-			updateItemNode(newItemNode, newItemNodeFile);
-			addItemNode(newItemNode);
-			return true;
+		FileDirectoryCatalog.Record record[] = catalog.load();
+		ContentDirectory cdir = getContentDirectory();
+		for (int n=0; n<record.length; n++) {
+			try {
+				int id = Integer.parseInt(record[n].id);
+				if (0 < id)
+					cdir.reserveContentID(id);
+			}
+			catch (NumberFormatException e) {}
 		}
-		
-		long currTimeStamp = currItemNode.getFileTimeStamp();
-		long newTimeStamp = newItemNode.getFileTimeStamp();
-		if (currTimeStamp == newTimeStamp)
-			return false;
-			
-		updateItemNode(currItemNode, newItemNodeFile);
-		
-		return true;
+		return record;
 	}
 	
-	private boolean updateItemNodeList()
+	public int restoreID()
+	{
+		synchronized (updateLock) {
+			if (catalog == null || catalogRestored == true)
+				return -1;
+			catalogRecord = loadCatalog();
+			try {
+				return Integer.parseInt(catalog.getContainerID());
+			}
+			catch (NumberFormatException e) {}
+			return -1;
+		}
+	}
+	
+	private int restoreCatalog()
 	{
-		boolean updateFlag = false;
+		catalogRestored = true;
 		
-		// Checking Deleted Items
-		int nContents = getNContentNodes();
-		ContentNode cnode[] = new ContentNode[nContents];
-		for (int n=0; n<nContents; n++)
-			cnode[n] = getContentNode(n);
-		for (int n=0; n<nContents; n++) {
-			if ((cnode[n] instanceof FileItemNode) == false)
-				continue;
-			FileItemNode itemNode = (FileItemNode)cnode[n];
-			File itemFile = itemNode.getFile();
-			if (itemFile == null)
+		FileDirectoryCatalog.Record record[] = (catalogRecord != null) ? catalogRecord : loadCatalog();
+		catalogRecord = null;
+		catalog.setContainerID(getID());
+		Arrays.sort(record, new Comparator() {
+			public int compare(Object obj1, Object obj2) {
+				return ((FileDirectoryCatalog.Record)obj1).path.compareTo(((FileDirectoryCatalog.Record)obj2).path);
+			}
+		});
+		
+		ContentDirectory cdir = getContentDirectory();
+		// The items of this directory aren't indexed until it is attached, so the restored IDs are checked here.
+		HashSet restoredIDSet = new HashSet();
+		int restoredCnt = 0;
+		for (int n=0; n<record.length; n++) {
+			File file = new File(record[n].path);
+			if (itemNodeMap.containsKey(file) == true)
 				continue;
-			if (itemFile.exists() == false) {
-				removeContentNode(cnode[n]);
-				updateFlag = true;
+			
+			// Keep the ID of the last run unless it is used by another node.
+			int id = -1;
+			try {
+				id = Integer.parseInt(record[n].id);
 			}
+			catch (NumberFormatException e) {}
+			if (0 < id && record[n].id.equals(getID()) == false && restoredIDSet.contains(record[n].id) == false && cdir.findContentNodeByID(record[n].id) == null)
+				cdir.reserveContentID(id);
+			else {
+				id = cdir.getNextItemID();
+				record[n].id = Integer.toString(id);
+				catalog.put(record[n]);
+			}
+			
+			FileItemNode itemNode = new FileItemNode();
+			restoredIDSet.add(record[n].id);
+			itemNode.setID(id);
+			itemNode.setFormat(cdir.getFormat(record[n].mimeType));
+			updateItemNode(itemNode, file, record[n]);
+			addContentNode(itemNode);
+			itemNodeMap.put(file, itemNode);
+			restoredCnt++;
 		}
 		
-		// Checking Added or Updated Items
-		FileItemNodeList itemNodeList = getCurrentDirectoryItemNodeList();
-		int itemNodeCnt = itemNodeList.size();
-		for (int n=0; n<itemNodeCnt; n++) {
-			FileItemNode itemNode = itemNodeList.getFileItemNode(n);
-			if (updateItemNodeList(itemNode) == true)
-				updateFlag = true;
+		return restoredCnt;
+	}
+	
+	private void flushCatalog()
+	{
+		if (catalog == null)
+			return;
+		catalog.flush();
+	}
+	
+	////////////////////////////////////////////////
+	// Scan
+	////////////////////////////////////////////////
+
+	public final static int DEFAULT_SCAN_THREAD_COUNT = 1;
+	public final static int SCAN_PROGRESS_INTERVAL = 100;
+	
+	private int scanThreadCount = DEFAULT_SCAN_THREAD_COUNT;
+	private int scannedFileCnt = 0;
+	
+	// Files are listed and probed on the thread pool of the count when it is greater than one.
+	public void setScanThreadCount(int count)
+	{
+		scanThreadCount = (0 < count) ? count : DEFAULT_SCAN_THREAD_COUNT;
+	}
+	
+	public int getScanThreadCount()
+	{
+		return scanThreadCount;
+	}
+	
+	private void fileScanned()
+	{
+		scannedFileCnt++;
+		if ((scannedFileCnt % SCAN_PROGRESS_INTERVAL) == 0)
+			postScanProgressed(scannedFileCnt, scannedFileCnt);
+	}
+	
+	////////////////////////////////////////////////
+	// FileDirectoryScanListener
+	////////////////////////////////////////////////
+
+	private ListenerList scanListenerList = new ListenerList();
+	
+	public void addScanListener(FileDirectoryScanListener listener)
+	{
+		scanListenerList.add(listener);
+	}
+
+	public void removeScanListener(FileDirectoryScanListener listener)
+	{
+		scanListenerList.remove(listener);
+	}
+	
+	private void postScanStarted()
+	{
+		scannedFileCnt = 0;
+		int listenerSize = scanListenerList.size();
+		for (int n=0; n<listenerSize; n++) {
+			FileDirectoryScanListener listener = (FileDirectoryScanListener)scanListenerList.get(n);
+			listener.scanStarted(this);
+		}
+	}
+	
+	void postScanProgressed(int nScannedFiles, int nFoundFiles)
+	{
+		int listenerSize = scanListenerList.size();
+		for (int n=0; n<listenerSize; n++) {
+			FileDirectoryScanListener listener = (FileDirectoryScanListener)scanListenerList.get(n);
+			listener.scanProgressed(this, nScannedFiles, nFoundFiles);
+		}
+	}
+
+	private void postScanFinished()
+	{
+		int listenerSize = scanListenerList.size();
+		for (int n=0; n<listenerSize; n++) {
+			FileDirectoryScanListener listener = (FileDirectoryScanListener)scanListenerList.get(n);
+			listener.scanFinished(this, scannedFileCnt);
+		}
+	}
+	
+	////////////////////////////////////////////////
+	// Watch
+	////////////////////////////////////////////////
+
+	private final static String WATCH_SERVICE_CLASS = "java.nio.file.WatchService";
+	
+	private boolean watchEnabled = false;
+	private FileDirectoryWatcher watcher = null;
+	
+	public final static boolean isWatchSupported()
+	{
+		try {
+			Class.forName(WATCH_SERVICE_CLASS);
+			return true;
+		}
+		catch (Throwable e) {
+		}
+		return false;
+	}
+	
+	// The watch mode is used only when WatchService is available, otherwise the directory is rescanned periodically.
+	public void setWatchEnabled(boolean flag)
+	{
+		synchronized (updateLock) {
+			watchEnabled = flag;
+			if (flag == false)
+				stopWatcher();
 		}
-		
-		return updateFlag;
+	}
+	
+	public boolean isWatchEnabled()
+	{
+		return watchEnabled;
 	}
 
+	public boolean isWatching()
+	{
+		return (watcher != null) ? true : false;
+	}
+	
+	private boolean startWatcher()
+	{
+		if (isWatchSupported() == false)
+			return false;
+		FileDirectoryWatcher newWatcher = new FileDirectoryWatcher(this);
+		if (newWatcher.open() == false)
+			return false;
+		newWatcher.start();
+		watcher = newWatcher;
+		notifyPollingChanged();
+		return true;
+	}
+	
+	private void stopWatcher()
+	{
+		if (watcher == null)
+			return;
+		watcher.close();
+		watcher = null;
+		notifyPollingChanged();
+	}
+	
+	// ContentDirectory sleeps without any timer while the directory is watched, so it is woken up
+	// to check isPollingRequired() again.
+	private void notifyPollingChanged()
+	{
+		ContentDirectory cdir = getContentDirectory();
+		if (cdir != null)
+			cdir.notifyUpdate();
+	}
+	
+	// Called by FileDirectoryWatcher when the thread exits. When the watcher fails such as the root
+	// directory is removed, the directory is rescanned periodically again.
+	void watcherStopped(FileDirectoryWatcher stoppedWatcher)
+	{
+		synchronized (updateLock) {
+			if (watcher != stoppedWatcher)
+				return;
+			Debug.warning("Watcher stopped : " + getPath());
+			stopWatcher();
+		}
+	}
+	
+	public void close()
+	{
+		synchronized (updateLock) {
+			stopWatcher();
+		}
+	}
+
+	// Called by FileDirectoryWatcher with the changed files, or null when some events were lost.
+	void updateContentList(Set changedFileSet)
+	{
+		boolean updated;
+		synchronized (updateLock) {
+			if (watcher == null)
+				return;
+			if (changedFileSet != null)
+				updated = updateItemNodeList(changedFileSet);
+			else
+				updated = updateItemNodeList();
+		}
+		if (updated == true) {
+			setChildCount(getNContentNodes());
+			getContentDirectory().updateSystemUpdateID();
+		}
+	}
+	
 	////////////////////////////////////////////////
 	// update
 	////////////////////////////////////////////////
 	
+	private Object updateLock = new Object();
+	
 	public boolean update()
 	{
-		return updateItemNodeList();
+		synchronized (updateLock) {
+			// The following scan probes only the files which are changed since the last run.
+			if (catalog != null && catalogRestored == false)
+				restoreCatalog();
+			if (isWatchEnabled() == true && isWatching() == false) {
+				// Watch before the first scan not to miss the changes during the scan.
+				if (startWatcher() == true)
+					return updateItemNodeList();
+			}
+			// The watcher applies the changes, so the directory isn't walked periodically.
+			if (isWatching() == true)
+				return false;
+			return updateItemNodeList();
+		}
+	}
+	
+	public boolean isPollingRequired()
+	{
+		return (isWatching() == true) ? false : true;
 	}
 }
-
@@ -0,0 +1,409 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2004
+*
+*	File : FileDirectoryCatalog
+*
+*	Revision:
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.directory.file;
+
+import java.io.*;
+import java.util.*;
+
+import org.cybergarage.util.*;
+import org.cybergarage.xml.*;
+
+// An append-only file of the extracted metadata of the FileDirectory items.
+//
+//	catalog ::= MAGIC VERSION record*
+//	record  ::= RECORD_PUT path length timeStamp id title creator upnpClass mimeType nAttrs (name value)* albumArt date
+//	          | RECORD_REMOVE path
+//	          | RECORD_CONTAINER id
+//	albumArt ::= mimeType offset length width height
+//
+// The last record of a path wins, and the file is rewritten when the stale records dominate.
+// RECORD_CONTAINER keeps the ID of the FileDirectory container, and the last one wins too.
+public class FileDirectoryCatalog
+{
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+
+	public final static int MAGIC = 0x43474643; // "CGFC"
+	public final static int VERSION = 5;
+	// Version 3 is read as it is, which has no RECORD_CONTAINER, and versions 3-4 have no resolution of the album art.
+	private final static int MIN_VERSION = 3;
+	private final static int ALBUMART_RESOLUTION_VERSION = 5;
+
+	private final static byte RECORD_PUT = 1;
+	private final static byte RECORD_REMOVE = 2;
+	private final static byte RECORD_CONTAINER = 3;
+
+	private final static int BUFFER_SIZE = 64 * 1024;
+	private final static int COMPACT_MIN_RECORDS = 1024;
+
+	////////////////////////////////////////////////
+	// Constructor
+	////////////////////////////////////////////////
+
+	public FileDirectoryCatalog(File file)
+	{
+		catalogFile = file;
+		recordMap = new HashMap();
+		pendingRecordList = new Vector();
+		nFileRecords = 0;
+		loaded = false;
+		containerID = null;
+		containerIDChanged = false;
+	}
+
+	////////////////////////////////////////////////
+	// File
+	////////////////////////////////////////////////
+
+	private File catalogFile;
+
+	public File getFile()
+	{
+		return catalogFile;
+	}
+
+	////////////////////////////////////////////////
+	// Record
+	////////////////////////////////////////////////
+
+	static class Record
+	{
+		String path;
+		long length;
+		long timeStamp;
+		String id;
+		String title;
+		String creator;
+		String upnpClass;
+		String mimeType;
+		AttributeList attrList;
+		String albumArtMimeType = "";
+		long albumArtOffset = -1;
+		int albumArtLength = 0;
+		// 0 when the resolution of the album art is unknown.
+		int albumArtWidth = 0;
+		int albumArtHeight = 0;
+		// Date of the content such as DateTimeOriginal of EXIF, or -1 to use the time stamp.
+		long date = -1;
+		// true for RECORD_REMOVE which has only the path.
+		boolean removed;
+	}
+
+	// Path -> Record of the current items
+	private HashMap recordMap;
+	private Vector pendingRecordList;
+	// Count of the records in the file including the stale ones
+	private int nFileRecords;
+	private boolean loaded;
+
+	public synchronized int size()
+	{
+		return recordMap.size();
+	}
+
+	synchronized void put(Record record)
+	{
+		record.removed = false;
+		recordMap.put(record.path, record);
+		pendingRecordList.add(record);
+	}
+
+	synchronized void remove(File file)
+	{
+		String path = file.getPath();
+		if (recordMap.remove(path) == null)
+			return;
+		Record record = new Record();
+		record.path = path;
+		record.removed = true;
+		pendingRecordList.add(record);
+	}
+
+	////////////////////////////////////////////////
+	// ContainerID
+	////////////////////////////////////////////////
+
+	private String containerID;
+	private boolean containerIDChanged;
+
+	// Keeps the ID of the FileDirectory container across the restarts.
+	synchronized void setContainerID(String id)
+	{
+		if (id == null || id.equals(containerID) == true)
+			return;
+		containerID = id;
+		containerIDChanged = true;
+	}
+
+	// Returns the ID of the last run after load(), or null.
+	synchronized String getContainerID()
+	{
+		return containerID;
+	}
+
+	////////////////////////////////////////////////
+	// read
+	////////////////////////////////////////////////
+
+	private static String readString(DataInputStream in) throws IOException
+	{
+		return in.readUTF();
+	}
+
+	private static Record readRecord(DataInputStream in, int type, int version) throws IOException
+	{
+		Record record = new Record();
+		record.path = readString(in);
+		if (type == RECORD_REMOVE) {
+			record.removed = true;
+			return record;
+		}
+		if (type != RECORD_PUT)
+			throw new IOException("Unknown record type : " + type);
+		record.length = in.readLong();
+		record.timeStamp = in.readLong();
+		record.id = readString(in);
+		record.title = readString(in);
+		record.creator = readString(in);
+		record.upnpClass = readString(in);
+		record.mimeType = readString(in);
+		record.attrList = new AttributeList();
+		int nAttrs = in.readInt();
+		for (int n=0; n<nAttrs; n++) {
+			String name = readString(in);
+			String value = readString(in);
+			record.attrList.add(new Attribute(name, value));
+		}
+		record.albumArtMimeType = readString(in);
+		record.albumArtOffset = in.readLong();
+		record.albumArtLength = in.readInt();
+		if (ALBUMART_RESOLUTION_VERSION <= version) {
+			record.albumArtWidth = in.readInt();
+			record.albumArtHeight = in.readInt();
+		}
+		record.date = in.readLong();
+		record.removed = false;
+		return record;
+	}
+
+	// Reads all records in one sequential read, and returns the current items.
+	synchronized Record[] load()
+	{
+		recordMap.clear();
+		pendingRecordList.clear();
+		nFileRecords = 0;
+		loaded = true;
+		containerID = null;
+		containerIDChanged = false;
+
+		if (catalogFile.exists() == false)
+			return new Record[0];
+
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(catalogFile), BUFFER_SIZE));
+			int magic = in.readInt();
+			int version = in.readInt();
+			if (magic != MAGIC || version < MIN_VERSION || VERSION < version) {
+				Debug.warning("Unknown catalog : " + catalogFile);
+				nFileRecords = -1;
+				return new Record[0];
+			}
+			while (true) {
+				int type = in.read();
+				if (type < 0)
+					break;
+				nFileRecords++;
+				if (type == RECORD_CONTAINER) {
+					containerID = readString(in);
+					continue;
+				}
+				Record record = readRecord(in, type, version);
+				if (record.removed == true)
+					recordMap.remove(record.path);
+				else
+					recordMap.put(record.path, record);
+			}
+			// The records of the current version can't be appended to the older file, so it is rewritten at the next flush.
+			if (version < VERSION)
+				nFileRecords = -1;
+		}
+		catch (IOException e) {
+			// A broken record such as a partially written one is dropped, and the file is rewritten at the next flush.
+			Debug.warning(e);
+			nFileRecords = -1;
+		}
+		finally {
+			if (in != null) {
+				try {
+					in.close();
+				}
+				catch (IOException e) {}
+			}
+		}
+
+		Collection records = recordMap.values();
+		return (Record[])records.toArray(new Record[records.size()]);
+	}
+
+	////////////////////////////////////////////////
+	// write
+	////////////////////////////////////////////////
+
+	private static void writeString(DataOutputStream out, String value) throws IOException
+	{
+		out.writeUTF((value != null) ? value : "");
+	}
+
+	private static void writeRecord(DataOutputStream out, Record record) throws IOException
+	{
+		if (record.removed == true) {
+			out.writeByte(RECORD_REMOVE);
+			writeString(out, record.path);
+			return;
+		}
+		out.writeByte(RECORD_PUT);
+		writeString(out, record.path);
+		out.writeLong(record.length);
+		out.writeLong(record.timeStamp);
+		writeString(out, record.id);
+		writeString(out, record.title);
+		writeString(out, record.creator);
+		writeString(out, record.upnpClass);
+		writeString(out, record.mimeType);
+		int nAttrs = (record.attrList != null) ? record.attrList.size() : 0;
+		out.writeInt(nAttrs);
+		for (int n=0; n<nAttrs; n++) {
+			Attribute attr = record.attrList.getAttribute(n);
+			writeString(out, attr.getName());
+			writeString(out, attr.getValue());
+		}
+		writeString(out, record.albumArtMimeType);
+		out.writeLong(record.albumArtOffset);
+		out.writeInt(record.albumArtLength);
+		out.writeInt(record.albumArtWidth);
+		out.writeInt(record.albumArtHeight);
+		out.writeLong(record.date);
+	}
+
+	private void writeContainerID(DataOutputStream out) throws IOException
+	{
+		out.writeByte(RECORD_CONTAINER);
+		writeString(out, containerID);
+	}
+
+	private boolean isCompactionRequired()
+	{
+		if (nFileRecords < 0)
+			return true;
+		int nRecords = nFileRecords + pendingRecordList.size();
+		if (nRecords < COMPACT_MIN_RECORDS)
+			return false;
+		return ((recordMap.size() * 2) < nRecords) ? true : false;
+	}
+
+	private boolean compact()
+	{
+		File tmpFile = new File(catalogFile.getPath() + ".tmp");
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), BUFFER_SIZE));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			if (containerID != null)
+				writeContainerID(out);
+			Iterator recordIt = recordMap.values().iterator();
+			while (recordIt.hasNext() == true)
+				writeRecord(out, (Record)recordIt.next());
+			out.close();
+			out = null;
+			if (catalogFile.exists() == true && catalogFile.delete() == false)
+				return false;
+			if (tmpFile.renameTo(catalogFile) == false)
+				return false;
+		}
+		catch (IOException e) {
+			Debug.warning(e);
+			return false;
+		}
+		finally {
+			if (out != null) {
+				try {
+					out.close();
+				}
+				catch (IOException e) {}
+			}
+		}
+		nFileRecords = recordMap.size() + ((containerID != null) ? 1 : 0);
+		pendingRecordList.clear();
+		containerIDChanged = false;
+		return true;
+	}
+
+	private boolean append()
+	{
+		boolean newFile = (catalogFile.exists() == false || catalogFile.length() <= 0) ? true : false;
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(catalogFile, true), BUFFER_SIZE));
+			if (newFile == true) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				nFileRecords = 0;
+			}
+			int nRecords = pendingRecordList.size();
+			for (int n=0; n<nRecords; n++)
+				writeRecord(out, (Record)pendingRecordList.get(n));
+			if (containerIDChanged == true) {
+				writeContainerID(out);
+				nRecords++;
+			}
+			out.close();
+			out = null;
+			nFileRecords += nRecords;
+		}
+		catch (IOException e) {
+			Debug.warning(e);
+			// Rewrite the whole file at the next flush not to leave a broken record.
+			nFileRecords = -1;
+			return false;
+		}
+		finally {
+			if (out != null) {
+				try {
+					out.close();
+				}
+				catch (IOException e) {}
+			}
+		}
+		pendingRecordList.clear();
+		containerIDChanged = false;
+		return true;
+	}
+
+	// Appends the changes since the last flush, or rewrites the file when it has too many stale records.
+	public synchronized boolean flush()
+	{
+		if (loaded == false)
+			return false;
+		if (isCompactionRequired() == true)
+			return compact();
+		if (pendingRecordList.size() <= 0 && containerIDChanged == false)
+			return true;
+		return append();
+	}
+}
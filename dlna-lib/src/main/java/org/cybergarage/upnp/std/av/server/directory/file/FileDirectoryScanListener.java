@@ -0,0 +1,23 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2004
+*
+*	File : FileDirectoryScanListener
+*
+*	Revision:
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.directory.file;
+
+public interface FileDirectoryScanListener
+{
+	public void scanStarted(FileDirectory dir);
+	public void scanProgressed(FileDirectory dir, int nScannedFiles, int nFoundFiles);
+	public void scanFinished(FileDirectory dir, int nScannedFiles);
+}
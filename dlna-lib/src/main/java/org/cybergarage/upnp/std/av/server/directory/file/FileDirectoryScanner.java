@@ -0,0 +1,249 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2004
+*
+*	File : FileDirectoryScanner
+*
+*	Revision:
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.directory.file;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.cybergarage.util.*;
+import org.cybergarage.upnp.std.av.server.*;
+import org.cybergarage.upnp.std.av.server.object.*;
+import org.cybergarage.upnp.std.av.server.object.item.file.*;
+
+// Lists the directories and probes the new or modified files on a thread pool.
+// The tree isn't modified here, FileDirectory merges the results after scan().
+public class FileDirectoryScanner
+{
+	////////////////////////////////////////////////
+	// Constructor
+	////////////////////////////////////////////////
+
+	public FileDirectoryScanner(FileDirectory fileDir, Map itemNodeMap, int threadCount)
+	{
+		this.fileDir = fileDir;
+		this.itemNodeMap = itemNodeMap;
+		this.threadCount = threadCount;
+		unchangedFileList = new ConcurrentLinkedQueue();
+		unlistedDirList = new ConcurrentLinkedQueue();
+		resultList = new ConcurrentLinkedQueue();
+		nFoundFiles = 0;
+		nScannedFiles = 0;
+		taskCnt = 0;
+	}
+
+	private FileDirectory fileDir;
+	// File -> FileItemNode of the last scan which is only read while scanning.
+	private Map itemNodeMap;
+	private int threadCount;
+
+	////////////////////////////////////////////////
+	// Result
+	////////////////////////////////////////////////
+
+	static class Result
+	{
+		File file;
+		long timeStamp;
+		long length;
+		Format format;
+		FormatObject formatObj;
+	}
+
+	private ConcurrentLinkedQueue unchangedFileList;
+	private ConcurrentLinkedQueue resultList;
+
+	public Collection getUnchangedFiles()
+	{
+		return unchangedFileList;
+	}
+
+	private ConcurrentLinkedQueue unlistedDirList;
+
+	// Directories which can't be listed such as an unmounted volume. The items under them are kept.
+	public Collection getUnlistedDirectories()
+	{
+		return unlistedDirList;
+	}
+
+	// Returns the probed files sorted by the path to add the items in a stable order.
+	Result[] getResults()
+	{
+		Result result[] = (Result[])resultList.toArray(new Result[resultList.size()]);
+		Arrays.sort(result, new Comparator() {
+			public int compare(Object obj1, Object obj2) {
+				return ((Result)obj1).file.compareTo(((Result)obj2).file);
+			}
+		});
+		return result;
+	}
+
+	////////////////////////////////////////////////
+	// Progress
+	////////////////////////////////////////////////
+
+	private int nFoundFiles;
+	private int nScannedFiles;
+
+	private synchronized void fileFound()
+	{
+		nFoundFiles++;
+	}
+
+	// The progress is posted in the lock so that the listeners see the increasing counts.
+	private synchronized void fileScanned()
+	{
+		nScannedFiles++;
+		if ((nScannedFiles % FileDirectory.SCAN_PROGRESS_INTERVAL) != 0)
+			return;
+		fileDir.postScanProgressed(nScannedFiles, nFoundFiles);
+	}
+
+	public synchronized int getNScannedFiles()
+	{
+		return nScannedFiles;
+	}
+
+	public synchronized int getNFoundFiles()
+	{
+		return nFoundFiles;
+	}
+
+	////////////////////////////////////////////////
+	// Task
+	////////////////////////////////////////////////
+
+	private ExecutorService executor;
+	private int taskCnt;
+
+	private void execute(final Runnable task)
+	{
+		synchronized (this) {
+			taskCnt++;
+		}
+		executor.execute(new Runnable() {
+			public void run() {
+				try {
+					task.run();
+				}
+				catch (Exception e) {
+					Debug.warning(e);
+				}
+				finally {
+					taskFinished();
+				}
+			}
+		});
+	}
+
+	private synchronized void taskFinished()
+	{
+		taskCnt--;
+		if (taskCnt <= 0)
+			notifyAll();
+	}
+
+	private synchronized void waitTasks() throws InterruptedException
+	{
+		while (0 < taskCnt)
+			wait();
+	}
+
+	////////////////////////////////////////////////
+	// Scan
+	////////////////////////////////////////////////
+
+	private void scanDirectory(File dirFile)
+	{
+		File childFile[] = dirFile.listFiles();
+		if (childFile == null) {
+			Debug.warning("Can't list the directory : " + dirFile);
+			unlistedDirList.add(dirFile);
+			return;
+		}
+		for (int n=0; n<childFile.length; n++) {
+			final File file = childFile[n];
+			if (file.isDirectory() == true) {
+				execute(new Runnable() {
+					public void run() {
+						scanDirectory(file);
+					}
+				});
+				continue;
+			}
+			if (file.isFile() == false)
+				continue;
+			fileFound();
+			long timeStamp = file.lastModified();
+			long length = file.length();
+			FileItemNode itemNode = (FileItemNode)itemNodeMap.get(file);
+			if (itemNode != null && itemNode.isFileStatusChanged(timeStamp, length) == false) {
+				unchangedFileList.add(file);
+				fileScanned();
+				continue;
+			}
+			final Result result = new Result();
+			result.file = file;
+			result.timeStamp = timeStamp;
+			result.length = length;
+			execute(new Runnable() {
+				public void run() {
+					probeFile(result);
+				}
+			});
+		}
+	}
+
+	private void probeFile(Result result)
+	{
+		try {
+			ContentDirectory cdir = fileDir.getContentDirectory();
+			FormatHeader header = new FormatHeader(result.file);
+			result.format = cdir.getFormat(header);
+			if (result.format != null)
+				result.formatObj = FormatList.createObject(result.format, header);
+		}
+		finally {
+			if (result.formatObj == null)
+				result.format = null;
+			resultList.add(result);
+			fileScanned();
+		}
+	}
+
+	public boolean scan(final File rootDir)
+	{
+		executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			execute(new Runnable() {
+				public void run() {
+					scanDirectory(rootDir);
+				}
+			});
+			waitTasks();
+		}
+		catch (InterruptedException e) {
+			return false;
+		}
+		finally {
+			executor.shutdownNow();
+			executor = null;
+		}
+		if (unlistedDirList.contains(rootDir) == true)
+			return false;
+		return true;
+	}
+}
@@ -0,0 +1,221 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2004
+*
+*	File : FileDirectoryWatcher
+*
+*	Revision:
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.directory.file;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.cybergarage.util.*;
+
+// java.nio.file is available since Android 8.0 (API 26), so FileDirectory
+// checks WatchService with the class name before creating this class.
+public class FileDirectoryWatcher extends ThreadCore
+{
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+
+	// Events are collected until no event comes during BATCH_QUIET_TIME, but BATCH_MAX_DELAY at most.
+	public final static long BATCH_QUIET_TIME = 500;
+	public final static long BATCH_MAX_DELAY = 5000;
+
+	////////////////////////////////////////////////
+	// Constructor
+	////////////////////////////////////////////////
+
+	public FileDirectoryWatcher(FileDirectory fileDir)
+	{
+		this.fileDir = fileDir;
+		watchService = null;
+		watchKeyMap = new HashMap();
+	}
+
+	////////////////////////////////////////////////
+	// FileDirectory
+	////////////////////////////////////////////////
+
+	private FileDirectory fileDir;
+
+	public FileDirectory getFileDirectory()
+	{
+		return fileDir;
+	}
+
+	////////////////////////////////////////////////
+	// register
+	////////////////////////////////////////////////
+
+	private WatchService watchService;
+	// WatchKey -> Path of the watched directory, which is cleared by the run thread when it exits.
+	private HashMap watchKeyMap;
+
+	private void registerDirectory(WatchService watchService, Path dirPath)
+	{
+		try {
+			WatchKey watchKey = dirPath.register(watchService,
+				StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_DELETE,
+				StandardWatchEventKinds.ENTRY_MODIFY);
+			synchronized (watchKeyMap) {
+				watchKeyMap.put(watchKey, dirPath);
+			}
+		}
+		catch (Exception e) {
+			Debug.warning(e);
+			return;
+		}
+
+		File childFile[] = dirPath.toFile().listFiles();
+		if (childFile == null)
+			return;
+		for (int n=0; n<childFile.length; n++) {
+			if (childFile[n].isDirectory() == true)
+				registerDirectory(watchService, childFile[n].toPath());
+		}
+	}
+
+	////////////////////////////////////////////////
+	// start/stop
+	////////////////////////////////////////////////
+
+	public boolean open()
+	{
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+		}
+		catch (Exception e) {
+			Debug.warning(e);
+			return false;
+		}
+		registerDirectory(watchService, new File(fileDir.getPath()).toPath());
+		// The root directory can't be watched such as it doesn't exist.
+		synchronized (watchKeyMap) {
+			if (0 < watchKeyMap.size())
+				return true;
+		}
+		close();
+		return false;
+	}
+
+	public void close()
+	{
+		stop();
+		if (watchService == null)
+			return;
+		try {
+			watchService.close();
+		}
+		catch (IOException e) {
+			Debug.warning(e);
+		}
+		watchService = null;
+	}
+
+	////////////////////////////////////////////////
+	// run
+	////////////////////////////////////////////////
+
+	// Returns true when some events were lost and the directory has to be rescanned.
+	private boolean pollEvents(WatchService watchService, WatchKey watchKey, HashSet changedFileSet)
+	{
+		boolean overflowed = false;
+		Path dirPath;
+		synchronized (watchKeyMap) {
+			dirPath = (Path)watchKeyMap.get(watchKey);
+		}
+		List eventList = watchKey.pollEvents();
+		int eventCnt = eventList.size();
+		for (int n=0; n<eventCnt; n++) {
+			WatchEvent event = (WatchEvent)eventList.get(n);
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW || dirPath == null) {
+				overflowed = true;
+				continue;
+			}
+			Path eventPath = dirPath.resolve((Path)event.context());
+			if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(eventPath) == true)
+				registerDirectory(watchService, eventPath);
+			changedFileSet.add(eventPath.toFile());
+		}
+		if (watchKey.reset() == false) {
+			synchronized (watchKeyMap) {
+				watchKeyMap.remove(watchKey);
+			}
+		}
+		return overflowed;
+	}
+
+	public void run()
+	{
+		WatchService watchService = this.watchService;
+		if (watchService == null)
+			return;
+
+		try {
+			runEvents(watchService);
+		}
+		finally {
+			synchronized (watchKeyMap) {
+				watchKeyMap.clear();
+			}
+			// FileDirectory polls again unless the watcher is closed by it.
+			fileDir.watcherStopped(this);
+		}
+	}
+
+	private void runEvents(WatchService watchService)
+	{
+		while (isRunnable() == true) {
+			// No directory is watched such as the root directory is removed.
+			synchronized (watchKeyMap) {
+				if (watchKeyMap.size() <= 0)
+					break;
+			}
+			HashSet changedFileSet = new HashSet();
+			boolean overflowed = false;
+			try {
+				// Sleep without any timer until the first event.
+				WatchKey watchKey = watchService.take();
+				overflowed |= pollEvents(watchService, watchKey, changedFileSet);
+
+				// Coalesce the following events such as copying many files into a batch.
+				long batchStartTime = System.currentTimeMillis();
+				while (isRunnable() == true) {
+					long batchTime = System.currentTimeMillis() - batchStartTime;
+					if (BATCH_MAX_DELAY <= batchTime)
+						break;
+					long waitTime = Math.min(BATCH_QUIET_TIME, BATCH_MAX_DELAY - batchTime);
+					watchKey = watchService.poll(waitTime, TimeUnit.MILLISECONDS);
+					if (watchKey == null)
+						break;
+					overflowed |= pollEvents(watchService, watchKey, changedFileSet);
+				}
+			}
+			catch (InterruptedException e) {
+				break;
+			}
+			catch (ClosedWatchServiceException e) {
+				break;
+			}
+
+			if (overflowed == true)
+				fileDir.updateContentList(null);
+			else if (0 < changedFileSet.size())
+				fileDir.updateContentList(changedFileSet);
+		}
+	}
+}
@@ -0,0 +1,27 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File: AlbumArtFormatObject.java
+*
+*	Revision;
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object;
+
+// A FormatObject which has an embedded image such as the APIC frame of ID3.
+public interface AlbumArtFormatObject extends FormatObject
+{
+	public abstract boolean hasAlbumArt();
+	public abstract String getAlbumArtMimeType();
+	// Returns the offset of the image in the file, or -1 when the image isn't stored in the file as it is.
+	public abstract long getAlbumArtOffset();
+	public abstract int getAlbumArtLength();
+	public abstract byte[] getAlbumArtData();
+}
@@ -14,6 +14,10 @@
 *		- Added setID(String) and setParentID(String).
 *		- Changed getID() and getParentID() to return the string value instead of interger.
 *		- Changed findContentNodeByID() to serach using a string id.
+*	10/17/26
+*		- Added output(DIDLLiteWriter) to write the node into a reusable buffer with XML escaping.
+*		- Added output(DIDLLiteWriter, DIDLLiteFilter) to write only the properties in the Filter argument.
+*		- Changed output(DIDLLiteWriter, DIDLLiteFilter) to check the filter with the indexes which are resolved only once for the names.
 *
 ******************************************************************/
 
@@ -370,6 +374,92 @@ public abstract class ContentNode extends Node
 
 		ps.println(indentString +"</" + name + ">");
 	}
+
+	public void output(DIDLLiteWriter writer) 
+	{
+		output(writer, null);
+	}
 	
-}
+	private final static int resFilterIndex = DIDLLiteFilter.getPropertyIndex(DIDLLiteFilter.RES);
+	private DIDLLiteFilter.IndexCache filterAttrIndexCache = null;
+	
+	// Returns the index of the n-th attribute in DIDLLiteFilter. Called while ContentDirectory is locked.
+	private int getAttributeFilterIndex(int n, String attrName)
+	{
+		if (filterAttrIndexCache == null)
+			filterAttrIndexCache = new DIDLLiteFilter.IndexCache(DIDLLiteFilter.NODE_ATTRIBUTE_INDEX);
+		return filterAttrIndexCache.getIndex(n, attrName);
+	}
+	
+	public void output(DIDLLiteWriter writer, DIDLLiteFilter filter) 
+	{
+		if (filter != null && filter.isAll() == true)
+			filter = null;
+		
+		String name = getName();
 
+		writer.print("<");
+		writer.print(name);
+		int nAttributes = getNAttributes();
+		for (int n=0; n<nAttributes; n++) {
+			Attribute attr = getAttribute(n);
+			String attrName = attr.getName();
+			if (filter != null && filter.hasNodeAttribute(getAttributeFilterIndex(n, attrName), attrName) == false)
+				continue;
+			writer.printAttribute(attrName, attr.getValue());
+		}
+		
+		if (hasProperties() == false) {		
+			writer.print(">");
+			writer.printEscaped(getValue());
+			writer.print("</");
+			writer.print(name);
+			writer.print(">");
+			writer.println();
+			return;
+		}
+		
+		writer.print(">");
+		writer.println();
+	
+		int nProps = getNProperties();
+		for (int n=0; n<nProps; n++) {
+			ContentProperty prop = getProperty(n);
+			String propName = prop.getName();
+			if (filter != null && filter.hasProperty(prop.getFilterIndex(), propName) == false)
+				continue;
+			if (prop.hasAttributes() == false) {
+				writer.printElement(propName, prop.getValue());
+				continue;
+			}
+			writer.print("<");
+			writer.print(propName);
+			boolean isRes = (prop.getFilterIndex() == resFilterIndex) ? true : false;
+			int nPropAttributes = prop.getNAttributes();
+			for (int i=0; i<nPropAttributes; i++) {
+				Attribute attr = prop.getAttribute(i);
+				String attrName = attr.getName();
+				if (filter != null) {
+					boolean hasAttr = (isRes == true) ?
+						filter.hasResAttribute(prop.getResAttributeFilterIndex(i), attrName) :
+						filter.hasPropertyAttribute(propName, attrName);
+					if (hasAttr == false)
+						continue;
+				}
+				writer.printAttribute(attrName, attr.getValue());
+			}
+			writer.print(">");
+			writer.printEscaped(prop.getValue());
+			writer.print("</");
+			writer.print(propName);
+			writer.print(">");
+			writer.println();
+		}
+		
+		writer.print("</");
+		writer.print(name);
+		writer.print(">");
+		writer.println();
+	}
+	
+}
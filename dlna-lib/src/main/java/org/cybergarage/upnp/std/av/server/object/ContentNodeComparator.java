@@ -0,0 +1,158 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File: ContentNodeComparator.java
+*
+*	Revision;
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object;
+
+import java.util.*;
+
+public class ContentNodeComparator implements Comparator
+{
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+
+	public ContentNodeComparator(SortCriterionList sortCriList, SortCapList sortCapList)
+	{
+		int nSortCrit = sortCriList.size();
+		SortCap capList[] = new SortCap[nSortCrit];
+		boolean ascList[] = new boolean[nSortCrit];
+		int nCaps = 0;
+		for (int n=0; n<nSortCrit; n++) {
+			String sortStr = sortCriList.getSortCriterion(n);
+			if (sortStr.length() <= 0)
+				continue;
+			boolean ascSeq = true;
+			char firstSortChar = sortStr.charAt(0);
+			if (firstSortChar == '-')
+				ascSeq = false;
+			if (firstSortChar == '+' || firstSortChar == '-')
+				sortStr = sortStr.substring(1);
+			SortCap sortCap = sortCapList.getSortCap(sortStr);
+			if (sortCap == null)
+				continue;
+			capList[nCaps] = sortCap;
+			ascList[nCaps] = ascSeq;
+			nCaps++;
+		}
+		sortCap = new SortCap[nCaps];
+		ascSeq = new boolean[nCaps];
+		System.arraycopy(capList, 0, sortCap, 0, nCaps);
+		System.arraycopy(ascList, 0, ascSeq, 0, nCaps);
+	}
+
+	////////////////////////////////////////////////
+	// SortCap
+	////////////////////////////////////////////////
+
+	private SortCap sortCap[];
+	private boolean ascSeq[];
+
+	public int getNSortCaps()
+	{
+		return sortCap.length;
+	}
+
+	public SortCap getSortCap(int n)
+	{
+		return sortCap[n];
+	}
+
+	public boolean isAscending(int n)
+	{
+		return ascSeq[n];
+	}
+
+	public String getSortCriteria()
+	{
+		StringBuffer sortCriStr = new StringBuffer();
+		int nSortCaps = getNSortCaps();
+		for (int n=0; n<nSortCaps; n++) {
+			if (0 < n)
+				sortCriStr.append(',');
+			sortCriStr.append((ascSeq[n] == true) ? '+' : '-');
+			sortCriStr.append(sortCap[n].getType());
+		}
+		return sortCriStr.toString();
+	}
+
+	////////////////////////////////////////////////
+	// sort
+	////////////////////////////////////////////////
+
+	private static class SortEntry
+	{
+		ContentNode node;
+		// The keys of SortKeyCap, or null for the other SortCaps.
+		Comparable key[];
+	}
+
+	public void sort(ContentNode conNode[])
+	{
+		int nSortCaps = getNSortCaps();
+		if (nSortCaps <= 0)
+			return;
+
+		// Extract the sort keys only once for each node.
+		int nNodes = conNode.length;
+		SortEntry entry[] = new SortEntry[nNodes];
+		for (int n=0; n<nNodes; n++) {
+			SortEntry sortEntry = new SortEntry();
+			sortEntry.node = conNode[n];
+			sortEntry.key = new Comparable[nSortCaps];
+			for (int i=0; i<nSortCaps; i++) {
+				if (sortCap[i] instanceof SortKeyCap)
+					sortEntry.key[i] = ((SortKeyCap)sortCap[i]).getSortKey(conNode[n]);
+			}
+			entry[n] = sortEntry;
+		}
+
+		// Arrays.sort() is a stable merge sort for objects.
+		Arrays.sort(entry, this);
+
+		for (int n=0; n<nNodes; n++)
+			conNode[n] = entry[n].node;
+	}
+
+	////////////////////////////////////////////////
+	// Comparator
+	////////////////////////////////////////////////
+
+	private static int compareKey(Comparable key1, Comparable key2)
+	{
+		if (key1 == null)
+			return (key2 == null) ? 0 : -1;
+		if (key2 == null)
+			return 1;
+		return key1.compareTo(key2);
+	}
+
+	public int compare(Object obj1, Object obj2)
+	{
+		SortEntry entry1 = (SortEntry)obj1;
+		SortEntry entry2 = (SortEntry)obj2;
+		int nSortCaps = getNSortCaps();
+		for (int n=0; n<nSortCaps; n++) {
+			int cmpRet;
+			if (sortCap[n] instanceof SortKeyCap)
+				cmpRet = compareKey(entry1.key[n], entry2.key[n]);
+			else
+				cmpRet = sortCap[n].compare(entry1.node, entry2.node);
+			if (cmpRet == 0)
+				continue;
+			return (ascSeq[n] == true) ? cmpRet : -cmpRet;
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,52 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003
+*
+*	File: ContentNodeMap.java
+*
+*	Revision;
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object;
+
+import java.util.*;
+
+public class ContentNodeMap extends Hashtable
+{
+	public ContentNodeMap()
+	{
+	}
+
+	public ContentNode getContentNode(String id)
+	{
+		if (id == null)
+			return null;
+		return (ContentNode)get(id);
+	}
+
+	public void addContentNode(ContentNode node)
+	{
+		String id = node.getID();
+		if (id == null)
+			return;
+		put(id, node);
+	}
+
+	public synchronized boolean removeContentNode(ContentNode node)
+	{
+		String id = node.getID();
+		if (id == null)
+			return false;
+		// Don't drop a newer node which has been registered with the same ID.
+		if (get(id) != node)
+			return false;
+		remove(id);
+		return true;
+	}
+}
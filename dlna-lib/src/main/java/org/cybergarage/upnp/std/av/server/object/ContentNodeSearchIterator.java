@@ -0,0 +1,138 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File: ContentNodeSearchIterator.java
+*
+*	Revision;
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object;
+
+import java.util.*;
+
+import org.cybergarage.upnp.std.av.server.object.container.*;
+
+// Walks the items and containers under a container in document order and returns only the matched nodes.
+public class ContentNodeSearchIterator implements Iterator
+{
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+
+	private ContentNodeSearchIterator(ContainerNode conNode)
+	{
+		stack = new Vector();
+		pushContainerNode(conNode);
+		nextNode = null;
+	}
+
+	public ContentNodeSearchIterator(ContainerNode conNode, SearchExpression searchExpr, SearchCapList searchCapList)
+	{
+		this(conNode);
+		this.searchExpr = searchExpr;
+		this.searchCapList = searchCapList;
+	}
+
+	public ContentNodeSearchIterator(ContainerNode conNode, BitSet docSet, SearchIndex searchIndex)
+	{
+		this(conNode);
+		this.docSet = docSet;
+		this.searchIndex = searchIndex;
+	}
+
+	////////////////////////////////////////////////
+	// match
+	////////////////////////////////////////////////
+
+	private SearchExpression searchExpr = null;
+	private SearchCapList searchCapList = null;
+	private BitSet docSet = null;
+	private SearchIndex searchIndex = null;
+
+	private boolean isMatched(ContentNode conNode)
+	{
+		if (docSet != null) {
+			int docID = searchIndex.getDocID(conNode);
+			if (docID < 0)
+				return false;
+			return docSet.get(docID);
+		}
+		return searchExpr.compare(conNode, searchCapList);
+	}
+
+	////////////////////////////////////////////////
+	// Stack
+	////////////////////////////////////////////////
+
+	private static class ContainerFrame
+	{
+		ContainerNode node;
+		int index;
+	}
+
+	private Vector stack;
+
+	private void pushContainerNode(ContainerNode conNode)
+	{
+		ContainerFrame frame = new ContainerFrame();
+		frame.node = conNode;
+		frame.index = 0;
+		stack.add(frame);
+	}
+
+	////////////////////////////////////////////////
+	// Iterator
+	////////////////////////////////////////////////
+
+	private ContentNode nextNode;
+
+	private ContentNode findNextNode()
+	{
+		while (0 < stack.size()) {
+			ContainerFrame frame = (ContainerFrame)stack.lastElement();
+			if (frame.node.getNContentNodes() <= frame.index) {
+				stack.removeElementAt(stack.size() - 1);
+				continue;
+			}
+			ContentNode conNode = frame.node.getContentNode(frame.index++);
+			if (conNode.isContainerNode() == true)
+				pushContainerNode((ContainerNode)conNode);
+			if (isMatched(conNode) == true)
+				return conNode;
+		}
+		return null;
+	}
+
+	public boolean hasNext()
+	{
+		if (nextNode == null)
+			nextNode = findNextNode();
+		return (nextNode != null) ? true : false;
+	}
+
+	public Object next()
+	{
+		if (hasNext() == false)
+			throw new NoSuchElementException();
+		ContentNode conNode = nextNode;
+		nextNode = null;
+		return conNode;
+	}
+
+	public ContentNode nextContentNode()
+	{
+		return (ContentNode)next();
+	}
+
+	public void remove()
+	{
+		throw new UnsupportedOperationException();
+	}
+}
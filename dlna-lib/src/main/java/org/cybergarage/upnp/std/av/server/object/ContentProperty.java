@@ -10,6 +10,8 @@
 *
 *	10/29/03
 *		- first revision.
+*	10/17/26
+*		- Added the indexes of DIDLLiteFilter which are resolved only once for the name and the attributes.
 *
 ******************************************************************/
 
@@ -21,6 +23,7 @@ public class ContentProperty
 {
 	private String name = new String(); 
 	private String value = new String(); 
+	private int filterIndex = DIDLLiteFilter.UNKNOWN_INDEX;
 
 	public ContentProperty() 
 	{
@@ -39,6 +42,7 @@ public class ContentProperty
 	public void setName(String name) 
 	{
 		this.name = name;
+		filterIndex = DIDLLiteFilter.getPropertyIndex(name);
 	}
 
 	public String getName() 
@@ -140,5 +144,24 @@ public class ContentProperty
 		catch (Exception e) {}
 		return 0;
 	}
-}
 
+	////////////////////////////////////////////////
+	//	DIDLLiteFilter
+	////////////////////////////////////////////////
+
+	// The index of the name in DIDLLiteFilter.
+	public int getFilterIndex()
+	{
+		return filterIndex;
+	}
+
+	private DIDLLiteFilter.IndexCache filterAttrIndexCache = null;
+
+	// Returns the index of the n-th attribute of res in DIDLLiteFilter. Called while ContentDirectory is locked.
+	public int getResAttributeFilterIndex(int n)
+	{
+		if (filterAttrIndexCache == null)
+			filterAttrIndexCache = new DIDLLiteFilter.IndexCache(DIDLLiteFilter.RES_ATTRIBUTE_INDEX);
+		return filterAttrIndexCache.getIndex(n, getAttribute(n).getName());
+	}
+}
@@ -19,6 +19,10 @@
 *	04/18/05
 *		- Matt <matthias@streams.ch>
 *		- Changed toString() using UTF-8 OutputStreamWriter.
+*	10/17/26
+*		- Changed toString() to serialize with DIDLLiteWriter into a reusable buffer.
+*		- Added setFilter() to output only the properties in the Filter argument.
+*		- Added the dlna namespace.
 *
 ******************************************************************/
 
@@ -41,6 +45,8 @@ public class DIDLLite
 	public final static String XMLNS_DC_URL = "http://purl.org/dc/elements/1.1/";
 	public final static String XMLNS_UPNP = "xmlns:upnp";
 	public final static String XMLNS_UPNP_URL = "urn:schemas-upnp-org:metadata-1-0/upnp/";
+	public final static String XMLNS_DLNA = "xmlns:dlna";
+	public final static String XMLNS_DLNA_URL = "urn:schemas-dlna-org:metadata-1-0/";
 
 	public final static String CONTAINER = "container";
 	public final static String ID = "id";
@@ -88,6 +94,27 @@ public class DIDLLite
 		return nodeList.getContentNode(n);
 	}
 
+	////////////////////////////////////////////////
+	//	Filter
+	////////////////////////////////////////////////
+
+	private DIDLLiteFilter filter = null;
+	
+	public void setFilter(DIDLLiteFilter value)
+	{
+		filter = value;
+	}
+	
+	public void setFilter(String value)
+	{
+		setFilter(new DIDLLiteFilter(value));
+	}
+	
+	public DIDLLiteFilter getFilter()
+	{
+		return filter;
+	}
+
 	////////////////////////////////////////////////
 	//	toString
 	////////////////////////////////////////////////
@@ -115,20 +142,36 @@ public class DIDLLite
 		ps.println("</" + name + ">");
 	}
 	
+	public void output(DIDLLiteWriter writer) 
+	{
+		writer.print(SOAP.VERSION_HEADER);
+
+		writer.print("<");
+		writer.print(NAME);
+		writer.printAttribute(XMLNS, XMLNS_URL);
+		writer.printAttribute(XMLNS_DC, XMLNS_DC_URL);
+		writer.printAttribute(XMLNS_UPNP, XMLNS_UPNP_URL);
+		writer.printAttribute(XMLNS_DLNA, XMLNS_DLNA_URL);
+		writer.print(">");
+		writer.println();
+
+		int nNodes = getNContentNodes();
+		for (int n=0; n<nNodes; n++) {
+			ContentNode contentNode = getContentNode(n);
+			contentNode.output(writer, filter);
+		}	
+
+		writer.print("</");
+		writer.print(NAME);
+		writer.print(">");
+		writer.println();
+	}
+	
 	public String toString()
 	{
-		try {
-			ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-			Writer writer = new OutputStreamWriter(byteOut, "UTF-8");
-			PrintWriter pr = new PrintWriter(writer);
-			output(pr);
-			pr.flush();
-			return byteOut.toString();
-		}
-		catch (UnsupportedEncodingException e) {
-			Debug.warning(e);
-		}
-		return "";
+		DIDLLiteWriter writer = DIDLLiteWriter.getThreadWriter();
+		output(writer);
+		return writer.toString();
 	}
 
 }
@@ -0,0 +1,345 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003
+*
+*	File: DIDLLiteFilter.java
+*
+*	Revision;
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object;
+
+import java.util.*;
+
+public class DIDLLiteFilter
+{
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+
+	public final static String ALL = "*";
+	public final static String DELIM = ",";
+	public final static String ATTRIBUTE_DELIM = "@";
+
+	public final static String RES = "res";
+	public final static String ITEM = "item";
+	public final static String CONTAINER = "container";
+
+	// Properties which are known by the filter and compiled into a bitmask.
+	private final static String PROPERTY_NAMES[] = {
+		"dc:title",
+		"dc:creator",
+		"dc:date",
+		"dc:description",
+		"upnp:class",
+		"upnp:writeStatus",
+		"upnp:storageMedium",
+		"upnp:storageUsed",
+		"upnp:albumArtURI",
+		"upnp:album",
+		"upnp:artist",
+		"upnp:genre",
+		"upnp:originalTrackNumber",
+		RES,
+	};
+
+	// Attributes of the res property which are compiled into a bitmask.
+	private final static String RES_ATTRIBUTE_NAMES[] = {
+		"protocolInfo",
+		"size",
+		"duration",
+		"bitrate",
+		"resolution",
+		"colorDepth",
+		"importUri",
+		"sampleFrequency",
+		"nrAudioChannels",
+		"bitsPerSample",
+	};
+
+	// Attributes of the item or container node which are compiled into a bitmask.
+	private final static String NODE_ATTRIBUTE_NAMES[] = {
+		"id",
+		"parentID",
+		"restricted",
+		"childCount",
+		"searchable",
+		"refID",
+	};
+
+	// Properties and attributes which are always returned regardless of the filter.
+	private final static String REQUIRED_PROPERTY_NAMES[] = {
+		"dc:title",
+		"upnp:class",
+	};
+	private final static String REQUIRED_RES_ATTRIBUTE_NAMES[] = {
+		"protocolInfo",
+	};
+	private final static String REQUIRED_NODE_ATTRIBUTE_NAMES[] = {
+		"id",
+		"parentID",
+		"restricted",
+	};
+
+	// Index of the names which are not compiled into a bitmask.
+	public final static int UNKNOWN_INDEX = -1;
+
+	private final static HashMap propertyIndexMap = createIndexMap(PROPERTY_NAMES);
+	private final static HashMap resAttributeIndexMap = createIndexMap(RES_ATTRIBUTE_NAMES);
+	private final static HashMap nodeAttributeIndexMap = createIndexMap(NODE_ATTRIBUTE_NAMES);
+
+	private final static HashMap createIndexMap(String names[])
+	{
+		HashMap indexMap = new HashMap();
+		for (int n=0; n<names.length; n++)
+			indexMap.put(names[n], Integer.valueOf(n));
+		return indexMap;
+	}
+
+	private final static int getIndex(HashMap indexMap, String name)
+	{
+		Integer index = (Integer)indexMap.get(name);
+		if (index == null)
+			return UNKNOWN_INDEX;
+		return index.intValue();
+	}
+
+	// The indexes are resolved only once for each name by the callers such as ContentProperty,
+	// and passed to has*() not to look up the names for each node.
+	public final static int getPropertyIndex(String name)
+	{
+		return getIndex(propertyIndexMap, name);
+	}
+
+	public final static int getResAttributeIndex(String name)
+	{
+		return getIndex(resAttributeIndexMap, name);
+	}
+
+	public final static int getNodeAttributeIndex(String name)
+	{
+		return getIndex(nodeAttributeIndexMap, name);
+	}
+
+	////////////////////////////////////////////////
+	// IndexCache
+	////////////////////////////////////////////////
+
+	public final static int RES_ATTRIBUTE_INDEX = 1;
+	public final static int NODE_ATTRIBUTE_INDEX = 2;
+
+	// The indexes of the attributes of a node or a property which were resolved at the last output. The names
+	// are compared with the identity, so the indexes are resolved again only when the attributes are changed.
+	public static class IndexCache
+	{
+		private HashMap indexMap;
+		private String names[];
+		private int indexes[];
+
+		public IndexCache(int type)
+		{
+			indexMap = (type == RES_ATTRIBUTE_INDEX) ? resAttributeIndexMap : nodeAttributeIndexMap;
+			names = new String[0];
+			indexes = new int[0];
+		}
+
+		public int getIndex(int n, String name)
+		{
+			if (names.length <= n) {
+				String newNames[] = new String[n + 1];
+				int newIndexes[] = new int[n + 1];
+				System.arraycopy(names, 0, newNames, 0, names.length);
+				System.arraycopy(indexes, 0, newIndexes, 0, indexes.length);
+				names = newNames;
+				indexes = newIndexes;
+			}
+			if (names[n] != name) {
+				indexes[n] = DIDLLiteFilter.getIndex(indexMap, name);
+				names[n] = name;
+			}
+			return indexes[n];
+		}
+	}
+
+	private final static long getBits(HashMap indexMap, String names[])
+	{
+		long bits = 0;
+		for (int n=0; n<names.length; n++)
+			bits |= 1L << getIndex(indexMap, names[n]);
+		return bits;
+	}
+
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+
+	public DIDLLiteFilter(String filter)
+	{
+		compile(filter);
+	}
+
+	////////////////////////////////////////////////
+	// compile
+	////////////////////////////////////////////////
+
+	private boolean allFlag;
+	private long propertyMask;
+	private long resAttributeMask;
+	private long nodeAttributeMask;
+	// The names which are not compiled into the bitmasks.
+	private HashSet otherPropertySet;
+	private HashSet otherNodeAttributeSet;
+	// Property name -> HashSet of the attribute names
+	private HashMap otherPropertyAttributeMap;
+
+	private void compile(String filter)
+	{
+		allFlag = false;
+		propertyMask = getBits(propertyIndexMap, REQUIRED_PROPERTY_NAMES);
+		resAttributeMask = getBits(resAttributeIndexMap, REQUIRED_RES_ATTRIBUTE_NAMES);
+		nodeAttributeMask = getBits(nodeAttributeIndexMap, REQUIRED_NODE_ATTRIBUTE_NAMES);
+		otherPropertySet = new HashSet();
+		otherNodeAttributeSet = new HashSet();
+		otherPropertyAttributeMap = new HashMap();
+
+		if (filter == null) {
+			allFlag = true;
+			return;
+		}
+		filter = filter.trim();
+		// An empty filter returns only the required properties.
+		if (filter.length() <= 0)
+			return;
+		if (filter.equals(ALL) == true) {
+			allFlag = true;
+			return;
+		}
+
+		StringTokenizer st = new StringTokenizer(filter, DELIM);
+		while (st.hasMoreTokens() == true) {
+			String name = st.nextToken().trim();
+			if (name.length() <= 0)
+				continue;
+			if (name.equals(ALL) == true) {
+				allFlag = true;
+				return;
+			}
+			int attrIdx = name.indexOf(ATTRIBUTE_DELIM);
+			if (attrIdx < 0) {
+				addProperty(name);
+				continue;
+			}
+			String propName = name.substring(0, attrIdx);
+			String attrName = name.substring(attrIdx + 1);
+			if (propName.length() <= 0 || propName.equals(ITEM) || propName.equals(CONTAINER)) {
+				int index = getNodeAttributeIndex(attrName);
+				if (index != UNKNOWN_INDEX)
+					nodeAttributeMask |= 1L << index;
+				else
+					otherNodeAttributeSet.add(attrName);
+				continue;
+			}
+			addProperty(propName);
+			if (propName.equals(RES) == true) {
+				int index = getResAttributeIndex(attrName);
+				if (index != UNKNOWN_INDEX) {
+					resAttributeMask |= 1L << index;
+					continue;
+				}
+			}
+			HashSet attrSet = (HashSet)otherPropertyAttributeMap.get(propName);
+			if (attrSet == null) {
+				attrSet = new HashSet();
+				otherPropertyAttributeMap.put(propName, attrSet);
+			}
+			attrSet.add(attrName);
+		}
+	}
+
+	private void addProperty(String name)
+	{
+		int index = getPropertyIndex(name);
+		if (index != UNKNOWN_INDEX)
+			propertyMask |= 1L << index;
+		else
+			otherPropertySet.add(name);
+	}
+
+	////////////////////////////////////////////////
+	// has*
+	////////////////////////////////////////////////
+
+	public boolean isAll()
+	{
+		return allFlag;
+	}
+
+	// index is getPropertyIndex(name) which is resolved by the caller.
+	public boolean hasProperty(int index, String name)
+	{
+		if (allFlag == true)
+			return true;
+		if (index != UNKNOWN_INDEX)
+			return ((propertyMask & (1L << index)) != 0) ? true : false;
+		if (otherPropertySet.isEmpty() == true)
+			return false;
+		return otherPropertySet.contains(name);
+	}
+
+	public boolean hasProperty(String name)
+	{
+		return hasProperty(getPropertyIndex(name), name);
+	}
+
+	// index is getResAttributeIndex(attrName) which is resolved by the caller.
+	public boolean hasResAttribute(int index, String attrName)
+	{
+		if (allFlag == true)
+			return true;
+		if (index != UNKNOWN_INDEX)
+			return ((resAttributeMask & (1L << index)) != 0) ? true : false;
+		return hasOtherPropertyAttribute(RES, attrName);
+	}
+
+	private boolean hasOtherPropertyAttribute(String propName, String attrName)
+	{
+		if (otherPropertyAttributeMap.isEmpty() == true)
+			return false;
+		HashSet attrSet = (HashSet)otherPropertyAttributeMap.get(propName);
+		if (attrSet == null)
+			return false;
+		return attrSet.contains(attrName);
+	}
+
+	public boolean hasPropertyAttribute(String propName, String attrName)
+	{
+		if (allFlag == true)
+			return true;
+		if (propName.equals(RES) == true)
+			return hasResAttribute(getResAttributeIndex(attrName), attrName);
+		return hasOtherPropertyAttribute(propName, attrName);
+	}
+
+	// index is getNodeAttributeIndex(attrName) which is resolved by the caller.
+	public boolean hasNodeAttribute(int index, String attrName)
+	{
+		if (allFlag == true)
+			return true;
+		if (index != UNKNOWN_INDEX)
+			return ((nodeAttributeMask & (1L << index)) != 0) ? true : false;
+		if (otherNodeAttributeSet.isEmpty() == true)
+			return false;
+		return otherNodeAttributeSet.contains(attrName);
+	}
+
+	public boolean hasNodeAttribute(String attrName)
+	{
+		return hasNodeAttribute(getNodeAttributeIndex(attrName), attrName);
+	}
+}
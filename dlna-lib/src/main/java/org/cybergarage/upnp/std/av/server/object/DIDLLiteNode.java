@@ -14,6 +14,8 @@
 *		- Brent Hills <bhills@openshores.com>
 *		- Changed DIDLLiteNode is a subclass of Node instead of ContentNode
 *		  because the node has the parentID attributes.
+*	10/17/26
+*		- Added the dlna namespace.
 *
 ******************************************************************/
 
@@ -33,6 +35,7 @@ public class DIDLLiteNode extends Node // Thanks for Brent Hills (10/28/04)
 		setAttribute(DIDLLite.XMLNS, DIDLLite.XMLNS_URL);
 		setAttribute(DIDLLite.XMLNS_DC, DIDLLite.XMLNS_DC_URL);
 		setAttribute(DIDLLite.XMLNS_UPNP, DIDLLite.XMLNS_UPNP_URL);
+		setAttribute(DIDLLite.XMLNS_DLNA, DIDLLite.XMLNS_DLNA_URL);
 	}
 
 	////////////////////////////////////////////////
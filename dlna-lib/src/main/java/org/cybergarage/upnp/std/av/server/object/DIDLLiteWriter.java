@@ -0,0 +1,201 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003
+*
+*	File: DIDLLiteWriter.java
+*
+*	Revision;
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object;
+
+// Writes DIDL-Lite into a char buffer which is reused by each thread. The Result argument of CyberLink
+// is a String, so toString() is the only copy of the buffer.
+public class DIDLLiteWriter
+{
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+
+	public final static int DEFAULT_BUFFER_SIZE = 8 * 1024;
+	public final static int MAX_RETAINED_BUFFER_SIZE = 256 * 1024;
+
+	private final static char REPLACEMENT_CHAR = 0xFFFD;
+
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+
+	public DIDLLiteWriter()
+	{
+		buf = new char[DEFAULT_BUFFER_SIZE];
+		count = 0;
+	}
+
+	////////////////////////////////////////////////
+	// Reusable writer per thread
+	////////////////////////////////////////////////
+
+	private final static ThreadLocal threadWriter = new ThreadLocal() {
+		protected Object initialValue() {
+			return new DIDLLiteWriter();
+		}
+	};
+
+	public final static DIDLLiteWriter getThreadWriter()
+	{
+		DIDLLiteWriter writer = (DIDLLiteWriter)threadWriter.get();
+		writer.reset();
+		return writer;
+	}
+
+	////////////////////////////////////////////////
+	// Buffer
+	////////////////////////////////////////////////
+
+	private char buf[];
+	private int count;
+
+	public void reset()
+	{
+		// Don't keep a huge buffer of a big response for each thread.
+		if (MAX_RETAINED_BUFFER_SIZE < buf.length)
+			buf = new char[DEFAULT_BUFFER_SIZE];
+		count = 0;
+	}
+
+	public int size()
+	{
+		return count;
+	}
+
+	private void ensureCapacity(int len)
+	{
+		int minCapacity = count + len;
+		if (minCapacity <= buf.length)
+			return;
+		int newCapacity = buf.length * 2;
+		if (newCapacity < minCapacity)
+			newCapacity = minCapacity;
+		char newBuf[] = new char[newCapacity];
+		System.arraycopy(buf, 0, newBuf, 0, count);
+		buf = newBuf;
+	}
+
+	////////////////////////////////////////////////
+	// write
+	////////////////////////////////////////////////
+
+	private void writeEntity(String entity)
+	{
+		int len = entity.length();
+		entity.getChars(0, len, buf, count);
+		count += len;
+	}
+
+	// Returns false for the chars which are not allowed in XML 1.0 such as the C0 controls in ID3 tags.
+	private final static boolean isXMLChar(char c)
+	{
+		if (c < 0x20)
+			return (c == '\t' || c == '\n' || c == '\r') ? true : false;
+		if (c == 0xFFFE || c == 0xFFFF)
+			return false;
+		return true;
+	}
+
+	// The text of the DIDL-Lite. The chars which are not allowed in XML are dropped and
+	// the unpaired surrogates are replaced with U+FFFD, not to break the whole Result.
+	public void printEscaped(String str)
+	{
+		if (str == null)
+			return;
+		int strLen = str.length();
+		// An escaped char is at most 6 chars ("&quot;").
+		ensureCapacity(strLen * 6);
+		for (int n=0; n<strLen; n++) {
+			char c = str.charAt(n);
+			switch (c) {
+			case '&':
+				writeEntity("&amp;");
+				continue;
+			case '<':
+				writeEntity("&lt;");
+				continue;
+			case '>':
+				writeEntity("&gt;");
+				continue;
+			case '"':
+				writeEntity("&quot;");
+				continue;
+			case '\'':
+				writeEntity("&apos;");
+				continue;
+			}
+			if (Character.MIN_SURROGATE <= c && c <= Character.MAX_SURROGATE) {
+				if (Character.isHighSurrogate(c) == true && (n+1) < strLen && Character.isLowSurrogate(str.charAt(n+1)) == true) {
+					buf[count++] = c;
+					buf[count++] = str.charAt(++n);
+				}
+				else
+					buf[count++] = REPLACEMENT_CHAR;
+				continue;
+			}
+			if (isXMLChar(c) == false)
+				continue;
+			buf[count++] = c;
+		}
+	}
+
+	// The names and the markups which are written as they are.
+	public void print(String str)
+	{
+		if (str == null)
+			return;
+		int strLen = str.length();
+		ensureCapacity(strLen);
+		str.getChars(0, strLen, buf, count);
+		count += strLen;
+	}
+
+	public void println()
+	{
+		ensureCapacity(1);
+		buf[count++] = '\n';
+	}
+
+	public void printAttribute(String name, String value)
+	{
+		print(" ");
+		print(name);
+		print("=\"");
+		printEscaped(value);
+		print("\"");
+	}
+
+	public void printElement(String name, String value)
+	{
+		print("<");
+		print(name);
+		print(">");
+		printEscaped(value);
+		print("</");
+		print(name);
+		print(">");
+		println();
+	}
+
+	////////////////////////////////////////////////
+	// output
+	////////////////////////////////////////////////
+
+	public String toString()
+	{
+		return new String(buf, 0, count);
+	}
+}
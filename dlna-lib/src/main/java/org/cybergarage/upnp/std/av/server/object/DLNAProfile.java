@@ -0,0 +1,68 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File: DLNAProfile.java
+*
+*	Revision;
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object;
+
+import java.util.*;
+
+// The DLNA.ORG_PN profiles of the MIME types which are advertised by GetProtocolInfo.
+public class DLNAProfile
+{
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+
+	public final static String ORG_PN = "DLNA.ORG_PN";
+
+	private final static String PROFILES[][] = {
+		{ "image/jpeg", "JPEG_SM", "JPEG_MED", "JPEG_LRG", "JPEG_TN" },
+		{ "image/png", "PNG_LRG", "PNG_TN" },
+		{ "image/gif", "GIF_LRG" },
+		{ "audio/mpeg", "MP3" },
+		{ "audio/mp4", "AAC_ISO_320", "AAC_ISO" },
+		{ "audio/L16", "LPCM" },
+		{ "video/mpeg", "MPEG_PS_NTSC", "MPEG_PS_PAL", "MPEG1" },
+		{ "video/mp4", "AVC_MP4_BL_CIF15_AAC_520", "AVC_MP4_MP_SD_AAC_MULT5", "AVC_MP4_MP_HD_720p_AAC", "AVC_MP4_MP_HD_1080i_AAC" },
+		{ "video/mp2t", "MPEG_TS_SD_NA_ISO", "MPEG_TS_SD_EU_ISO", "MPEG_TS_HD_NA_ISO", "AVC_TS_MP_SD_AAC_MULT5_ISO", "AVC_TS_MP_HD_AAC_MULT5_ISO" },
+	};
+
+	////////////////////////////////////////////////
+	// Profile IDs
+	////////////////////////////////////////////////
+
+	// MIME type -> Profile IDs, which is built once and never changed not to invalidate
+	// the cached GetProtocolInfo of ContentDirectory.
+	private final static HashMap profileMap = createProfileMap();
+
+	private static HashMap createProfileMap()
+	{
+		HashMap map = new HashMap();
+		for (int n=0; n<PROFILES.length; n++) {
+			String profileIDs[] = new String[PROFILES[n].length - 1];
+			System.arraycopy(PROFILES[n], 1, profileIDs, 0, profileIDs.length);
+			map.put(PROFILES[n][0].toLowerCase(Locale.US), profileIDs);
+		}
+		return map;
+	}
+
+	// Returns the profiles of the MIME type, or an empty array such as video/x-matroska which has no DLNA profile.
+	public final static String[] getProfileIDs(String mimeType)
+	{
+		String profileIDs[] = (String[])profileMap.get(mimeType.toLowerCase(Locale.US));
+		if (profileIDs == null)
+			return new String[0];
+		return (String[])profileIDs.clone();
+	}
+}
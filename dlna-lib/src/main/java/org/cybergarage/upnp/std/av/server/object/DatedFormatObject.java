@@ -0,0 +1,23 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File: DatedFormatObject.java
+*
+*	Revision;
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object;
+
+// A FormatObject which has the recorded date such as DateTimeOriginal of EXIF for dc:date.
+public interface DatedFormatObject extends FormatObject
+{
+	// Returns the date as the milliseconds since the epoch, or -1 when the object has no date.
+	public abstract long getDateTime();
+}
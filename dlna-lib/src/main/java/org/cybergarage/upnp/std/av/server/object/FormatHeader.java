@@ -0,0 +1,179 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File: FormatHeader.java
+*
+*	Revision;
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object;
+
+import java.io.*;
+import java.util.*;
+
+import org.cybergarage.util.*;
+
+// The leading bytes of a file which are read only once for all formats.
+public class FormatHeader
+{
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+
+	public final static int DEFAULT_SIZE = 16 * 1024;
+
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+
+	public FormatHeader(File file, int size)
+	{
+		headerFile = file;
+		headerBytes = new byte[0];
+		headerLength = 0;
+		load(size);
+	}
+
+	public FormatHeader(File file)
+	{
+		this(file, DEFAULT_SIZE);
+	}
+
+	// The bytes in the memory such as an album art, which are the whole "file" without any File.
+	public FormatHeader(byte data[], int len)
+	{
+		headerFile = null;
+		headerBytes = data;
+		headerLength = Math.max(0, Math.min(len, data.length));
+	}
+
+	////////////////////////////////////////////////
+	// File
+	////////////////////////////////////////////////
+
+	private File headerFile;
+
+	public File getFile()
+	{
+		return headerFile;
+	}
+
+	public long getFileLength()
+	{
+		if (headerFile == null)
+			return headerLength;
+		return headerFile.length();
+	}
+
+	public String getSuffix()
+	{
+		if (headerFile == null)
+			return "";
+		String fname = headerFile.getName();
+		int idx = fname.lastIndexOf(".");
+		if (idx < 0)
+			return "";
+		return fname.substring(idx+1, fname.length()).toLowerCase(Locale.US);
+	}
+
+	////////////////////////////////////////////////
+	// load
+	////////////////////////////////////////////////
+
+	private byte headerBytes[];
+	private int headerLength;
+
+	private boolean load(int size)
+	{
+		long fileLength = headerFile.length();
+		if (fileLength < size)
+			size = (int)fileLength;
+		if (size <= 0)
+			return false;
+
+		byte buf[] = new byte[size];
+		int readLen = 0;
+		FileInputStream in = null;
+		try {
+			in = new FileInputStream(headerFile);
+			while (readLen < size) {
+				int len = in.read(buf, readLen, size - readLen);
+				if (len < 0)
+					break;
+				readLen += len;
+			}
+		}
+		catch (Exception e) {
+			Debug.warning(e);
+		}
+		finally {
+			if (in != null) {
+				try {
+					in.close();
+				}
+				catch (IOException e) {}
+			}
+		}
+
+		headerBytes = buf;
+		headerLength = readLen;
+		return (0 < readLen) ? true : false;
+	}
+
+	////////////////////////////////////////////////
+	// Bytes
+	////////////////////////////////////////////////
+
+	public byte[] getBytes()
+	{
+		return headerBytes;
+	}
+
+	public int getLength()
+	{
+		return headerLength;
+	}
+
+	// Returns true when the whole file is in the header.
+	public boolean isComplete()
+	{
+		return (getFileLength() <= headerLength) ? true : false;
+	}
+
+	// Returns the unsigned byte, or -1 over the header.
+	public int getByte(int offset)
+	{
+		if (offset < 0 || headerLength <= offset)
+			return -1;
+		return headerBytes[offset] & 0xFF;
+	}
+
+	public boolean startsWith(String id, int offset)
+	{
+		int idLen = id.length();
+		if (offset < 0 || headerLength < (offset + idLen))
+			return false;
+		for (int n=0; n<idLen; n++) {
+			if ((headerBytes[offset + n] & 0xFF) != id.charAt(n))
+				return false;
+		}
+		return true;
+	}
+
+	public boolean startsWith(String id)
+	{
+		return startsWith(id, 0);
+	}
+
+	public InputStream getInputStream()
+	{
+		return new ByteArrayInputStream(headerBytes, 0, headerLength);
+	}
+}
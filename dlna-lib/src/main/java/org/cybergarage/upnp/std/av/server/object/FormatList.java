@@ -10,6 +10,8 @@
 *
 *	01/12/04
 *		- first revision.
+*	10/17/26
+*		- Added getFormat(FormatHeader) to detect the format with the header which is read only once.
 *
 ******************************************************************/
 
@@ -43,19 +45,37 @@ public class FormatList extends Vector
 		return null;
 	}
 
-	public Format getFormat(File file) 
+	public Format getFormat(FormatHeader header) 
 	{
-		if (file == null)
+		if (header == null)
 			return null;
 		
 		int nLists = size(); 
 		for (int n=0; n<nLists; n++) {
 			Format format = getFormat(n);
-			if (format.equals(file) == false)
+			if (format instanceof HeaderFormat) {
+				if (((HeaderFormat)format).equals(header) == false)
+					continue;
+			}
+			else if (format.equals(header.getFile()) == false)
 				continue;
 			return format;
 		}
 		return null;
 	}
+
+	public Format getFormat(File file) 
+	{
+		if (file == null)
+			return null;
+		return getFormat(new FormatHeader(file));
+	}
+
+	public static FormatObject createObject(Format format, FormatHeader header)
+	{
+		if (format instanceof HeaderFormat)
+			return ((HeaderFormat)format).createObject(header);
+		return format.createObject(header.getFile());
+	}
 }
 
@@ -0,0 +1,23 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File: HeaderFormat.java
+*
+*	Revision;
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object;
+
+// A Format which detects the file and extracts the metadata with the header which is read by FormatList.
+public interface HeaderFormat extends Format
+{
+	public abstract boolean equals(FormatHeader header);
+	public abstract FormatObject createObject(FormatHeader header);
+}
@@ -10,11 +10,15 @@
 *
 *	08/16/04
 *		- first revision.
+*	10/17/26
+*		- Added compare(String) to compare a property value case-insensitively.
 *
 ******************************************************************/
 
 package org.cybergarage.upnp.std.av.server.object;
 
+import java.util.*;
+
 public class SearchCriteria
 {
 	////////////////////////////////////////////////
@@ -218,5 +222,53 @@ public class SearchCriteria
 	{
 		return result;
 	}
-}
 
+	////////////////////////////////////////////////
+	// compare
+	////////////////////////////////////////////////
+
+	public final static String normalizeValue(String value)
+	{
+		if (value == null)
+			return "";
+		return value.toLowerCase(Locale.US);
+	}
+	
+	public boolean compare(String propValue)
+	{
+		String propStr = normalizeValue(propValue);
+		
+		if (isExists() == true) {
+			boolean hasValue = (0 < propStr.length()) ? true : false;
+			return (hasValue == isTrueValue()) ? true : false;
+		}
+		
+		// Nodes which don't have the property never match the other operators.
+		if (propStr.length() <= 0)
+			return false;
+		
+		String criStr = normalizeValue(getValue());
+		if (isContains() == true)
+			return (0 <= propStr.indexOf(criStr)) ? true : false;
+		if (isDoesNotContain() == true)
+			return (propStr.indexOf(criStr) < 0) ? true : false;
+		if (isDerivedFrom() == true)
+			return (propStr.equals(criStr) == true || propStr.startsWith(criStr + ".") == true) ? true : false;
+		
+		int cmpRet = propStr.compareTo(criStr);
+		if (isEQ() == true)
+			return (cmpRet == 0) ? true : false;
+		if (isNEQ() == true)
+			return (cmpRet != 0) ? true : false;
+		if (isLT() == true)
+			return (cmpRet < 0) ? true : false;
+		if (isLE() == true)
+			return (cmpRet <= 0) ? true : false;
+		if (isGT() == true)
+			return (0 < cmpRet) ? true : false;
+		if (isGE() == true)
+			return (0 <= cmpRet) ? true : false;
+		
+		return false;
+	}
+}
@@ -10,6 +10,8 @@
 *
 *	08/07/04
 *		- first revision.
+*	10/17/26
+*		- Removed compare() and lookup() which are replaced by SearchExpression of SearchCriteriaParser.
 *
 ******************************************************************/
 
@@ -41,59 +43,4 @@ public class SearchCriteriaList extends Vector
 		}
 		return null;
 	}
-
-	////////////////////////////////////////////////
-	// compare
-	////////////////////////////////////////////////
-
-	public boolean compare(ContentNode cnode, SearchCapList searchCapList)
-	{
-		int n;
-		int searchCriCnt = size();
-	
-		// Set compare result
-		for (n=0; n<searchCriCnt; n++) {
-			SearchCriteria searchCri = getSearchCriteria(n);
-			String property = searchCri.getProperty();
-			if (property == null) {
-				searchCri.setResult(true);
-				continue;
-			}
-			SearchCap searchCap = searchCapList.getSearchCap(property);
-			if (searchCap == null) {
-				searchCri.setResult(true);
-				continue;
-			}
-			boolean cmpResult = searchCap.compare(searchCri, cnode);
-			searchCri.setResult(cmpResult);
-		}
-
-		// Eval only logical ADD operation at first;
-		SearchCriteriaList orSearchCriList = new SearchCriteriaList();
-		for (n=0; n<searchCriCnt; n++) {
-			SearchCriteria currSearchCri = getSearchCriteria(n);
-			if (n<(searchCriCnt-1)) {
-				if (currSearchCri.isLogicalAND() == true) {
-					SearchCriteria nextSearchCri = getSearchCriteria(n+1);
-					boolean currResult = currSearchCri.getResult();
-					boolean nextResult = nextSearchCri.getResult();
-					boolean logicalAND = (currResult & nextResult) ? true : false;
-					nextSearchCri.setResult(logicalAND);
-					continue;
-				}
-			}
-			SearchCriteria orSearchCri = new SearchCriteria(currSearchCri);
-			orSearchCriList.add(orSearchCri);
-		}
-
-		// Eval logical OR operation;
-		int orSearchCriCnt = orSearchCriList.size();
-		for (n=0; n<orSearchCriCnt; n++) {
-			SearchCriteria searchCri = getSearchCriteria(n);
-			if (searchCri.getResult() == true)
-				return true;
-		}
-
-		return false;
-	}
 }
@@ -0,0 +1,24 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File: SearchCriteriaParseException.java
+*
+*	Revision:
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object;
+
+public class SearchCriteriaParseException extends Exception
+{
+	public SearchCriteriaParseException(String msg, int offset)
+	{
+		super(msg + " at " + offset);
+	}
+}
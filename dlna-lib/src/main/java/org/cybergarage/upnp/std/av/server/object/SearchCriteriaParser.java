@@ -0,0 +1,280 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File: SearchCriteriaParser.java
+*
+*	Revision:
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object;
+
+import java.util.*;
+
+import org.cybergarage.util.*;
+
+/*
+	searchCrit  ::= searchExp | '*'
+	searchExp   ::= relExp | searchExp logOp searchExp | '(' searchExp ')'
+	logOp       ::= 'and' | 'or'
+	relExp      ::= property binOp quotedVal | property existsOp boolVal
+	binOp       ::= '=' | '!=' | '<' | '<=' | '>' | '>=' | 'contains' | 'doesNotContain' | 'derivedfrom'
+	existsOp    ::= 'exists'
+	boolVal     ::= 'true' | 'false'
+
+	'and' has a higher precedence than 'or'.
+*/
+
+public class SearchCriteriaParser
+{
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+
+	private final static String ALL = "*";
+
+	// The criteria come from the network, so the nested parentheses are limited not to overflow the stack.
+	public final static int MAX_NESTING_DEPTH = 32;
+
+	private final static String OPERATIONS[] = {
+		SearchCriteria.EQ,
+		SearchCriteria.NEQ,
+		SearchCriteria.LT,
+		SearchCriteria.LE,
+		SearchCriteria.GT,
+		SearchCriteria.GE,
+		SearchCriteria.CONTAINS,
+		SearchCriteria.DOESNOTCONTAIN,
+		SearchCriteria.DERIVEDFROM,
+		SearchCriteria.EXISTS,
+	};
+
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+
+	public SearchCriteriaParser()
+	{
+	}
+
+	////////////////////////////////////////////////
+	// Tokenizer
+	////////////////////////////////////////////////
+
+	private String criStr;
+	private int criIdx;
+	private String token;
+	private boolean tokenQuoted;
+	private int nestingDepth;
+
+	private static boolean isWhiteSpace(char c)
+	{
+		return (0 <= SearchCriteria.WCHARS.indexOf(c)) ? true : false;
+	}
+
+	private static boolean isDelimiter(char c)
+	{
+		if (isWhiteSpace(c) == true)
+			return true;
+		switch (c) {
+		case '(':
+		case ')':
+		case '"':
+		case '=':
+		case '!':
+		case '<':
+		case '>':
+			return true;
+		}
+		return false;
+	}
+
+	private void nextToken() throws SearchCriteriaParseException
+	{
+		int criLen = criStr.length();
+		while (criIdx < criLen && isWhiteSpace(criStr.charAt(criIdx)) == true)
+			criIdx++;
+
+		tokenQuoted = false;
+		if (criLen <= criIdx) {
+			token = null;
+			return;
+		}
+
+		int startIdx = criIdx;
+		char c = criStr.charAt(criIdx++);
+		switch (c) {
+		case '(':
+		case ')':
+		case '=':
+			token = String.valueOf(c);
+			return;
+		case '!':
+		case '<':
+		case '>':
+			if (criIdx < criLen && criStr.charAt(criIdx) == '=')
+				criIdx++;
+			token = criStr.substring(startIdx, criIdx);
+			return;
+		case '"':
+			StringBuffer quotedVal = new StringBuffer();
+			while (criIdx < criLen) {
+				c = criStr.charAt(criIdx++);
+				if (c == '"') {
+					token = quotedVal.toString();
+					tokenQuoted = true;
+					return;
+				}
+				if (c == '\\' && criIdx < criLen)
+					c = criStr.charAt(criIdx++);
+				quotedVal.append(c);
+			}
+			throw new SearchCriteriaParseException("Unterminated quoted value", startIdx);
+		}
+
+		while (criIdx < criLen && isDelimiter(criStr.charAt(criIdx)) == false)
+			criIdx++;
+		token = criStr.substring(startIdx, criIdx);
+	}
+
+	private boolean isToken(String value)
+	{
+		if (token == null || tokenQuoted == true)
+			return false;
+		return token.equalsIgnoreCase(value);
+	}
+
+	////////////////////////////////////////////////
+	// parse
+	////////////////////////////////////////////////
+
+	public synchronized SearchExpression parse(String searchCri)
+	{
+		if (searchCri == null)
+			return null;
+		searchCri = searchCri.trim();
+		if (searchCri.length() <= 0 || searchCri.equals(ALL) == true)
+			return new SearchLogicalExpression(SearchCriteria.AND, new SearchExpression[0]);
+
+		criStr = searchCri;
+		criIdx = 0;
+		nestingDepth = 0;
+		try {
+			nextToken();
+			SearchExpression expr = parseOr();
+			if (token != null)
+				throw new SearchCriteriaParseException("Unexpected token \"" + token + "\"", criIdx);
+			return expr;
+		}
+		catch (SearchCriteriaParseException e) {
+			Debug.warning("Invalid SearchCriteria (" + searchCri + ") : " + e.getMessage());
+		}
+		finally {
+			criStr = null;
+			token = null;
+		}
+		return null;
+	}
+
+	private SearchExpression parseOr() throws SearchCriteriaParseException
+	{
+		Vector exprList = new Vector();
+		exprList.add(parseAnd());
+		while (isToken(SearchCriteria.OR) == true) {
+			nextToken();
+			exprList.add(parseAnd());
+		}
+		return createLogicalExpression(SearchCriteria.OR, exprList);
+	}
+
+	private SearchExpression parseAnd() throws SearchCriteriaParseException
+	{
+		Vector exprList = new Vector();
+		exprList.add(parsePrimary());
+		while (isToken(SearchCriteria.AND) == true) {
+			nextToken();
+			exprList.add(parsePrimary());
+		}
+		return createLogicalExpression(SearchCriteria.AND, exprList);
+	}
+
+	private SearchExpression createLogicalExpression(String logic, Vector exprList)
+	{
+		if (exprList.size() == 1)
+			return (SearchExpression)exprList.get(0);
+		// Flatten the nested expressions of the same logic such as "(a and b) and c".
+		Vector flatExprList = new Vector();
+		int nExprs = exprList.size();
+		for (int n=0; n<nExprs; n++) {
+			SearchExpression expr = (SearchExpression)exprList.get(n);
+			if (expr instanceof SearchLogicalExpression) {
+				SearchLogicalExpression logicExpr = (SearchLogicalExpression)expr;
+				if (logic.equals(logicExpr.getLogic()) == true) {
+					int nLogicExprs = logicExpr.getNExpressions();
+					for (int i=0; i<nLogicExprs; i++)
+						flatExprList.add(logicExpr.getExpression(i));
+					continue;
+				}
+			}
+			flatExprList.add(expr);
+		}
+		SearchExpression exprs[] = new SearchExpression[flatExprList.size()];
+		flatExprList.copyInto(exprs);
+		return new SearchLogicalExpression(logic, exprs);
+	}
+
+	private SearchExpression parsePrimary() throws SearchCriteriaParseException
+	{
+		if (token == null)
+			throw new SearchCriteriaParseException("Unexpected end of criteria", criIdx);
+
+		if (isToken("(") == true) {
+			if (MAX_NESTING_DEPTH <= nestingDepth)
+				throw new SearchCriteriaParseException("Too deeply nested parentheses", criIdx);
+			nestingDepth++;
+			nextToken();
+			SearchExpression expr = parseOr();
+			if (isToken(")") == false)
+				throw new SearchCriteriaParseException("Missing \")\"", criIdx);
+			nextToken();
+			nestingDepth--;
+			return expr;
+		}
+
+		if (tokenQuoted == true || isDelimiter(token.charAt(0)) == true)
+			throw new SearchCriteriaParseException("Invalid property \"" + token + "\"", criIdx);
+		String property = token;
+
+		nextToken();
+		String operation = null;
+		for (int n=0; n<OPERATIONS.length; n++) {
+			if (isToken(OPERATIONS[n]) == true) {
+				operation = OPERATIONS[n];
+				break;
+			}
+		}
+		if (operation == null)
+			throw new SearchCriteriaParseException("Invalid operator \"" + token + "\" for " + property, criIdx);
+
+		nextToken();
+		if (token == null)
+			throw new SearchCriteriaParseException("Missing value for " + property, criIdx);
+		String value = token;
+		if (operation.equals(SearchCriteria.EXISTS) == true) {
+			value = value.toLowerCase(Locale.US);
+			if (value.equals(SearchCriteria.TRUE) == false && value.equals(SearchCriteria.FALSE) == false)
+				throw new SearchCriteriaParseException("Invalid exists value \"" + token + "\"", criIdx);
+		}
+		else if (tokenQuoted == false && isDelimiter(value.charAt(0)) == true)
+			throw new SearchCriteriaParseException("Invalid value \"" + token + "\"", criIdx);
+
+		nextToken();
+		return new SearchRelation(property, operation, value);
+	}
+}
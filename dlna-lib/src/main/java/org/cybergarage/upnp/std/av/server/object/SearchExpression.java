@@ -0,0 +1,25 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File: SearchExpression.java
+*
+*	Revision:
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object;
+
+import java.util.*;
+
+public interface SearchExpression
+{
+	public boolean compare(ContentNode conNode, SearchCapList searchCapList);
+	// Returns the document IDs of the index, or null when the index can't answer the expression.
+	public BitSet lookup(SearchIndex searchIndex);
+}
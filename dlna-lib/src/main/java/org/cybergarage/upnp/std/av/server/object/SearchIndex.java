@@ -0,0 +1,366 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003
+*
+*	File: SearchIndex.java
+*
+*	Revision;
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object;
+
+import java.util.*;
+
+public class SearchIndex
+{
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+
+	public final static String PROPERTY_NAMES[] = {
+		SearchCriteria.TITLE,
+		SearchCriteria.CREATOR,
+		SearchCriteria.CLASS,
+		SearchCriteria.DATE,
+	};
+
+	public final static int TRIGRAM_LENGTH = 3;
+
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+
+	public SearchIndex()
+	{
+		int nProps = PROPERTY_NAMES.length;
+		propIndex = new PropertyIndex[nProps];
+		for (int n=0; n<nProps; n++)
+			propIndex[n] = new PropertyIndex(PROPERTY_NAMES[n]);
+	}
+
+	////////////////////////////////////////////////
+	// PropertyIndex
+	////////////////////////////////////////////////
+
+	private static class PropertyIndex
+	{
+		String name;
+		// Normalized value -> BitSet of the document IDs.
+		TreeMap valueMap = new TreeMap();
+		// Trigram of the normalized value -> BitSet of the document IDs.
+		HashMap trigramMap = new HashMap();
+		// Document IDs which have the property.
+		BitSet existSet = new BitSet();
+
+		PropertyIndex(String name)
+		{
+			this.name = name;
+		}
+	}
+
+	private PropertyIndex propIndex[];
+
+	private PropertyIndex getPropertyIndex(String name)
+	{
+		if (name == null)
+			return null;
+		for (int n=0; n<propIndex.length; n++) {
+			if (propIndex[n].name.equals(name) == true)
+				return propIndex[n];
+		}
+		return null;
+	}
+
+	public boolean hasProperty(String name)
+	{
+		return (getPropertyIndex(name) != null) ? true : false;
+	}
+
+	////////////////////////////////////////////////
+	// Document
+	////////////////////////////////////////////////
+
+	private static class IndexEntry
+	{
+		int docID;
+		ContentNode node;
+		String value[];
+	}
+
+	// ContentNode -> IndexEntry
+	private IdentityHashMap entryMap = new IdentityHashMap();
+	// Document ID -> IndexEntry
+	private Vector docEntryList = new Vector();
+	private BitSet docSet = new BitSet();
+
+	public synchronized int size()
+	{
+		return entryMap.size();
+	}
+
+	public synchronized ContentNode getContentNode(int docID)
+	{
+		if (docID < 0 || docEntryList.size() <= docID)
+			return null;
+		IndexEntry entry = (IndexEntry)docEntryList.get(docID);
+		if (entry == null)
+			return null;
+		return entry.node;
+	}
+
+	public synchronized int getDocID(ContentNode node)
+	{
+		IndexEntry entry = (IndexEntry)entryMap.get(node);
+		if (entry == null)
+			return -1;
+		return entry.docID;
+	}
+
+	private String[] getIndexValues(ContentNode node)
+	{
+		int nProps = propIndex.length;
+		String value[] = new String[nProps];
+		for (int n=0; n<nProps; n++)
+			value[n] = SearchCriteria.normalizeValue(node.getPropertyValue(propIndex[n].name));
+		return value;
+	}
+
+	private static BitSet getBitSet(Map map, Object key)
+	{
+		BitSet bitSet = (BitSet)map.get(key);
+		if (bitSet == null) {
+			bitSet = new BitSet();
+			map.put(key, bitSet);
+		}
+		return bitSet;
+	}
+
+	private static void clearBitSet(Map map, Object key, int docID)
+	{
+		BitSet bitSet = (BitSet)map.get(key);
+		if (bitSet == null)
+			return;
+		bitSet.clear(docID);
+		if (bitSet.isEmpty() == true)
+			map.remove(key);
+	}
+
+	private void addPostings(IndexEntry entry)
+	{
+		int docID = entry.docID;
+		for (int n=0; n<propIndex.length; n++) {
+			String value = entry.value[n];
+			if (value.length() <= 0)
+				continue;
+			PropertyIndex index = propIndex[n];
+			index.existSet.set(docID);
+			getBitSet(index.valueMap, value).set(docID);
+			int nTrigrams = value.length() - TRIGRAM_LENGTH + 1;
+			for (int i=0; i<nTrigrams; i++)
+				getBitSet(index.trigramMap, value.substring(i, i + TRIGRAM_LENGTH)).set(docID);
+		}
+	}
+
+	private void removePostings(IndexEntry entry)
+	{
+		int docID = entry.docID;
+		for (int n=0; n<propIndex.length; n++) {
+			String value = entry.value[n];
+			if (value.length() <= 0)
+				continue;
+			PropertyIndex index = propIndex[n];
+			index.existSet.clear(docID);
+			clearBitSet(index.valueMap, value, docID);
+			int nTrigrams = value.length() - TRIGRAM_LENGTH + 1;
+			for (int i=0; i<nTrigrams; i++)
+				clearBitSet(index.trigramMap, value.substring(i, i + TRIGRAM_LENGTH), docID);
+		}
+	}
+
+	////////////////////////////////////////////////
+	// add/remove/update
+	////////////////////////////////////////////////
+
+	public synchronized void addContentNode(ContentNode node)
+	{
+		if (entryMap.containsKey(node) == true) {
+			updateContentNode(node);
+			return;
+		}
+		IndexEntry entry = new IndexEntry();
+		entry.docID = docSet.nextClearBit(0);
+		entry.node = node;
+		entry.value = getIndexValues(node);
+		docSet.set(entry.docID);
+		if (docEntryList.size() <= entry.docID)
+			docEntryList.setSize(entry.docID + 1);
+		docEntryList.set(entry.docID, entry);
+		entryMap.put(node, entry);
+		addPostings(entry);
+	}
+
+	public synchronized void removeContentNode(ContentNode node)
+	{
+		IndexEntry entry = (IndexEntry)entryMap.remove(node);
+		if (entry == null)
+			return;
+		removePostings(entry);
+		docSet.clear(entry.docID);
+		docEntryList.set(entry.docID, null);
+	}
+
+	public synchronized void updateContentNode(ContentNode node)
+	{
+		IndexEntry entry = (IndexEntry)entryMap.get(node);
+		if (entry == null)
+			return;
+		String value[] = getIndexValues(node);
+		if (Arrays.equals(entry.value, value) == true)
+			return;
+		removePostings(entry);
+		entry.value = value;
+		addPostings(entry);
+	}
+
+	public synchronized void clear()
+	{
+		for (int n=0; n<propIndex.length; n++)
+			propIndex[n] = new PropertyIndex(propIndex[n].name);
+		entryMap.clear();
+		docEntryList.clear();
+		docSet.clear();
+	}
+
+	////////////////////////////////////////////////
+	// lookup
+	////////////////////////////////////////////////
+
+	public synchronized BitSet getContentNodeSet()
+	{
+		return (BitSet)docSet.clone();
+	}
+
+	private static BitSet unionValues(Map valueMap)
+	{
+		BitSet result = new BitSet();
+		Iterator valueIt = valueMap.values().iterator();
+		while (valueIt.hasNext() == true)
+			result.or((BitSet)valueIt.next());
+		return result;
+	}
+
+	private BitSet lookupEQ(PropertyIndex index, String value)
+	{
+		BitSet bitSet = (BitSet)index.valueMap.get(value);
+		if (bitSet == null)
+			return new BitSet();
+		return (BitSet)bitSet.clone();
+	}
+
+	private BitSet lookupContains(PropertyIndex index, String value, int propIdx)
+	{
+		if (value.length() <= 0)
+			return (BitSet)index.existSet.clone();
+
+		BitSet result = new BitSet();
+
+		// Too short for a trigram, so scan the distinct values instead of the nodes.
+		if (value.length() < TRIGRAM_LENGTH) {
+			Iterator entryIt = index.valueMap.entrySet().iterator();
+			while (entryIt.hasNext() == true) {
+				Map.Entry valueEntry = (Map.Entry)entryIt.next();
+				String key = (String)valueEntry.getKey();
+				if (0 <= key.indexOf(value))
+					result.or((BitSet)valueEntry.getValue());
+			}
+			return result;
+		}
+
+		int nTrigrams = value.length() - TRIGRAM_LENGTH + 1;
+		for (int n=0; n<nTrigrams; n++) {
+			BitSet trigramSet = (BitSet)index.trigramMap.get(value.substring(n, n + TRIGRAM_LENGTH));
+			if (trigramSet == null)
+				return new BitSet();
+			if (n == 0)
+				result.or(trigramSet);
+			else
+				result.and(trigramSet);
+			if (result.isEmpty() == true)
+				return result;
+		}
+
+		// The trigrams may be in the other order, so verify the candidates.
+		if (TRIGRAM_LENGTH < value.length()) {
+			for (int docID = result.nextSetBit(0); 0 <= docID; docID = result.nextSetBit(docID + 1)) {
+				IndexEntry entry = (IndexEntry)docEntryList.get(docID);
+				if (entry.value[propIdx].indexOf(value) < 0)
+					result.clear(docID);
+			}
+		}
+
+		return result;
+	}
+
+	private BitSet lookupDerivedFrom(PropertyIndex index, String value)
+	{
+		BitSet result = lookupEQ(index, value);
+		String prefix = value + ".";
+		SortedMap prefixMap = index.valueMap.subMap(prefix, prefix + Character.MAX_VALUE);
+		result.or(unionValues(prefixMap));
+		return result;
+	}
+
+	public synchronized BitSet lookup(SearchCriteria searchCri)
+	{
+		PropertyIndex index = getPropertyIndex(searchCri.getProperty());
+		if (index == null)
+			return null;
+		int propIdx = 0;
+		while (propIndex[propIdx] != index)
+			propIdx++;
+
+		String value = SearchCriteria.normalizeValue(searchCri.getValue());
+
+		if (searchCri.isExists() == true) {
+			if (searchCri.isTrueValue() == true)
+				return (BitSet)index.existSet.clone();
+			BitSet result = (BitSet)docSet.clone();
+			result.andNot(index.existSet);
+			return result;
+		}
+
+		// Nodes which don't have the property never match the other operators.
+		if (searchCri.isEQ() == true)
+			return lookupEQ(index, value);
+		if (searchCri.isNEQ() == true) {
+			BitSet result = (BitSet)index.existSet.clone();
+			result.andNot(lookupEQ(index, value));
+			return result;
+		}
+		if (searchCri.isLT() == true)
+			return unionValues(index.valueMap.headMap(value, false));
+		if (searchCri.isLE() == true)
+			return unionValues(index.valueMap.headMap(value, true));
+		if (searchCri.isGT() == true)
+			return unionValues(index.valueMap.tailMap(value, false));
+		if (searchCri.isGE() == true)
+			return unionValues(index.valueMap.tailMap(value, true));
+		if (searchCri.isContains() == true)
+			return lookupContains(index, value, propIdx);
+		if (searchCri.isDoesNotContain() == true) {
+			BitSet result = (BitSet)index.existSet.clone();
+			result.andNot(lookupContains(index, value, propIdx));
+			return result;
+		}
+		if (searchCri.isDerivedFrom() == true)
+			return lookupDerivedFrom(index, value);
+
+		return null;
+	}
+}
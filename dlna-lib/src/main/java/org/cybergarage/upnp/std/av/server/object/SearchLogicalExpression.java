@@ -0,0 +1,121 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File: SearchLogicalExpression.java
+*
+*	Revision:
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object;
+
+import java.util.*;
+
+public class SearchLogicalExpression implements SearchExpression
+{
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+	
+	public SearchLogicalExpression(String logic, SearchExpression exprs[])
+	{
+		this.logic = logic;
+		andFlag = (SearchCriteria.AND.equals(logic) == true) ? true : false;
+		this.exprs = (SearchExpression[])exprs.clone();
+	}
+
+	////////////////////////////////////////////////
+	// Logic
+	////////////////////////////////////////////////
+
+	private final String logic;
+	private final boolean andFlag;
+	private final SearchExpression exprs[];
+	
+	public String getLogic()
+	{
+		return logic;
+	}
+	
+	public boolean isLogicalAND()
+	{
+		return andFlag;
+	}
+
+	public boolean isLogicalOR()
+	{
+		return !andFlag;
+	}
+	
+	public int getNExpressions()
+	{
+		return exprs.length;
+	}
+
+	public SearchExpression getExpression(int n)
+	{
+		return exprs[n];
+	}
+
+	////////////////////////////////////////////////
+	// SearchExpression
+	////////////////////////////////////////////////
+	
+	public boolean compare(ContentNode conNode, SearchCapList searchCapList)
+	{
+		// Stop at the first false for AND and at the first true for OR.
+		for (int n=0; n<exprs.length; n++) {
+			boolean result = exprs[n].compare(conNode, searchCapList);
+			if (result != andFlag)
+				return result;
+		}
+		// An empty AND expression matches all nodes for the "*" criteria.
+		return andFlag;
+	}
+
+	public BitSet lookup(SearchIndex searchIndex)
+	{
+		if (exprs.length <= 0)
+			return (andFlag == true) ? searchIndex.getContentNodeSet() : new BitSet();
+		BitSet result = null;
+		for (int n=0; n<exprs.length; n++) {
+			BitSet exprResult = exprs[n].lookup(searchIndex);
+			if (exprResult == null)
+				return null;
+			if (result == null) {
+				result = exprResult;
+				continue;
+			}
+			if (andFlag == true)
+				result.and(exprResult);
+			else
+				result.or(exprResult);
+		}
+		return result;
+	}
+
+	////////////////////////////////////////////////
+	// toString
+	////////////////////////////////////////////////
+	
+	public String toString()
+	{
+		if (exprs.length <= 0)
+			return "*";
+		StringBuffer exprStr = new StringBuffer();
+		exprStr.append('(');
+		for (int n=0; n<exprs.length; n++) {
+			if (0 < n)
+				exprStr.append(' ').append(logic).append(' ');
+			exprStr.append(exprs[n].toString());
+		}
+		exprStr.append(')');
+		return exprStr.toString();
+	}
+}
@@ -0,0 +1,80 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File: SearchRelation.java
+*
+*	Revision:
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object;
+
+import java.util.*;
+
+public class SearchRelation implements SearchExpression
+{
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+	
+	public SearchRelation(String property, String operation, String value)
+	{
+		searchCri = new SearchCriteria();
+		searchCri.setProperty(property);
+		searchCri.setOperation(operation);
+		searchCri.setValue(value);
+	}
+
+	////////////////////////////////////////////////
+	// SearchCriteria
+	////////////////////////////////////////////////
+
+	private final SearchCriteria searchCri;
+	
+	public String getProperty()
+	{
+		return searchCri.getProperty();
+	}
+
+	public String getOperation()
+	{
+		return searchCri.getOperation();
+	}
+
+	public String getValue()
+	{
+		return searchCri.getValue();
+	}
+
+	////////////////////////////////////////////////
+	// SearchExpression
+	////////////////////////////////////////////////
+	
+	public boolean compare(ContentNode conNode, SearchCapList searchCapList)
+	{
+		SearchCap searchCap = searchCapList.getSearchCap(searchCri.getProperty());
+		if (searchCap == null)
+			return true;
+		return searchCap.compare(searchCri, conNode);
+	}
+
+	public BitSet lookup(SearchIndex searchIndex)
+	{
+		return searchIndex.lookup(searchCri);
+	}
+
+	////////////////////////////////////////////////
+	// toString
+	////////////////////////////////////////////////
+	
+	public String toString()
+	{
+		return getProperty() + " " + getOperation() + " \"" + getValue() + "\"";
+	}
+}
@@ -10,6 +10,8 @@
 *
 *	02/03/04
 *		- first revision.
+*	10/17/26
+*		- Added SortKeyCap to extract the sort key only once for each node.
 *
 ******************************************************************/
 
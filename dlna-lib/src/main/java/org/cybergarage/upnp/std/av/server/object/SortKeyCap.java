@@ -0,0 +1,24 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File: SortKeyCap.java
+*
+*	Revision;
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object;
+
+// A SortCap which extracts the sort key of a node. ContentNodeComparator extracts the keys only once
+// for each node with it, and the other SortCaps are sorted with compare().
+public interface SortKeyCap extends SortCap
+{
+	// Returns the key which is ordered as compare(), or null which is ordered first.
+	public abstract Comparable getSortKey(ContentNode conNode);
+}
@@ -10,12 +10,21 @@
 *
 *	10/22/03
 *		- first revision.
+*	10/17/26
+*		- Changed addContentNode() and removeContentNode() to update the ID index of ContentDirectory.
+*		- Added a LRU cache of the sorted child nodes.
+*		- Added the container update ID which is updated when the child nodes are changed.
+*		- Changed addContentNode() and removeContentNode() to index the child nodes only when the container is attached.
+*		- Changed addContentNode(), removeContentNode() and removeAllContentNodes() to take the lock of ContentDirectory.
 *
 ******************************************************************/
 
 package org.cybergarage.upnp.std.av.server.object.container;
 
+import java.util.*;
+
 import org.cybergarage.xml.*;
+import org.cybergarage.upnp.std.av.server.*;
 import org.cybergarage.upnp.std.av.server.object.*;
 import org.cybergarage.upnp.std.av.server.object.item.ItemNode;
 
@@ -107,24 +116,140 @@ public class ContainerNode extends ContentNode
 		return (ContentNode)getNode(name);
 	}
 	
+	// The child nodes are changed in the lock of ContentDirectory not to break Browse and Search which read them.
 	public void removeAllContentNodes()
 	{
-		removeAllNodes();	
+		ContentDirectory cdir = getContentDirectory();
+		if (cdir != null)
+			cdir.lock();
+		try {
+			if (cdir != null && cdir.hasContentNodeIndex(this) == true) {
+				int nodeCnt = getNContentNodes();
+				for (int n=0; n<nodeCnt; n++)
+					cdir.removeContentNodeIndex(getContentNode(n));
+			}
+			removeAllNodes();	
+			clearSortedContentNodes();
+			updateContainerUpdateID();
+		}
+		finally {
+			if (cdir != null)
+				cdir.unlock();
+		}
 	}
 	
 	public void addContentNode(ContentNode node) 
 	{
-		addNode(node);
-		node.setParentID(getID());
-		setChildCount(getNContentNodes());
-		node.setContentDirectory(getContentDirectory());
+		ContentDirectory cdir = getContentDirectory();
+		if (cdir != null)
+			cdir.lock();
+		try {
+			addNode(node);
+			node.setParentID(getID());
+			setChildCount(getNContentNodes());
+			node.setContentDirectory(cdir);
+			// The nodes of a detached container such as a directory which is being added are indexed when it is attached.
+			if (cdir != null && cdir.hasContentNodeIndex(this) == true)
+				cdir.addContentNodeIndex(node);
+			clearSortedContentNodes();
+			updateContainerUpdateID();
+		}
+		finally {
+			if (cdir != null)
+				cdir.unlock();
+		}
 	}
 
 	public boolean removeContentNode(ContentNode node) 
 	{
-		boolean ret = removeNode(node);
-		setChildCount(getNContentNodes());
-		return ret;
+		ContentDirectory cdir = getContentDirectory();
+		if (cdir != null)
+			cdir.lock();
+		try {
+			boolean ret = removeNode(node);
+			setChildCount(getNContentNodes());
+			if (ret == true && cdir != null && cdir.hasContentNodeIndex(this) == true)
+				cdir.removeContentNodeIndex(node);
+			clearSortedContentNodes();
+			if (ret == true)
+				updateContainerUpdateID();
+			return ret;
+		}
+		finally {
+			if (cdir != null)
+				cdir.unlock();
+		}
+	}
+
+	////////////////////////////////////////////////
+	//	ContainerUpdateID
+	////////////////////////////////////////////////
+
+	private int containerUpdateID = 0;
+	
+	public synchronized int getContainerUpdateID()
+	{
+		return containerUpdateID;
+	}
+	
+	// Called when the child nodes are added, removed or modified. ContentDirectory sends
+	// the new ID with ContainerUpdateIDs at the next moderated event.
+	public void updateContainerUpdateID()
+	{
+		synchronized (this) {
+			containerUpdateID++;
+		}
+		ContentDirectory cdir = getContentDirectory();
+		if (cdir != null)
+			cdir.addUpdatedContainerNode(this);
+	}
+
+	////////////////////////////////////////////////
+	//	Sorted child nodes
+	////////////////////////////////////////////////
+
+	public final static int SORTED_CONTENT_NODES_CACHE_SIZE = 4;
+	
+	private static class SortedContentNodes
+	{
+		int updateID;
+		ContentNode contentNodes[];
+	}
+	
+	private LinkedHashMap sortedNodesMap = null;
+	
+	public synchronized ContentNode[] getSortedContentNodes(String sortCriteria, int updateID)
+	{
+		if (sortedNodesMap == null)
+			return null;
+		SortedContentNodes sortedNodes = (SortedContentNodes)sortedNodesMap.get(sortCriteria);
+		if (sortedNodes == null)
+			return null;
+		if (sortedNodes.updateID != updateID) {
+			sortedNodesMap.remove(sortCriteria);
+			return null;
+		}
+		return sortedNodes.contentNodes;
+	}
+	
+	public synchronized void setSortedContentNodes(String sortCriteria, int updateID, ContentNode contentNodes[])
+	{
+		if (sortedNodesMap == null) {
+			sortedNodesMap = new LinkedHashMap(SORTED_CONTENT_NODES_CACHE_SIZE + 1, 0.75f, true) {
+				protected boolean removeEldestEntry(Map.Entry eldest) {
+					return (SORTED_CONTENT_NODES_CACHE_SIZE < size());
+				}
+			};
+		}
+		SortedContentNodes sortedNodes = new SortedContentNodes();
+		sortedNodes.updateID = updateID;
+		sortedNodes.contentNodes = contentNodes;
+		sortedNodesMap.put(sortCriteria, sortedNodes);
+	}
+	
+	public synchronized void clearSortedContentNodes()
+	{
+		sortedNodesMap = null;
 	}
 
 	////////////////////////////////////////////////
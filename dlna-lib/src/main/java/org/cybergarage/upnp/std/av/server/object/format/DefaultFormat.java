@@ -10,6 +10,8 @@
 *
 *	02/12/04
 *		- first revision.
+*	10/17/26
+*		- Added HeaderFormat.
 *
 ******************************************************************/
 
@@ -20,7 +22,7 @@ import java.io.*;
 import org.cybergarage.xml.*;
 import org.cybergarage.upnp.std.av.server.object.*;
 
-public class DefaultFormat implements Format, FormatObject
+public class DefaultFormat implements HeaderFormat, FormatObject
 {
 	////////////////////////////////////////////////
 	// Constroctor
@@ -39,11 +41,21 @@ public class DefaultFormat implements Format, FormatObject
 		return true;
 	}
 	
+	public boolean equals(FormatHeader header)
+	{
+		return true;
+	}
+	
 	public FormatObject createObject(File file)
 	{
 		return new DefaultFormat();
 	}
 	
+	public FormatObject createObject(FormatHeader header)
+	{
+		return new DefaultFormat();
+	}
+	
 	public String getMimeType()
 	{
 		return "*/*";
@@ -0,0 +1,150 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File : ExifReader.java
+*
+*	Revision:
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object.format;
+
+import java.text.*;
+
+// Reads the dates of the TIFF structure in the APP1 segment of JPEG or the eXIf chunk of PNG.
+public final class ExifReader
+{
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+
+	public final static String EXIF_ID = "Exif";
+	public final static int EXIF_HEADER_SIZE = 6;
+
+	private final static int TAG_DATE_TIME = 0x0132;
+	private final static int TAG_EXIF_IFD = 0x8769;
+	private final static int TAG_DATE_TIME_ORIGINAL = 0x9003;
+
+	private final static int TYPE_ASCII = 2;
+	private final static int DATE_TIME_LENGTH = 19;
+	private final static String DATE_TIME_FORMAT = "yyyy:MM:dd HH:mm:ss";
+
+	private final static int IFD_ENTRY_SIZE = 12;
+	private final static int MAX_IFD_ENTRIES = 512;
+
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+
+	private ExifReader()
+	{
+	}
+
+	////////////////////////////////////////////////
+	// TIFF
+	////////////////////////////////////////////////
+
+	// Returns the unsigned integer of the byte order of the TIFF header, or -1 over the buffer.
+	private static long getValue(byte buf[], int offset, int len, int pos, int size, boolean littleEndian)
+	{
+		if (pos < 0 || len < (pos + size))
+			return -1;
+		long value = 0;
+		for (int n=0; n<size; n++) {
+			int b = buf[offset + pos + (littleEndian ? (size - 1 - n) : n)] & 0xFF;
+			value = (value << 8) | b;
+		}
+		return value;
+	}
+
+	// Returns the IFD entry position of the tag, or -1 when the IFD doesn't have it.
+	private static int findEntry(byte buf[], int offset, int len, int ifdPos, int tag, boolean littleEndian)
+	{
+		long nEntries = getValue(buf, offset, len, ifdPos, 2, littleEndian);
+		if (nEntries < 0 || MAX_IFD_ENTRIES < nEntries)
+			return -1;
+		for (int n=0; n<nEntries; n++) {
+			int entryPos = ifdPos + 2 + (n * IFD_ENTRY_SIZE);
+			long entryTag = getValue(buf, offset, len, entryPos, 2, littleEndian);
+			if (entryTag < 0)
+				return -1;
+			if (entryTag == tag)
+				return entryPos;
+		}
+		return -1;
+	}
+
+	private static long getDateTime(byte buf[], int offset, int len, int entryPos, boolean littleEndian)
+	{
+		if (entryPos < 0)
+			return -1;
+		if (getValue(buf, offset, len, entryPos + 2, 2, littleEndian) != TYPE_ASCII)
+			return -1;
+		if (getValue(buf, offset, len, entryPos + 4, 4, littleEndian) < DATE_TIME_LENGTH)
+			return -1;
+		long valuePos = getValue(buf, offset, len, entryPos + 8, 4, littleEndian);
+		if (valuePos < 0 || len < (valuePos + DATE_TIME_LENGTH))
+			return -1;
+		String value = new String(buf, offset + (int)valuePos, DATE_TIME_LENGTH);
+		// EXIF has no time zone, so the date is the local time as the camera.
+		SimpleDateFormat df = new SimpleDateFormat(DATE_TIME_FORMAT);
+		df.setLenient(false);
+		try {
+			return df.parse(value).getTime();
+		}
+		catch (ParseException e) {
+			// "0000:00:00 00:00:00" or blanks of unknown dates
+			return -1;
+		}
+	}
+
+	// Returns DateTimeOriginal, or DateTime of IFD0, of the TIFF structure at the offset.
+	public final static long getDateTime(byte buf[], int offset, int len)
+	{
+		if (len < 8)
+			return -1;
+		boolean littleEndian;
+		if (buf[offset] == 'I' && buf[offset + 1] == 'I')
+			littleEndian = true;
+		else if (buf[offset] == 'M' && buf[offset + 1] == 'M')
+			littleEndian = false;
+		else
+			return -1;
+		if (getValue(buf, offset, len, 2, 2, littleEndian) != 42)
+			return -1;
+
+		int ifd0Pos = (int)getValue(buf, offset, len, 4, 4, littleEndian);
+
+		int exifEntryPos = findEntry(buf, offset, len, ifd0Pos, TAG_EXIF_IFD, littleEndian);
+		if (0 <= exifEntryPos) {
+			long exifIfdPos = getValue(buf, offset, len, exifEntryPos + 8, 4, littleEndian);
+			if (0 <= exifIfdPos && exifIfdPos < len) {
+				int dateEntryPos = findEntry(buf, offset, len, (int)exifIfdPos, TAG_DATE_TIME_ORIGINAL, littleEndian);
+				long dateTime = getDateTime(buf, offset, len, dateEntryPos, littleEndian);
+				if (0 <= dateTime)
+					return dateTime;
+			}
+		}
+
+		int dateEntryPos = findEntry(buf, offset, len, ifd0Pos, TAG_DATE_TIME, littleEndian);
+		return getDateTime(buf, offset, len, dateEntryPos, littleEndian);
+	}
+
+	// Returns the date of the APP1 segment data which starts with "Exif\0\0".
+	public final static long getAPP1DateTime(byte buf[], int offset, int len)
+	{
+		if (len < EXIF_HEADER_SIZE)
+			return -1;
+		for (int n=0; n<EXIF_ID.length(); n++) {
+			if (buf[offset + n] != EXIF_ID.charAt(n))
+				return -1;
+		}
+		return getDateTime(buf, offset + EXIF_HEADER_SIZE, len - EXIF_HEADER_SIZE);
+	}
+}
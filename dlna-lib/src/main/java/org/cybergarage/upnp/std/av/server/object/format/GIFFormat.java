@@ -10,6 +10,9 @@
 *
 *	01/25/04
 *		- first revision.
+*	10/17/26
+*		- Changed to detect the format with FormatHeader.
+		- Added the resolution and the color depth of the logical screen descriptor.
 *
 ******************************************************************/
 
@@ -22,9 +25,12 @@ import org.cybergarage.upnp.std.av.server.object.*;
 public class GIFFormat extends ImageIOFormat
 {
 	////////////////////////////////////////////////
-	// Member
+	// Constants
 	////////////////////////////////////////////////
 
+	private final static int SCREEN_DESCRIPTOR_OFFSET = 6;
+	private final static int SCREEN_DESCRIPTOR_SIZE = 7;
+
 	////////////////////////////////////////////////
 	// Constroctor
 	////////////////////////////////////////////////
@@ -35,24 +41,48 @@ public class GIFFormat extends ImageIOFormat
 	
 	public GIFFormat(File file)
 	{
-		super(file);
+		this(new FormatHeader(file));
+	}
+	
+	public GIFFormat(FormatHeader header)
+	{
+		super(header.getFile());
+		probe(header);
+	}
+
+	////////////////////////////////////////////////
+	// parse
+	////////////////////////////////////////////////
+	
+	// The logical screen descriptor follows the signature, and the values are little endian.
+	protected void parse(FormatHeader header, ProbeReader reader) throws IOException
+	{
+		byte buf[] = reader.read(SCREEN_DESCRIPTOR_OFFSET, SCREEN_DESCRIPTOR_SIZE);
+		if (buf.length < SCREEN_DESCRIPTOR_SIZE)
+			return;
+		int imgWidth = (buf[0] & 0xFF) | ((buf[1] & 0xFF) << 8);
+		int imgHeight = (buf[2] & 0xFF) | ((buf[3] & 0xFF) << 8);
+		int packed = buf[4] & 0xFF;
+		setResolution(imgWidth, imgHeight);
+		// Bits of the global color table, or the color resolution without the table.
+		if ((packed & 0x80) != 0)
+			setColorDepth((packed & 0x07) + 1);
+		else
+			setColorDepth(((packed >> 4) & 0x07) + 1);
 	}
 
 	////////////////////////////////////////////////
 	// Abstract Methods
 	////////////////////////////////////////////////
 	
-	public boolean equals(File file)
+	public boolean equals(FormatHeader header)
 	{
-		String headerID = Header.getIDString(file, 3);
-		if (headerID.startsWith("GIF") == true)
-			return true;		
-		return false;
+		return header.startsWith("GIF");
 	}
 	
-	public FormatObject createObject(File file)
+	public FormatObject createObject(FormatHeader header)
 	{
-		return new GIFFormat(file);
+		return new GIFFormat(header);
 	}
 	
 	public String getMimeType()
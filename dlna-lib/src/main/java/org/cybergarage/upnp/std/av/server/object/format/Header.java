@@ -10,6 +10,8 @@
 *
 *	12/04/03
 *		- first revision.
+*	10/17/26
+*		- Changed getID() to read the header at once.
 *
 ******************************************************************/
 
@@ -31,13 +33,13 @@ public abstract class Header
 		byte header[] = new byte[headerCnt];
 		try {
 			DataInputStream dataIn = new DataInputStream(inputStream);
-			for (int n=0; n<headerCnt; n++) {
-				byte readByte = dataIn.readByte();
-				if (n<headerOffset)
-					continue;
-				header[n-headerOffset] = readByte;
+			try {
+				dataIn.skipBytes(headerOffset);
+				dataIn.readFully(header, 0, headerSize);
+			}
+			finally {
+				dataIn.close();
 			}
-			dataIn.close();
 		}
 		catch (EOFException eofe) {
 		}
@@ -10,6 +10,12 @@
 *
 *	12/03/03
 *		- first revision.
+*	10/17/26
+*		- Added HeaderFormat to parse the tag from the header buffer.
+*		- Rewrote the parser to read the tag at once and index the frames without copying them.
+*		- Added ID3v2.2 and ID3v2.4 frames, the synchsafe sizes and the unsynchronisation.
+*		- Fixed the flag checks which never returned true.
+*		- Added AlbumArtFormatObject to locate the image of APIC.
 *
 ******************************************************************/
 
@@ -22,7 +28,7 @@ import org.cybergarage.upnp.std.av.server.object.item.*;
 import org.cybergarage.xml.*;
 import org.cybergarage.util.*;
 
-public class ID3Format extends Header implements Format, FormatObject
+public class ID3Format extends Header implements HeaderFormat, AlbumArtFormatObject
 {
 	////////////////////////////////////////////////
 	// Constants
@@ -31,14 +37,37 @@ public class ID3Format extends Header implements Format, FormatObject
 	public final static String HEADER_ID = "ID3";
 	public final static int HEADER_SIZE = 10;
 	public final static int FRAME_HEADER_SIZE = 10;
+	public final static int V22_FRAME_HEADER_SIZE = 6;
+	
+	// Bytes of APIC which are read to find the image after the MIME type and the description.
+	public final static int APIC_HEADER_READ_SIZE = 1024;
+	public final static int APIC_FRONT_COVER = 3;
+	
+	// Upper bound of a tag which is read into the memory at once.
+	public final static int MAX_TAG_SIZE = 16 * 1024 * 1024;
+	
+	// ID3v2.2 frame ID -> ID3v2.3 frame ID
+	private final static String V22_FRAME_IDS[][] = {
+		{"TT1", ID3Frame.TIT1},
+		{"TT2", ID3Frame.TIT2},
+		{"TT3", ID3Frame.TIT3},
+		{"TP1", ID3Frame.TPE1},
+		{"TP2", ID3Frame.TPE2},
+		{"TP3", ID3Frame.TPE3},
+		{"TP4", ID3Frame.TPE4},
+		{"TAL", ID3Frame.TALB},
+		{"TRK", ID3Frame.TRCK},
+		{"TCO", ID3Frame.TCON},
+		{"TYE", ID3Frame.TYER},
+		{"PIC", ID3Frame.APIC},
+	};
 	
 	////////////////////////////////////////////////
 	// Member
 	////////////////////////////////////////////////
 	
 	private byte header[] = new byte[HEADER_SIZE];
-	private byte extHeader[] = new byte[4];
-	private byte frameHeader[] = new byte[FRAME_HEADER_SIZE];
+	private int extHeaderSize = 0;
 	private ID3FrameList frameList = new ID3FrameList();
 	
 	private File mp3File;
@@ -57,67 +86,73 @@ public class ID3Format extends Header implements Format, FormatObject
 		loadHeader(file);
 	}
 
+	public ID3Format(FormatHeader header)
+	{
+		mp3File = header.getFile();
+		loadHeader(header);
+	}
+
 	////////////////////////////////////////////////
 	// loadHeader
 	////////////////////////////////////////////////
 
+	private static int readFully(InputStream in, byte buf[], int offset, int len) throws IOException
+	{
+		int readLen = 0;
+		while (readLen < len) {
+			int n = in.read(buf, offset + readLen, len - readLen);
+			if (n < 0)
+				break;
+			readLen += n;
+		}
+		return readLen;
+	}
+	
+	// Returns the length of the whole tag which is bounded by MAX_TAG_SIZE.
+	private int getTagLength(long fileLength)
+	{
+		long tagLen = HEADER_SIZE + (long)getHeaderSize();
+		if (0 <= fileLength && fileLength < tagLen)
+			tagLen = fileLength;
+		return (int)Math.min(tagLen, MAX_TAG_SIZE);
+	}
+	
 	public boolean loadHeader(InputStream inputStream)
 	{
+		frameList.clear();
 		try {
-			// Reading a main header
-			DataInputStream dataIn = new DataInputStream(inputStream);
-			for (int n=0; n<HEADER_SIZE; n++)
-				header[n] = dataIn.readByte();
-				
-			// Reading a extended header
-			if (hasExtendedHeader() == true) {
-				for (int n=0; n<4; n++)
-					header[n] = dataIn.readByte();
-				int extHeaderSize = getExtHeaderSize();
-				// Ignoring extended header infos
-				for (int n=0; n<(extHeaderSize-4); n++) 
-					dataIn.readByte();
+			try {
+				if (readFully(inputStream, header, 0, HEADER_SIZE) < HEADER_SIZE)
+					return false;
+				if (hasHeader() == false)
+					return false;
+				// The whole tag is read at once.
+				byte tag[] = new byte[getTagLength(-1)];
+				System.arraycopy(header, 0, tag, 0, HEADER_SIZE);
+				int tagLen = HEADER_SIZE + readFully(inputStream, tag, HEADER_SIZE, tag.length - HEADER_SIZE);
+				return loadTag(tag, tagLen, null);
 			}
-			
-			// Reading frame infos
-			frameList.clear();
-			int frameDataSize = getHeaderSize() - HEADER_SIZE;
-			if (hasExtendedHeader() == true)
-				frameDataSize -= getExtHeaderSize();
-			int frameDataCnt = 0;
-			while (frameDataCnt < frameDataSize) {
-				for (int n=0; n<FRAME_HEADER_SIZE; n++)
-					frameHeader[n] = dataIn.readByte();
-				String frameID = getFrameID(frameHeader);
-				int frameSize = getFrameSize(frameHeader);
-				int frameFlag = getFrameFlag(frameHeader);
-				byte frameData[] = new byte[frameSize];
-				for (int i=0; i<frameSize; i++)
-					frameData[i] = dataIn.readByte();
-				ID3Frame frame = new ID3Frame();
-				frame.setID(frameID);
-				frame.setSize(frameSize);
-				frame.setFlag(frameFlag);
-				frame.setData(frameData);
-				frameList.add(frame);
-				frameDataCnt += frameSize + FRAME_HEADER_SIZE;
+			finally {
+				inputStream.close();
 			}
-			
-			dataIn.close();
-		}
-		catch (EOFException eofe) {
 		}
 		catch (Exception e) {
 			Debug.warning(e);
 			return false;
 		}
-		return true;
 	}
 	
 	public boolean loadHeader(File file)
 	{
+		return loadHeader(new FormatHeader(file));
+	}
+
+	// The frames in the header buffer are used as they are, and the other frames are read from the file when they are used.
+	public boolean loadHeader(FormatHeader formatHeader)
+	{
+		frameList.clear();
 		try {
-			return loadHeader(new FileInputStream(file));
+			return loadTag(formatHeader.getBytes(), formatHeader.getLength(), formatHeader.getFile());
 		}
 		catch (Exception e) {
 			Debug.warning(e);
@@ -125,6 +160,194 @@ public class ID3Format extends Header implements Format, FormatObject
 		}
 	}
 
+	////////////////////////////////////////////////
+	// loadTag
+	////////////////////////////////////////////////
+	
+	private static int getInt(byte buf[], int offset, int len)
+	{
+		int value = 0;
+		for (int n=0; n<len; n++)
+			value = (value << 8) | (buf[offset + n] & 0xFF);
+		return value;
+	}
+	
+	private static int getSyncsafeInt(byte buf[], int offset)
+	{
+		int value = 0;
+		for (int n=0; n<4; n++)
+			value = (value << 7) | (buf[offset + n] & 0x7F);
+		return value;
+	}
+	
+	// Removes the 0x00 which is inserted after 0xFF by the unsynchronisation.
+	public static byte[] resynchronise(byte buf[], int offset, int end)
+	{
+		byte data[] = new byte[end - offset];
+		int dataLen = 0;
+		for (int n=offset; n<end; n++) {
+			data[dataLen++] = buf[n];
+			if ((buf[n] & 0xFF) == 0xFF && (n + 1) < end && buf[n + 1] == 0)
+				n++;
+		}
+		if (dataLen == data.length)
+			return data;
+		byte resyncData[] = new byte[dataLen];
+		System.arraycopy(data, 0, resyncData, 0, dataLen);
+		return resyncData;
+	}
+	
+	private static String getV23FrameID(String v22FrameID)
+	{
+		for (int n=0; n<V22_FRAME_IDS.length; n++) {
+			if (V22_FRAME_IDS[n][0].equals(v22FrameID) == true)
+				return V22_FRAME_IDS[n][1];
+		}
+		return v22FrameID;
+	}
+	
+	private static byte[] readFile(RandomAccessFile in, long offset, int len) throws IOException
+	{
+		byte buf[] = new byte[len];
+		in.seek(offset);
+		in.readFully(buf);
+		return buf;
+	}
+	
+	// buf is the head of the file, or the whole tag when file is null.
+	private boolean loadTag(byte buf[], int bufLen, File file) throws IOException
+	{
+		if (bufLen < HEADER_SIZE)
+			return false;
+		System.arraycopy(buf, 0, header, 0, HEADER_SIZE);
+		if (hasHeader() == false)
+			return false;
+		
+		int majorVer = getMajorVersion();
+		if (majorVer < 2 || 4 < majorVer)
+			return false;
+		// The flag is the compression in ID3v2.2, but no compression scheme is defined.
+		if (majorVer == 2 && (getFlag() & 0x40) != 0)
+			return false;
+
+		RandomAccessFile in = null;
+		try {
+			long fileLength = (file != null) ? file.length() : bufLen;
+			int tagEnd = getTagLength(fileLength);
+			boolean mapped = true;
+			
+			// The unsynchronisation of ID3v2.2 and ID3v2.3 is applied to the whole tag, so it's resynchronised in the memory.
+			if (isUnsynchronisation() == true && majorVer < 4) {
+				if (bufLen < tagEnd && file != null) {
+					in = new RandomAccessFile(file, "r");
+					buf = readFile(in, 0, tagEnd);
+					bufLen = tagEnd;
+				}
+				byte body[] = resynchronise(buf, HEADER_SIZE, Math.min(tagEnd, bufLen));
+				byte tag[] = new byte[HEADER_SIZE + body.length];
+				System.arraycopy(header, 0, tag, 0, HEADER_SIZE);
+				System.arraycopy(body, 0, tag, HEADER_SIZE, body.length);
+				buf = tag;
+				bufLen = tagEnd = tag.length;
+				file = null;
+				mapped = false;
+			}
+			
+			int pos = HEADER_SIZE;
+			
+			// Extended Header
+			extHeaderSize = 0;
+			if (hasExtendedHeader() == true) {
+				if (bufLen < (pos + 4))
+					return false;
+				if (majorVer == 3)
+					extHeaderSize = 4 + getInt(buf, pos, 4);
+				else
+					extHeaderSize = getSyncsafeInt(buf, pos);
+				pos += extHeaderSize;
+			}
+			
+			// Frames
+			int frameHeaderSize = (majorVer == 2) ? V22_FRAME_HEADER_SIZE : FRAME_HEADER_SIZE;
+			int frameIDSize = (majorVer == 2) ? 3 : 4;
+			while ((pos + frameHeaderSize) <= tagEnd) {
+				byte frameHeader[];
+				int frameHeaderOffset = pos;
+				if ((pos + frameHeaderSize) <= bufLen) {
+					frameHeader = buf;
+				}
+				else {
+					if (file == null)
+						break;
+					if (in == null)
+						in = new RandomAccessFile(file, "r");
+					frameHeader = readFile(in, pos, frameHeaderSize);
+					frameHeaderOffset = 0;
+				}
+				
+				// Padding
+				if (frameHeader[frameHeaderOffset] == 0)
+					break;
+				
+				String frameID = new String(frameHeader, frameHeaderOffset, frameIDSize, "ISO-8859-1");
+				int frameSize;
+				int frameFlag = 0;
+				if (majorVer == 2)
+					frameSize = getInt(frameHeader, frameHeaderOffset + 3, 3);
+				else if (majorVer == 3)
+					frameSize = getInt(frameHeader, frameHeaderOffset + 4, 4);
+				else
+					frameSize = getSyncsafeInt(frameHeader, frameHeaderOffset + 4);
+				if (majorVer != 2)
+					frameFlag = getInt(frameHeader, frameHeaderOffset + 8, 2);
+				
+				int dataPos = pos + frameHeaderSize;
+				if (frameSize < 0 || (tagEnd - dataPos) < frameSize)
+					break;
+				
+				ID3Frame frame = new ID3Frame();
+				frame.setID((majorVer == 2) ? getV23FrameID(frameID) : frameID);
+				frame.setSize(frameSize);
+				frame.setFlag(frameFlag);
+				if (majorVer == 3) {
+					if ((frameFlag & 0x00C0) != 0)
+						frame.setSupported(false);
+					if ((frameFlag & 0x0020) != 0)
+						frame.setDataHeaderSize(1);
+				}
+				else if (majorVer == 4) {
+					int dataHeaderSize = 0;
+					if ((frameFlag & 0x0040) != 0)
+						dataHeaderSize += 1;
+					if ((frameFlag & 0x0001) != 0)
+						dataHeaderSize += 4;
+					frame.setDataHeaderSize(dataHeaderSize);
+					if ((frameFlag & 0x000C) != 0)
+						frame.setSupported(false);
+					if ((frameFlag & 0x0002) != 0)
+						frame.setUnsynchronised(true);
+				}
+				if ((dataPos + frameSize) <= bufLen)
+					frame.setSource(buf, dataPos, mapped);
+				else
+					frame.setSource(file, dataPos);
+				frameList.add(frame);
+				
+				pos = dataPos + frameSize;
+			}
+		}
+		finally {
+			if (in != null) {
+				try {
+					in.close();
+				}
+				catch (IOException e) {}
+			}
+		}
+		
+		return true;
+	}
+	
 	public boolean hasHeader()
 	{
 		String id = getHeaderID();
@@ -142,12 +365,20 @@ public class ID3Format extends Header implements Format, FormatObject
 		return new String(header, 0, 3);
 	}
 
+	public int getMajorVersion()
+	{
+		return (header[3] & 0xFF);
+	}
+
+	public int getRevision()
+	{
+		return (header[4] & 0xFF);
+	}
+
+	// Returns the tag size which doesn't include the header.
 	public int getHeaderSize()
 	{
-		int size = 0;
-		for (int n=0; n<4; n++)
-			size += (header[9-n] & 0xFF ) << n;		
-		return size;
+		return getSyncsafeInt(header, 6);
 	}
 
 	public int getFlag()
@@ -157,22 +388,24 @@ public class ID3Format extends Header implements Format, FormatObject
 	
 	public boolean isUnsynchronisation()
 	{
-		return (getFlag() & 0x80) == 1 ? true : false;
+		return (getFlag() & 0x80) != 0 ? true : false;
 	}
 
 	public boolean hasExtendedHeader()
 	{
-		return (getFlag() & 0x40) == 1 ? true : false;
+		if (getMajorVersion() < 3)
+			return false;
+		return (getFlag() & 0x40) != 0 ? true : false;
 	}
 
 	public boolean isExperimental()
 	{
-		return (getFlag() & 0x20) == 1 ? true : false;
+		return (getFlag() & 0x20) != 0 ? true : false;
 	}
 
 	public boolean hasFooter()
 	{
-		return (getFlag() & 0x10) == 1 ? true : false;
+		return (getFlag() & 0x10) != 0 ? true : false;
 	}
 
 	////////////////////////////////////////////////
@@ -181,32 +414,16 @@ public class ID3Format extends Header implements Format, FormatObject
 	
 	public int getExtHeaderSize()
 	{
-		int size = 0;
-		for (int n=0; n<4; n++)
-			size += (extHeader[3-n] & 0xFF ) << n;		
-		return size;
+		return extHeaderSize;
 	}
 	
 	////////////////////////////////////////////////
-	// Header
+	// Frame
 	////////////////////////////////////////////////
 	
-	private String getFrameID(byte frameHeader[])
-	{
-		return new String(frameHeader, 0, 4);
-	}
-
-	private int getFrameSize(byte frameHeader[])
-	{
-		int size = 0;
-		for (int n=0; n<4; n++)
-			size += (frameHeader[7-n] & 0xFF ) << n;		
-		return size;
-	}
-
-	private int getFrameFlag(byte frameHeader[])
+	public ID3Frame getFrame(String name)
 	{
-		return ((frameHeader[8] & 0xFF) << 8) + (frameHeader[9] & 0xFF);		
+		return frameList.getFrame(name);
 	}
 
 	public byte[] getFrameData(String name)
@@ -231,11 +448,21 @@ public class ID3Format extends Header implements Format, FormatObject
 		return false;
 	}
 	
+	public boolean equals(FormatHeader header)
+	{
+		return header.startsWith(HEADER_ID);
+	}
+	
 	public FormatObject createObject(File file)
 	{
 		return new ID3Format(file);
 	}
 	
+	public FormatObject createObject(FormatHeader header)
+	{
+		return new ID3Format(header);
+	}
+	
 	public String getMimeType()
 	{
 		return "audio/mpeg";
@@ -283,6 +510,160 @@ public class ID3Format extends Header implements Format, FormatObject
 		return getFrameStringData(ID3Frame.TPE4);
 	}
 	
+	public String getAlbum()
+	{
+		return getFrameStringData(ID3Frame.TALB);
+	}
+	
+	public String getTrackNumber()
+	{
+		return getFrameStringData(ID3Frame.TRCK);
+	}
+	
+	public String getGenre()
+	{
+		return getFrameStringData(ID3Frame.TCON);
+	}
+	
+	public String getYear()
+	{
+		String year = getFrameStringData(ID3Frame.TDRC);
+		if (0 < year.length())
+			return year;
+		return getFrameStringData(ID3Frame.TYER);
+	}
+	
+	////////////////////////////////////////////////
+	// Album Art
+	////////////////////////////////////////////////
+	
+	private boolean albumArtLoaded = false;
+	private ID3Frame albumArtFrame = null;
+	private String albumArtMimeType = "";
+	// Offset of the image in the frame data
+	private int albumArtDataOffset = 0;
+	
+	private static String getPictureMimeType(String format)
+	{
+		String mimeType = format.toLowerCase();
+		if (mimeType.indexOf('/') < 0) {
+			// ID3v2.2 has the image format such as "JPG" instead of the MIME type.
+			if (mimeType.equals("jpg") == true)
+				mimeType = "jpeg";
+			mimeType = "image/" + mimeType;
+		}
+		if (mimeType.equals("image/jpg") == true)
+			mimeType = "image/jpeg";
+		return mimeType;
+	}
+	
+	// Parses the header of the APIC frame, and returns the offset of the image in the frame data or -1.
+	private int parsePicture(ID3Frame frame, String mimeType[], int picType[])
+	{
+		byte data[] = frame.getData(APIC_HEADER_READ_SIZE);
+		if (data.length < 4)
+			return -1;
+		int encoding = data[0] & 0xFF;
+		int pos = 1;
+		int end;
+		if (getMajorVersion() == 2) {
+			end = pos + 3;
+			mimeType[0] = getPictureMimeType(new String(data, pos, 3));
+		}
+		else {
+			end = ID3Frame.getStringEnd(data, pos, ID3Frame.ENCODING_ISO_8859_1);
+			if (data.length <= end)
+				return -1;
+			mimeType[0] = getPictureMimeType(ID3Frame.getString(data, pos, end, ID3Frame.ENCODING_ISO_8859_1));
+			end++;
+		}
+		pos = end;
+		if (data.length <= pos)
+			return -1;
+		picType[0] = data[pos] & 0xFF;
+		pos++;
+		// Description
+		end = ID3Frame.getStringEnd(data, pos, encoding);
+		if (data.length <= end)
+			return -1;
+		pos = end + (ID3Frame.isWideEncoding(encoding) ? 2 : 1);
+		if (frame.getDataSize() <= pos)
+			return -1;
+		return pos;
+	}
+	
+	// The front cover is used if any, otherwise the first picture.
+	private void loadAlbumArt()
+	{
+		if (albumArtLoaded == true)
+			return;
+		albumArtLoaded = true;
+		
+		int frameCnt = frameList.size();
+		for (int n=0; n<frameCnt; n++) {
+			ID3Frame frame = frameList.getFrame(n);
+			if (frame.getID().equals(ID3Frame.APIC) == false || frame.isSupported() == false)
+				continue;
+			String mimeType[] = new String[1];
+			int picType[] = new int[1];
+			int dataOffset = parsePicture(frame, mimeType, picType);
+			if (dataOffset < 0)
+				continue;
+			if (albumArtFrame != null && picType[0] != APIC_FRONT_COVER)
+				continue;
+			albumArtFrame = frame;
+			albumArtMimeType = mimeType[0];
+			albumArtDataOffset = dataOffset;
+			if (picType[0] == APIC_FRONT_COVER)
+				break;
+		}
+	}
+	
+	public boolean hasAlbumArt()
+	{
+		loadAlbumArt();
+		return (albumArtFrame != null) ? true : false;
+	}
+	
+	public String getAlbumArtMimeType()
+	{
+		loadAlbumArt();
+		return albumArtMimeType;
+	}
+	
+	public long getAlbumArtOffset()
+	{
+		loadAlbumArt();
+		if (albumArtFrame == null)
+			return -1;
+		long frameOffset = albumArtFrame.getFileOffset();
+		if (frameOffset < 0)
+			return -1;
+		return frameOffset + albumArtDataOffset;
+	}
+	
+	public int getAlbumArtLength()
+	{
+		loadAlbumArt();
+		if (albumArtFrame == null)
+			return 0;
+		return albumArtFrame.getDataSize() - albumArtDataOffset;
+	}
+	
+	public byte[] getAlbumArtData()
+	{
+		loadAlbumArt();
+		if (albumArtFrame == null)
+			return new byte[0];
+		byte data[] = albumArtFrame.getData();
+		int len = data.length - albumArtDataOffset;
+		if (len <= 0)
+			return new byte[0];
+		byte imgData[] = new byte[len];
+		System.arraycopy(data, albumArtDataOffset, imgData, 0, len);
+		return imgData;
+	}
+	
 	////////////////////////////////////////////////
 	// print
 	////////////////////////////////////////////////
@@ -292,6 +673,7 @@ public class ID3Format extends Header implements Format, FormatObject
 		String headerStr = new String(header);
 		System.out.println("header = " + headerStr);
 		System.out.println("ID = " + getHeaderID());
+		System.out.println("Version = " + getMajorVersion() + "." + getRevision());
 		System.out.println("Size = " + getHeaderSize());
 		System.out.println("isUnsynchronisation = " + isUnsynchronisation());
 		System.out.println("hasExtendedHeader = " + hasExtendedHeader());
@@ -300,8 +682,9 @@ public class ID3Format extends Header implements Format, FormatObject
 		int frameCnt = frameList.size();
 		for (int n=0; n<frameCnt; n++) {
 			ID3Frame frame = frameList.getFrame(n);
-			System.out.println("[" + n + "] : " + frame.getID());
-			System.out.println("     " + frame.getData());
+			System.out.println("[" + n + "] : " + frame.getID() + " (" + frame.getSize() + ")");
+			if (frame.getID().startsWith("T") == true)
+				System.out.println("     " + frame.getStringData());
 		}
 	}
 
@@ -10,11 +10,18 @@
 *
 *	12/03/03
 *		- first revision.
+*	10/17/26
+*		- Changed to decode the data lazily from the tag buffer or the file.
+*		- Changed getStringData() to decode the text with the encoding of the frame.
 *
 ******************************************************************/
 
 package org.cybergarage.upnp.std.av.server.object.format;
 
+import java.io.*;
+
+import org.cybergarage.util.*;
+
 public class ID3Frame
 {
 	////////////////////////////////////////////////
@@ -30,6 +37,18 @@ public class ID3Frame
 	public final static String TPE3 = "TPE3";
 	public final static String TPE4 = "TPE4";
 	
+	public final static String TALB = "TALB";
+	public final static String TRCK = "TRCK";
+	public final static String TCON = "TCON";
+	public final static String TYER = "TYER";
+	public final static String TDRC = "TDRC";
+	public final static String APIC = "APIC";
+	
+	public final static int ENCODING_ISO_8859_1 = 0;
+	public final static int ENCODING_UTF_16 = 1;
+	public final static int ENCODING_UTF_16BE = 2;
+	public final static int ENCODING_UTF_8 = 3;
+	
 	////////////////////////////////////////////////
 	// Constroctor
 	////////////////////////////////////////////////
@@ -39,6 +58,13 @@ public class ID3Frame
 		setID("");
 		setFlag(0);
 		setSize(0);
+		srcBuf = null;
+		srcFile = null;
+		srcOffset = 0;
+		srcMapped = false;
+		dataHeaderSize = 0;
+		unsynchronised = false;
+		supported = true;
 	}
 	
 	////////////////////////////////////////////////
@@ -56,7 +82,7 @@ public class ID3Frame
 	}
 
 	////////////////////////////////////////////////
-	// Size
+	// Flag
 	////////////////////////////////////////////////
 	
 	private int flag;
@@ -83,6 +109,78 @@ public class ID3Frame
 		return size;
 	}
 
+	////////////////////////////////////////////////
+	// Source
+	////////////////////////////////////////////////
+	
+	// The frame data isn't copied until it is used.
+	private byte srcBuf[];
+	private File srcFile;
+	private long srcOffset;
+	private boolean srcMapped;
+	// Bytes of the grouping identifier and the data length indicator before the data.
+	private int dataHeaderSize;
+	private boolean unsynchronised;
+	private boolean supported;
+	
+	// mapped is true when the buffer is the head of the file, so the offset is also the file offset.
+	public void setSource(byte buf[], int offset, boolean mapped)
+	{
+		srcBuf = buf;
+		srcFile = null;
+		srcOffset = offset;
+		srcMapped = mapped;
+		data = null;
+	}
+	
+	public void setSource(File file, long offset)
+	{
+		srcBuf = null;
+		srcFile = file;
+		srcOffset = offset;
+		srcMapped = true;
+		data = null;
+	}
+	
+	public void setDataHeaderSize(int val)
+	{
+		dataHeaderSize = val;
+	}
+	
+	public void setUnsynchronised(boolean val)
+	{
+		unsynchronised = val;
+	}
+	
+	public boolean isUnsynchronised()
+	{
+		return unsynchronised;
+	}
+	
+	// Compressed or encrypted frames aren't supported.
+	public void setSupported(boolean val)
+	{
+		supported = val;
+	}
+	
+	public boolean isSupported()
+	{
+		return supported;
+	}
+	
+	// Returns the offset of the data in the file, or -1 when the data isn't stored in the file as it is.
+	public long getFileOffset()
+	{
+		if (srcMapped == false || unsynchronised == true || supported == false)
+			return -1;
+		return srcOffset + dataHeaderSize;
+	}
+	
+	public int getDataSize()
+	{
+		return Math.max(size - dataHeaderSize, 0);
+	}
+	
 	////////////////////////////////////////////////
 	// Data
 	////////////////////////////////////////////////
@@ -92,16 +190,121 @@ public class ID3Frame
 	public void setData(byte val[]) 
 	{
 		data = val;
+		srcBuf = null;
+		srcFile = null;
+		srcMapped = false;
 	}
 
+	private byte[] readSource(int len)
+	{
+		if (len <= 0)
+			return new byte[0];
+		byte buf[] = new byte[len];
+		if (srcBuf != null) {
+			System.arraycopy(srcBuf, (int)srcOffset + dataHeaderSize, buf, 0, len);
+			return buf;
+		}
+		RandomAccessFile in = null;
+		try {
+			in = new RandomAccessFile(srcFile, "r");
+			in.seek(srcOffset + dataHeaderSize);
+			in.readFully(buf);
+		}
+		catch (Exception e) {
+			Debug.warning(e);
+			return new byte[0];
+		}
+		finally {
+			if (in != null) {
+				try {
+					in.close();
+				}
+				catch (IOException e) {}
+			}
+		}
+		return buf;
+	}
+	
 	public byte[] getData() 
 	{
+		if (data != null)
+			return data;
+		if (supported == false || (srcBuf == null && srcFile == null))
+			return new byte[0];
+		byte buf[] = readSource(getDataSize());
+		if (unsynchronised == true)
+			buf = ID3Format.resynchronise(buf, 0, buf.length);
+		data = buf;
 		return data;
 	}
 
+	// Returns the head of the data without reading the rest, but the whole data when it has to be decoded.
+	public byte[] getData(int len) 
+	{
+		if (data != null || unsynchronised == true || supported == false || (srcBuf == null && srcFile == null))
+			return getData();
+		return readSource(Math.min(len, getDataSize()));
+	}
+
+	////////////////////////////////////////////////
+	// String
+	////////////////////////////////////////////////
+	
+	public static String getCharsetName(int encoding)
+	{
+		switch (encoding) {
+		case ENCODING_UTF_16:
+			return "UTF-16";
+		case ENCODING_UTF_16BE:
+			return "UTF-16BE";
+		case ENCODING_UTF_8:
+			return "UTF-8";
+		}
+		return "ISO-8859-1";
+	}
+	
+	public static boolean isWideEncoding(int encoding)
+	{
+		return (encoding == ENCODING_UTF_16 || encoding == ENCODING_UTF_16BE) ? true : false;
+	}
+	
+	// Returns the end of the string from the offset which is terminated by the null of the encoding.
+	public static int getStringEnd(byte buf[], int offset, int encoding)
+	{
+		if (isWideEncoding(encoding) == true) {
+			for (int n=offset; n<(buf.length-1); n+=2) {
+				if (buf[n] == 0 && buf[n+1] == 0)
+					return n;
+			}
+			return buf.length - ((buf.length - offset) % 2);
+		}
+		for (int n=offset; n<buf.length; n++) {
+			if (buf[n] == 0)
+				return n;
+		}
+		return buf.length;
+	}
+	
+	public static String getString(byte buf[], int offset, int end, int encoding)
+	{
+		if (end <= offset)
+			return "";
+		try {
+			return new String(buf, offset, end - offset, getCharsetName(encoding));
+		}
+		catch (UnsupportedEncodingException e) {
+			return new String(buf, offset, end - offset);
+		}
+	}
+	
+	// Returns the first string of the text frame.
 	public String getStringData() 
 	{
-		return new String(data, 1, getSize()-1);
+		byte buf[] = getData();
+		if (buf.length < 1)
+			return "";
+		int encoding = buf[0] & 0xFF;
+		int end = getStringEnd(buf, 1, encoding);
+		return getString(buf, 1, end, encoding);
 	}
 }
-
@@ -10,27 +10,43 @@
 *
 *	01/25/04
 *		- first revision.
+*	10/17/26
+*		- Added HeaderFormat to detect the image with the header buffer.
+		- Replaced the commented out javax.imageio reader with the header parsers of the subclasses.
+		- Added DatedFormatObject for DateTimeOriginal of EXIF.
+		- Added createObject() to parse the image in the memory such as an album art.
 *
 ******************************************************************/
 
 package org.cybergarage.upnp.std.av.server.object.format;
 
 import java.io.*;
-/*
-import javax.imageio.*;
-import javax.imageio.stream.*;
-*/
 
 import org.cybergarage.xml.*;
+import org.cybergarage.util.*;
 import org.cybergarage.upnp.std.av.server.object.*;
+import org.cybergarage.upnp.std.av.server.object.item.*;
 
-public abstract class ImageIOFormat extends Header implements Format, FormatObject
+// javax.imageio isn't available on Android, so the subclasses parse only the image headers
+// for the resolution, the color depth and the date without decoding the pixels.
+public abstract class ImageIOFormat extends Header implements HeaderFormat, DatedFormatObject
 {
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+
+	// Bytes which may be read over FormatHeader such as the JPEG segments after a large APP1.
+	public final static int PROBE_BUDGET = 4 * 1024;
+
 	////////////////////////////////////////////////
 	// Member
 	////////////////////////////////////////////////
 
 	private File imgFile;
+	private int width;
+	private int height;
+	private int colorDepth;
+	private long dateTime;
 
 	////////////////////////////////////////////////
 	// Constroctor
@@ -38,38 +54,117 @@ public abstract class ImageIOFormat extends Header implements Format, FormatObje
 	
 	public ImageIOFormat()
 	{	
-		imgFile = null;
-		/*
-		imgReader = null;
-		 */
+		this(null);
 	}
 	
 	public ImageIOFormat(File file)
 	{
 		imgFile = file;
-		/*
-		Iterator readers = ImageIO.getImageReadersBySuffix(Header.getSuffix(file));
-		if (readers.hasNext() == false)
-			return;
-		imgReader = (ImageReader)readers.next();
+		width = 0;
+		height = 0;
+		colorDepth = 0;
+		dateTime = -1;
+	}
+
+	////////////////////////////////////////////////
+	// probe
+	////////////////////////////////////////////////
+	
+	protected abstract void parse(FormatHeader header, ProbeReader reader) throws IOException;
+	
+	// Call it in the constructor of the subclass.
+	protected boolean probe(FormatHeader header)
+	{
+		ProbeReader reader = new ProbeReader(header, PROBE_BUDGET);
 		try {
-			ImageInputStream stream = ImageIO.createImageInputStream(file);
-			imgReader.setInput(stream);
+			parse(header, reader);
+		}
+		catch (ProbeReader.BudgetExceededException e) {
+			// The values which are found until now are used.
+			Debug.message(e.getMessage() + " (" + header.getFile() + ")");
 		}
 		catch (Exception e) {
 			Debug.warning(e);
+			return false;
 		}
-*/
+		finally {
+			reader.close();
+		}
+		return true;
+	}
+
+	// Parses the image in the memory such as an album art. Returns null for the MIME types other than JPEG and PNG.
+	public final static ImageIOFormat createObject(String mimeType, byte data[], int len)
+	{
+		if (mimeType == null || data == null)
+			return null;
+		FormatHeader header = new FormatHeader(data, len);
+		if (mimeType.equals("image/jpeg") == true)
+			return new JPEGFormat(header);
+		if (mimeType.equals("image/png") == true)
+			return new PNGFormat(header);
+		return null;
+	}
+
+	////////////////////////////////////////////////
+	// Resolution/ColorDepth/Date
+	////////////////////////////////////////////////
+	
+	protected void setResolution(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+	}
+	
+	public int getWidth()
+	{
+		return width;
+	}
+	
+	public int getHeight()
+	{
+		return height;
+	}
+	
+	// Bits per pixel
+	protected void setColorDepth(int bits)
+	{
+		colorDepth = bits;
+	}
+	
+	public int getColorDepth()
+	{
+		return colorDepth;
+	}
+	
+	protected void setDateTime(long dateTime)
+	{
+		this.dateTime = dateTime;
+	}
+	
+	public long getDateTime()
+	{
+		return dateTime;
 	}
 
 	////////////////////////////////////////////////
 	// Abstract Methods
 	////////////////////////////////////////////////
 	
-	public abstract boolean equals(File file);
-	public abstract FormatObject createObject(File file);
+	public abstract boolean equals(FormatHeader header);
+	public abstract FormatObject createObject(FormatHeader header);
 	public abstract String getMimeType();
 	
+	public boolean equals(File file)
+	{
+		return equals(new FormatHeader(file));
+	}
+	
+	public FormatObject createObject(File file)
+	{
+		return createObject(new FormatHeader(file));
+	}
+	
 	public String getMediaClass()
 	{
 		return "object.item.imageItem.photo";
@@ -78,28 +173,23 @@ public abstract class ImageIOFormat extends Header implements Format, FormatObje
 	public AttributeList getAttributeList()
 	{
 		AttributeList attrList = new AttributeList();
-/*
-=======
-		/*
->>>>>>> .r88
+		
 		try {
-			// Resolution (Width x Height)
-			int imgWidth = imgReader.getWidth(0);
-			int imgHeight = imgReader.getHeight(0);
-			String resStr = Integer.toString(imgWidth) + "x" + Integer.toString(imgHeight);
-			Attribute resAttr = new Attribute(ItemNode.RESOLUTION, resStr);
-			attrList.add(resAttr);
-			
 			// Size 
 			long fsize = imgFile.length();
-			Attribute sizeStr = new Attribute(ItemNode.SIZE, Long.toString(fsize));
-			attrList.add(sizeStr);
+			attrList.add(new Attribute(ItemNode.SIZE, Long.toString(fsize)));
+			
+			// Resolution (Width x Height)
+			if (0 < width && 0 < height)
+				attrList.add(new Attribute(ItemNode.RESOLUTION, Integer.toString(width) + "x" + Integer.toString(height)));
+			
+			// Color Depth
+			if (0 < colorDepth)
+				attrList.add(new Attribute(ItemNode.COLOR_DEPTH, Integer.toString(colorDepth)));
 		}
 		catch (Exception e) {
 			Debug.warning(e);
 		}
-<<<<<<< .mine
-*/
 		
 		return attrList;	
 	}
@@ -126,23 +216,4 @@ public abstract class ImageIOFormat extends Header implements Format, FormatObje
 	public void print()
 	{
 	}
-
-	////////////////////////////////////////////////
-	// main
-	////////////////////////////////////////////////
-	/*
-	public static void main(String args[]) 
-	{
-		Debug.on();
-		
-		try {
-			ID3 id3 = new ID3(new File("C:/eclipse/workspace/upnp-media-server/images/SampleBGM01.mp3"));
-			id3.print();
-		}
-		catch (Exception e) {
-			Debug.warning(e);
-		}
-	}
-	*/
 }
-
@@ -10,6 +10,9 @@
 *
 *	01/25/04
 *		- first revision.
+*	10/17/26
+*		- Changed to detect the format with FormatHeader.
+		- Added the resolution and the color depth of SOF and DateTimeOriginal of EXIF.
 *
 ******************************************************************/
 
@@ -21,6 +24,21 @@ import org.cybergarage.upnp.std.av.server.object.*;
 
 public class JPEGFormat extends ImageIOFormat
 {
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+
+	private final static int MARKER_SOI = 0xD8;
+	private final static int MARKER_EOI = 0xD9;
+	private final static int MARKER_SOS = 0xDA;
+	private final static int MARKER_APP1 = 0xE1;
+	private final static int MARKER_TEM = 0x01;
+	private final static int MARKER_RST0 = 0xD0;
+	private final static int MARKER_RST7 = 0xD7;
+
+	private final static int SOF_READ_SIZE = 8;
+	private final static int MAX_FILL_BYTES = 64;
+
 	////////////////////////////////////////////////
 	// Constroctor
 	////////////////////////////////////////////////
@@ -31,26 +49,99 @@ public class JPEGFormat extends ImageIOFormat
 	
 	public JPEGFormat(File file)
 	{
-		super(file);
+		this(new FormatHeader(file));
+	}
+	
+	public JPEGFormat(FormatHeader header)
+	{
+		super(header.getFile());
+		probe(header);
+	}
+
+	////////////////////////////////////////////////
+	// parse
+	////////////////////////////////////////////////
+	
+	// SOF0-SOF15 except DHT, JPG and DAC
+	private static boolean isSOF(int marker)
+	{
+		if (marker < 0xC0 || 0xCF < marker)
+			return false;
+		if (marker == 0xC4 || marker == 0xC8 || marker == 0xCC)
+			return false;
+		return true;
+	}
+	
+	// Walks the segment headers until SOF. Only the lengths are read for the other segments.
+	protected void parse(FormatHeader header, ProbeReader reader) throws IOException
+	{
+		long fileLength = reader.length();
+		long pos = 2;
+		while ((pos + 4) <= fileLength) {
+			byte buf[] = reader.read(pos, 4);
+			if (buf.length < 4 || (buf[0] & 0xFF) != 0xFF)
+				return;
+			// Skip the fill bytes before the marker.
+			int fillCnt = 0;
+			while ((buf[1] & 0xFF) == 0xFF) {
+				if (MAX_FILL_BYTES < ++fillCnt)
+					return;
+				pos++;
+				buf = reader.read(pos, 4);
+				if (buf.length < 4)
+					return;
+			}
+			int marker = buf[1] & 0xFF;
+			if (marker == MARKER_SOI || marker == MARKER_TEM || (MARKER_RST0 <= marker && marker <= MARKER_RST7)) {
+				pos += 2;
+				continue;
+			}
+			if (marker == MARKER_EOI || marker == MARKER_SOS)
+				return;
+			int segLen = ProbeReader.getInt(buf, 2, 2);
+			if (segLen < 2)
+				return;
+			if (isSOF(marker) == true) {
+				byte sof[] = reader.read(pos + 4, SOF_READ_SIZE - 2);
+				if (sof.length < (SOF_READ_SIZE - 2))
+					return;
+				int precision = sof[0] & 0xFF;
+				int imgHeight = ProbeReader.getInt(sof, 1, 2);
+				int imgWidth = ProbeReader.getInt(sof, 3, 2);
+				int components = sof[5] & 0xFF;
+				setResolution(imgWidth, imgHeight);
+				setColorDepth(precision * components);
+				return;
+			}
+			// EXIF is parsed only in the header not to read the large thumbnail in APP1.
+			if (marker == MARKER_APP1 && getDateTime() < 0) {
+				long dataPos = pos + 4;
+				int dataLen = segLen - 2;
+				if ((dataPos + dataLen) <= header.getLength())
+					setDateTime(ExifReader.getAPP1DateTime(header.getBytes(), (int)dataPos, dataLen));
+				else if (dataPos < header.getLength())
+					setDateTime(ExifReader.getAPP1DateTime(header.getBytes(), (int)dataPos, header.getLength() - (int)dataPos));
+			}
+			pos += 2 + segLen;
+		}
 	}
 
 	////////////////////////////////////////////////
 	// Abstract Methods
 	////////////////////////////////////////////////
 	
-	public boolean equals(File file)
+	public boolean equals(FormatHeader header)
 	{
-		byte headerID[] = Header.getID(file, 2);
-		int header1 = (int)headerID[0] & 0xff;
-		int header2 = (int)headerID[1] & 0xff;
+		int header1 = header.getByte(0);
+		int header2 = header.getByte(1);
 		if (header1 == 0xff && header2 == 0xd8)
 			return true;
 		return false;
 	}
 	
-	public FormatObject createObject(File file)
+	public FormatObject createObject(FormatHeader header)
 	{
-		return new JPEGFormat(file);
+		return new JPEGFormat(header);
 	}
 	
 	public String getMimeType()
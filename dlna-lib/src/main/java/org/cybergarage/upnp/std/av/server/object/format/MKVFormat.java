@@ -0,0 +1,248 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File : MKVFormat.java
+*
+*	Revision:
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object.format;
+
+import java.io.*;
+
+import org.cybergarage.upnp.std.av.server.object.*;
+
+// Matroska. Only Info and Tracks of Segment are read, and the parser stops at the first Cluster.
+public class MKVFormat extends VideoFormat
+{
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+
+	public final static int EBML = 0x1A45DFA3;
+	public final static int SEGMENT = 0x18538067;
+	public final static int INFO = 0x1549A966;
+	public final static int TIMECODE_SCALE = 0x2AD7B1;
+	public final static int DURATION = 0x4489;
+	public final static int TRACKS = 0x1654AE6B;
+	public final static int TRACK_ENTRY = 0xAE;
+	public final static int TRACK_TYPE = 0x83;
+	public final static int VIDEO = 0xE0;
+	public final static int PIXEL_WIDTH = 0xB0;
+	public final static int PIXEL_HEIGHT = 0xBA;
+	public final static int CLUSTER = 0x1F43B675;
+
+	public final static int TRACK_TYPE_VIDEO = 1;
+	public final static long DEFAULT_TIMECODE_SCALE = 1000000;
+
+	private final static int ELEMENT_HEADER_READ_SIZE = 12;
+	private final static int MAX_VALUE_SIZE = 8;
+
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+	
+	public MKVFormat()
+	{
+	}
+	
+	public MKVFormat(FormatHeader header)
+	{
+		super(header.getFile());
+		probe(header);
+	}
+
+	////////////////////////////////////////////////
+	// Element
+	////////////////////////////////////////////////
+	
+	private static class Element
+	{
+		int id;
+		long dataOffset;
+		long end;
+	}
+	
+	// Returns the length of the variable size integer from the first byte, or 0.
+	private static int getVIntLength(int firstByte, int maxLength)
+	{
+		for (int n=0; n<maxLength; n++) {
+			if ((firstByte & (0x80 >> n)) != 0)
+				return n + 1;
+		}
+		return 0;
+	}
+	
+	private static Element readElement(ProbeReader reader, long pos, long parentEnd) throws IOException
+	{
+		if (parentEnd <= pos)
+			return null;
+		byte buf[] = reader.read(pos, (int)Math.min(ELEMENT_HEADER_READ_SIZE, parentEnd - pos));
+		if (buf.length < 2)
+			return null;
+		
+		// The ID keeps the length marker bits.
+		int idLen = getVIntLength(buf[0] & 0xFF, 4);
+		if (idLen <= 0 || buf.length <= idLen)
+			return null;
+		int id = ProbeReader.getInt(buf, 0, idLen);
+		
+		int sizeLen = getVIntLength(buf[idLen] & 0xFF, 8);
+		if (sizeLen <= 0 || buf.length < (idLen + sizeLen))
+			return null;
+		long size = buf[idLen] & (0xFF >> sizeLen);
+		boolean unknownSize = (size == (0xFF >> sizeLen)) ? true : false;
+		for (int n=1; n<sizeLen; n++) {
+			int b = buf[idLen + n] & 0xFF;
+			if (b != 0xFF)
+				unknownSize = false;
+			size = (size << 8) | b;
+		}
+		
+		Element elem = new Element();
+		elem.id = id;
+		elem.dataOffset = pos + idLen + sizeLen;
+		elem.end = (unknownSize == true) ? parentEnd : Math.min(elem.dataOffset + size, parentEnd);
+		return elem;
+	}
+	
+	private static byte[] readValue(ProbeReader reader, Element elem) throws IOException
+	{
+		return reader.read(elem.dataOffset, (int)Math.min(MAX_VALUE_SIZE, elem.end - elem.dataOffset));
+	}
+	
+	private static long getUInt(byte buf[])
+	{
+		return ProbeReader.getLong(buf, 0, buf.length);
+	}
+	
+	private static double getFloat(byte buf[])
+	{
+		if (buf.length == 4)
+			return Float.intBitsToFloat(ProbeReader.getInt(buf, 0, 4));
+		if (buf.length == 8)
+			return Double.longBitsToDouble(ProbeReader.getLong(buf, 0, 8));
+		return 0;
+	}
+	
+	////////////////////////////////////////////////
+	// parse
+	////////////////////////////////////////////////
+	
+	private void parseInfo(ProbeReader reader, Element infoElem) throws IOException
+	{
+		long timecodeScale = DEFAULT_TIMECODE_SCALE;
+		double duration = 0;
+		long pos = infoElem.dataOffset;
+		Element elem;
+		while ((elem = readElement(reader, pos, infoElem.end)) != null) {
+			if (elem.id == TIMECODE_SCALE)
+				timecodeScale = getUInt(readValue(reader, elem));
+			else if (elem.id == DURATION)
+				duration = getFloat(readValue(reader, elem));
+			pos = elem.end;
+		}
+		// The duration is in the unit of TimecodeScale nanoseconds.
+		if (0 < duration)
+			setDuration((long)(duration * timecodeScale / 1000000));
+	}
+	
+	private void parseTrackEntry(ProbeReader reader, Element entryElem) throws IOException
+	{
+		long trackType = 0;
+		int trackWidth = 0;
+		int trackHeight = 0;
+		long pos = entryElem.dataOffset;
+		Element elem;
+		while ((elem = readElement(reader, pos, entryElem.end)) != null) {
+			if (elem.id == TRACK_TYPE)
+				trackType = getUInt(readValue(reader, elem));
+			else if (elem.id == VIDEO) {
+				long videoPos = elem.dataOffset;
+				Element videoElem;
+				while ((videoElem = readElement(reader, videoPos, elem.end)) != null) {
+					if (videoElem.id == PIXEL_WIDTH)
+						trackWidth = (int)getUInt(readValue(reader, videoElem));
+					else if (videoElem.id == PIXEL_HEIGHT)
+						trackHeight = (int)getUInt(readValue(reader, videoElem));
+					videoPos = videoElem.end;
+				}
+			}
+			pos = elem.end;
+		}
+		if (trackType == TRACK_TYPE_VIDEO && 0 < trackWidth && 0 < trackHeight && getWidth() <= 0)
+			setResolution(trackWidth, trackHeight);
+	}
+	
+	private void parseTracks(ProbeReader reader, Element tracksElem) throws IOException
+	{
+		long pos = tracksElem.dataOffset;
+		Element elem;
+		while ((elem = readElement(reader, pos, tracksElem.end)) != null) {
+			if (elem.id == TRACK_ENTRY)
+				parseTrackEntry(reader, elem);
+			pos = elem.end;
+		}
+	}
+	
+	protected void parse(ProbeReader reader) throws IOException
+	{
+		long pos = 0;
+		Element elem;
+		while ((elem = readElement(reader, pos, reader.length())) != null) {
+			if (elem.id == SEGMENT)
+				break;
+			pos = elem.end;
+		}
+		if (elem == null)
+			return;
+		
+		Element segmentElem = elem;
+		boolean hasInfo = false;
+		boolean hasTracks = false;
+		pos = segmentElem.dataOffset;
+		while ((elem = readElement(reader, pos, segmentElem.end)) != null) {
+			if (elem.id == INFO) {
+				parseInfo(reader, elem);
+				hasInfo = true;
+			}
+			else if (elem.id == TRACKS) {
+				parseTracks(reader, elem);
+				hasTracks = true;
+			}
+			else if (elem.id == CLUSTER)
+				break;
+			if (hasInfo == true && hasTracks == true)
+				break;
+			pos = elem.end;
+		}
+	}
+	
+	////////////////////////////////////////////////
+	// Abstract Methods
+	////////////////////////////////////////////////
+	
+	public boolean equals(FormatHeader header)
+	{
+		if (header.getByte(0) == 0x1A && header.getByte(1) == 0x45 && header.getByte(2) == 0xDF && header.getByte(3) == 0xA3)
+			return true;
+		return false;
+	}
+	
+	public FormatObject createObject(FormatHeader header)
+	{
+		return new MKVFormat(header);
+	}
+	
+	public String getMimeType()
+	{
+		return "video/x-matroska";
+	}
+}
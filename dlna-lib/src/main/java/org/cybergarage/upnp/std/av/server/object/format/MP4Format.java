@@ -0,0 +1,208 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File : MP4Format.java
+*
+*	Revision:
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object.format;
+
+import java.io.*;
+
+import org.cybergarage.upnp.std.av.server.object.*;
+
+// ISO base media file format (MP4). Only the box headers and mvhd, tkhd and hdlr in moov are read.
+public class MP4Format extends VideoFormat
+{
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+
+	public final static String FTYP = "ftyp";
+	public final static String MOOV = "moov";
+	public final static String MVHD = "mvhd";
+	public final static String TRAK = "trak";
+	public final static String TKHD = "tkhd";
+	public final static String MDIA = "mdia";
+	public final static String HDLR = "hdlr";
+	public final static String VIDE = "vide";
+
+	private final static int BOX_HEADER_SIZE = 8;
+	private final static int LARGE_BOX_HEADER_SIZE = 16;
+	private final static int MVHD_READ_SIZE = 32;
+	private final static int TKHD_READ_SIZE = 96;
+	private final static int HDLR_READ_SIZE = 12;
+
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+	
+	public MP4Format()
+	{
+	}
+	
+	public MP4Format(FormatHeader header)
+	{
+		super(header.getFile());
+		probe(header);
+	}
+
+	////////////////////////////////////////////////
+	// Box
+	////////////////////////////////////////////////
+	
+	private static class Box
+	{
+		String type;
+		long offset;
+		long dataOffset;
+		long end;
+	}
+	
+	// Returns the box at the position in the parent box, or null.
+	private static Box readBox(ProbeReader reader, long pos, long parentEnd) throws IOException
+	{
+		if (parentEnd < (pos + BOX_HEADER_SIZE))
+			return null;
+		byte buf[] = reader.read(pos, (int)Math.min(LARGE_BOX_HEADER_SIZE, parentEnd - pos));
+		if (buf.length < BOX_HEADER_SIZE)
+			return null;
+		Box box = new Box();
+		box.type = new String(buf, 4, 4, "ISO-8859-1");
+		box.offset = pos;
+		long size = ProbeReader.getLong(buf, 0, 4);
+		int headerSize = BOX_HEADER_SIZE;
+		if (size == 1) {
+			if (buf.length < LARGE_BOX_HEADER_SIZE)
+				return null;
+			size = ProbeReader.getLong(buf, 8, 8);
+			headerSize = LARGE_BOX_HEADER_SIZE;
+		}
+		else if (size == 0)
+			size = parentEnd - pos;
+		if (size < headerSize || parentEnd < (pos + size))
+			return null;
+		box.dataOffset = pos + headerSize;
+		box.end = pos + size;
+		return box;
+	}
+	
+	////////////////////////////////////////////////
+	// parse
+	////////////////////////////////////////////////
+	
+	private void parseMovieHeader(ProbeReader reader, Box box) throws IOException
+	{
+		byte buf[] = reader.read(box.dataOffset, MVHD_READ_SIZE);
+		if (buf.length < 1)
+			return;
+		long timeScale;
+		long duration;
+		if (buf[0] == 1) {
+			if (buf.length < 32)
+				return;
+			timeScale = ProbeReader.getLong(buf, 20, 4);
+			duration = ProbeReader.getLong(buf, 24, 8);
+		}
+		else {
+			if (buf.length < 20)
+				return;
+			timeScale = ProbeReader.getLong(buf, 12, 4);
+			duration = ProbeReader.getLong(buf, 16, 4);
+		}
+		if (0 < timeScale && 0 < duration)
+			setDuration((duration * 1000) / timeScale);
+	}
+	
+	private void parseTrack(ProbeReader reader, Box trakBox) throws IOException
+	{
+		int trackWidth = 0;
+		int trackHeight = 0;
+		boolean isVideoTrack = false;
+		
+		long pos = trakBox.dataOffset;
+		Box box;
+		while ((box = readBox(reader, pos, trakBox.end)) != null) {
+			if (box.type.equals(TKHD) == true) {
+				byte buf[] = reader.read(box.dataOffset, TKHD_READ_SIZE);
+				// The width and the height are fixed-point 16.16 numbers at the end.
+				int sizeOffset = (0 < buf.length && buf[0] == 1) ? 88 : 76;
+				if ((sizeOffset + 8) <= buf.length) {
+					trackWidth = ProbeReader.getInt(buf, sizeOffset, 4) >>> 16;
+					trackHeight = ProbeReader.getInt(buf, sizeOffset + 4, 4) >>> 16;
+				}
+			}
+			else if (box.type.equals(MDIA) == true) {
+				Box hdlrBox;
+				long mdiaPos = box.dataOffset;
+				while ((hdlrBox = readBox(reader, mdiaPos, box.end)) != null) {
+					if (hdlrBox.type.equals(HDLR) == true) {
+						byte buf[] = reader.read(hdlrBox.dataOffset, HDLR_READ_SIZE);
+						if (HDLR_READ_SIZE <= buf.length)
+							isVideoTrack = VIDE.equals(new String(buf, 8, 4, "ISO-8859-1"));
+						break;
+					}
+					mdiaPos = hdlrBox.end;
+				}
+			}
+			pos = box.end;
+		}
+		
+		if (isVideoTrack == true && 0 < trackWidth && 0 < trackHeight && getWidth() <= 0)
+			setResolution(trackWidth, trackHeight);
+	}
+	
+	private void parseMovie(ProbeReader reader, Box moovBox) throws IOException
+	{
+		long pos = moovBox.dataOffset;
+		Box box;
+		while ((box = readBox(reader, pos, moovBox.end)) != null) {
+			if (box.type.equals(MVHD) == true)
+				parseMovieHeader(reader, box);
+			else if (box.type.equals(TRAK) == true)
+				parseTrack(reader, box);
+			pos = box.end;
+		}
+	}
+	
+	// moov may be at the end of the file, so the top level boxes such as mdat are skipped with the sizes.
+	protected void parse(ProbeReader reader) throws IOException
+	{
+		long pos = 0;
+		Box box;
+		while ((box = readBox(reader, pos, reader.length())) != null) {
+			if (box.type.equals(MOOV) == true) {
+				parseMovie(reader, box);
+				return;
+			}
+			pos = box.end;
+		}
+	}
+	
+	////////////////////////////////////////////////
+	// Abstract Methods
+	////////////////////////////////////////////////
+	
+	public boolean equals(FormatHeader header)
+	{
+		return header.startsWith(FTYP, 4);
+	}
+	
+	public FormatObject createObject(FormatHeader header)
+	{
+		return new MP4Format(header);
+	}
+	
+	public String getMimeType()
+	{
+		return "video/mp4";
+	}
+}
@@ -10,6 +10,9 @@
 *
 *	02/02/04
 *		- first revision.
+*	10/17/26
+*		- Added HeaderFormat.
+*		- Changed to extend VideoFormat, and added the duration and the resolution of the program streams.
 *
 ******************************************************************/
 
@@ -17,19 +20,20 @@ package org.cybergarage.upnp.std.av.server.object.format;
 
 import java.io.*;
 
-import org.cybergarage.xml.*;
-import org.cybergarage.util.*;
 import org.cybergarage.upnp.std.av.server.object.*;
-import org.cybergarage.upnp.std.av.server.object.item.*;
 
-public class MPEGFormat implements Format, FormatObject
+// MPEG-1/2 program streams. The duration is the difference of the video PTSs at the head and the tail.
+public class MPEGFormat extends VideoFormat
 {
 	////////////////////////////////////////////////
-	// Member
+	// Constants
 	////////////////////////////////////////////////
 
-	private File mpegFile;
-		
+	public final static int PACK_START_CODE = 0xBA;
+
+	private final static int HEAD_PROBE_SIZE = 128 * 1024;
+	private final static int TAIL_PROBE_SIZE = 96 * 1024;
+
 	////////////////////////////////////////////////
 	// Constroctor
 	////////////////////////////////////////////////
@@ -40,9 +44,58 @@ public class MPEGFormat implements Format, FormatObject
 	
 	public MPEGFormat(File file)
 	{
-		mpegFile = file;
+		this(new FormatHeader(file));
+	}
+
+	public MPEGFormat(FormatHeader header)
+	{
+		super(header.getFile());
+		probe(header);
 	}
 
+	////////////////////////////////////////////////
+	// parse
+	////////////////////////////////////////////////
+	
+	// Returns the first or the last PTS of the video PES in the buffer.
+	private static long findVideoPTS(byte buf[], boolean isLast)
+	{
+		long pts = -1;
+		for (int n=0; n<(buf.length - 4); n++) {
+			if (buf[n] != 0 || buf[n + 1] != 0 || buf[n + 2] != 1)
+				continue;
+			if (MPEGVideoParser.isVideoStreamID(buf[n + 3] & 0xFF) == false)
+				continue;
+			long pesPTS = MPEGVideoParser.getPTS(buf, n, buf.length);
+			if (pesPTS < 0)
+				continue;
+			pts = pesPTS;
+			if (isLast == false)
+				break;
+		}
+		return pts;
+	}
+	
+	protected void parse(ProbeReader reader) throws IOException
+	{
+		long fileLength = reader.length();
+		byte head[] = reader.read(0, (int)Math.min(HEAD_PROBE_SIZE, fileLength));
+		
+		int size[] = MPEGVideoParser.findResolution(head, 0, head.length);
+		if (size != null)
+			setResolution(size[0], size[1]);
+		
+		long firstPTS = findVideoPTS(head, false);
+		if (firstPTS < 0)
+			return;
+		long tailPos = Math.max(head.length, fileLength - TAIL_PROBE_SIZE);
+		byte tail[] = (tailPos < fileLength) ? reader.read(tailPos, (int)(fileLength - tailPos)) : head;
+		long lastPTS = findVideoPTS(tail, true);
+		long duration = MPEGVideoParser.getDuration(firstPTS, lastPTS);
+		if (0 < duration)
+			setDuration(duration);
+	}
+	
 	////////////////////////////////////////////////
 	// Abstract Methods
 	////////////////////////////////////////////////
@@ -57,51 +110,28 @@ public class MPEGFormat implements Format, FormatObject
 		return false;
 	}
 	
-	public FormatObject createObject(File file)
+	public boolean equals(FormatHeader header)
 	{
-		return new MPEGFormat(file);
-	}
-	
-	public String getMimeType()
-	{
-		return "video/mpeg";
-	}
-
-	public String getMediaClass()
-	{
-		return "object.item.videoItem.movie";
+		String ext = header.getSuffix();
+		if (ext.startsWith("mpeg") || ext.startsWith("mpg"))
+			return true;
+		if (header.getByte(0) == 0 && header.getByte(1) == 0 && header.getByte(2) == 1 && header.getByte(3) == PACK_START_CODE)
+			return true;
+		return false;
 	}
 	
-	public AttributeList getAttributeList()
+	public FormatObject createObject(File file)
 	{
-		AttributeList attrList = new AttributeList();
-		
-		try {
-			// Size 
-			long fsize = mpegFile.length();
-			Attribute sizeStr = new Attribute(ItemNode.SIZE, Long.toString(fsize));
-			attrList.add(sizeStr);
-		}
-		catch (Exception e) {
-			Debug.warning(e);
-		}
-		
-		return attrList;	
+		return new MPEGFormat(file);
 	}
 	
-	public String getTitle()
+	public FormatObject createObject(FormatHeader header)
 	{
-		String fname = mpegFile.getName();
-		int idx = fname.lastIndexOf(".");
-		if (idx < 0)
-			return "";
-		String title = fname.substring(0, idx);
-		return title;
+		return new MPEGFormat(header);
 	}
 	
-	public String getCreator()
+	public String getMimeType()
 	{
-		return "";
+		return "video/mpeg";
 	}
 }
-
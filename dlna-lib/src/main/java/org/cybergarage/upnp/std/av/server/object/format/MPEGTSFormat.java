@@ -0,0 +1,287 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File : MPEGTSFormat.java
+*
+*	Revision:
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object.format;
+
+import java.io.*;
+import java.util.*;
+
+import org.cybergarage.upnp.std.av.server.object.*;
+
+// MPEG-2 transport streams of 188 byte packets and 192 byte packets (M2TS).
+// PAT and PMT are read at the head, and the duration is the difference of the PTSs at the head and the tail.
+public class MPEGTSFormat extends VideoFormat
+{
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+
+	public final static int PACKET_SIZE = 188;
+	public final static int M2TS_PACKET_SIZE = 192;
+	public final static int SYNC_BYTE = 0x47;
+	public final static int PAT_PID = 0;
+
+	public final static int STREAM_TYPE_MPEG1_VIDEO = 0x01;
+	public final static int STREAM_TYPE_MPEG2_VIDEO = 0x02;
+	public final static int STREAM_TYPE_H264_VIDEO = 0x1B;
+	public final static int STREAM_TYPE_HEVC_VIDEO = 0x24;
+
+	private final static int HEAD_PROBE_SIZE = 128 * 1024;
+	private final static int TAIL_PROBE_SIZE = 96 * 1024;
+	private final static int MAX_VIDEO_DATA_SIZE = 64 * 1024;
+	private final static int SYNC_CHECK_PACKETS = 3;
+
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+	
+	public MPEGTSFormat()
+	{
+	}
+	
+	public MPEGTSFormat(FormatHeader header)
+	{
+		super(header.getFile());
+		probe(header);
+	}
+
+	////////////////////////////////////////////////
+	// Packet
+	////////////////////////////////////////////////
+	
+	// Returns PACKET_SIZE or M2TS_PACKET_SIZE, or 0 when the data isn't a transport stream.
+	public final static int getPacketSize(byte buf[], int len)
+	{
+		int packetSize[] = {PACKET_SIZE, M2TS_PACKET_SIZE};
+		for (int n=0; n<packetSize.length; n++) {
+			int syncOffset = packetSize[n] - PACKET_SIZE;
+			if (len < (packetSize[n] * SYNC_CHECK_PACKETS))
+				continue;
+			boolean isSynced = true;
+			for (int i=0; i<SYNC_CHECK_PACKETS; i++) {
+				if ((buf[syncOffset + packetSize[n] * i] & 0xFF) != SYNC_BYTE)
+					isSynced = false;
+			}
+			if (isSynced == true)
+				return packetSize[n];
+		}
+		return 0;
+	}
+	
+	public final static boolean isVideoStreamType(int streamType)
+	{
+		switch (streamType) {
+		case STREAM_TYPE_MPEG1_VIDEO:
+		case STREAM_TYPE_MPEG2_VIDEO:
+		case STREAM_TYPE_H264_VIDEO:
+		case STREAM_TYPE_HEVC_VIDEO:
+			return true;
+		}
+		return false;
+	}
+	
+	////////////////////////////////////////////////
+	// parse
+	////////////////////////////////////////////////
+	
+	private int packetSize;
+	private int pmtPID;
+	private boolean pmtParsed;
+	private int videoPID;
+	private int videoStreamType;
+	// PID -> First PTS
+	private HashMap firstPTSMap;
+	// PID -> Last PTS
+	private HashMap lastPTSMap;
+	private ByteArrayOutputStream videoData;
+	
+	private static int getSectionOffset(byte buf[], int payload, int end)
+	{
+		int section = payload + 1 + (buf[payload] & 0xFF);
+		return (section < end) ? section : -1;
+	}
+	
+	private static int getSectionEnd(byte buf[], int section, int end)
+	{
+		int sectionLength = ((buf[section + 1] & 0x0F) << 8) | (buf[section + 2] & 0xFF);
+		// The last 4 bytes are CRC32.
+		return Math.min(section + 3 + sectionLength - 4, end);
+	}
+	
+	private void parsePAT(byte buf[], int payload, int end)
+	{
+		int section = getSectionOffset(buf, payload, end);
+		if (section < 0 || end < (section + 8) || buf[section] != 0x00)
+			return;
+		int programEnd = getSectionEnd(buf, section, end);
+		for (int n=section+8; (n + 4)<=programEnd; n+=4) {
+			int programNumber = ProbeReader.getInt(buf, n, 2);
+			// Program 0 is the network PID.
+			if (programNumber == 0)
+				continue;
+			pmtPID = ((buf[n + 2] & 0x1F) << 8) | (buf[n + 3] & 0xFF);
+			return;
+		}
+	}
+	
+	private void parsePMT(byte buf[], int payload, int end)
+	{
+		int section = getSectionOffset(buf, payload, end);
+		if (section < 0 || end < (section + 12) || buf[section] != 0x02)
+			return;
+		int streamEnd = getSectionEnd(buf, section, end);
+		int programInfoLength = ((buf[section + 10] & 0x0F) << 8) | (buf[section + 11] & 0xFF);
+		for (int n=section+12+programInfoLength; (n + 5)<=streamEnd; ) {
+			int streamType = buf[n] & 0xFF;
+			int pid = ((buf[n + 1] & 0x1F) << 8) | (buf[n + 2] & 0xFF);
+			int esInfoLength = ((buf[n + 3] & 0x0F) << 8) | (buf[n + 4] & 0xFF);
+			if (videoPID < 0 && isVideoStreamType(streamType) == true) {
+				videoPID = pid;
+				videoStreamType = streamType;
+			}
+			n += 5 + esInfoLength;
+		}
+		pmtParsed = true;
+	}
+	
+	private void parsePackets(byte buf[], boolean isHead)
+	{
+		int syncOffset = packetSize - PACKET_SIZE;
+		for (int pos=0; (pos + packetSize)<=buf.length; pos+=packetSize) {
+			int packet = pos + syncOffset;
+			if ((buf[packet] & 0xFF) != SYNC_BYTE)
+				continue;
+			boolean isPayloadStart = ((buf[packet + 1] & 0x40) != 0) ? true : false;
+			int pid = ((buf[packet + 1] & 0x1F) << 8) | (buf[packet + 2] & 0xFF);
+			int adaptationFieldControl = (buf[packet + 3] >> 4) & 0x03;
+			if ((adaptationFieldControl & 0x01) == 0)
+				continue;
+			int payload = packet + 4;
+			if (adaptationFieldControl == 3)
+				payload += 1 + (buf[packet + 4] & 0xFF);
+			int end = packet + PACKET_SIZE;
+			if (end <= payload)
+				continue;
+			
+			if (isHead == true && pid == PAT_PID) {
+				if (isPayloadStart == true && pmtPID < 0)
+					parsePAT(buf, payload, end);
+				continue;
+			}
+			if (isHead == true && pid == pmtPID) {
+				if (isPayloadStart == true && pmtParsed == false)
+					parsePMT(buf, payload, end);
+				continue;
+			}
+			
+			int dataOffset = payload;
+			if (isPayloadStart == true) {
+				long pts = MPEGVideoParser.getPTS(buf, payload, end);
+				if (0 <= pts) {
+					Integer key = Integer.valueOf(pid);
+					if (isHead == true && firstPTSMap.containsKey(key) == false)
+						firstPTSMap.put(key, Long.valueOf(pts));
+					lastPTSMap.put(key, Long.valueOf(pts));
+				}
+				dataOffset = MPEGVideoParser.getPESPayloadOffset(buf, payload, end);
+			}
+			
+			if (isHead == true && pid == videoPID && videoData.size() < MAX_VIDEO_DATA_SIZE)
+				videoData.write(buf, dataOffset, end - dataOffset);
+		}
+	}
+	
+	private void parseResolution()
+	{
+		byte data[] = videoData.toByteArray();
+		int size[] = null;
+		if (videoStreamType == STREAM_TYPE_MPEG1_VIDEO || videoStreamType == STREAM_TYPE_MPEG2_VIDEO)
+			size = MPEGVideoParser.findSequenceHeader(data, 0, data.length);
+		else if (videoStreamType == STREAM_TYPE_H264_VIDEO)
+			size = MPEGVideoParser.findSPS(data, 0, data.length);
+		if (size != null)
+			setResolution(size[0], size[1]);
+	}
+	
+	private void parseDuration()
+	{
+		Integer key = null;
+		if (0 <= videoPID && firstPTSMap.containsKey(Integer.valueOf(videoPID)) == true)
+			key = Integer.valueOf(videoPID);
+		else if (0 < firstPTSMap.size())
+			key = (Integer)firstPTSMap.keySet().iterator().next();
+		if (key == null)
+			return;
+		Long firstPTS = (Long)firstPTSMap.get(key);
+		Long lastPTS = (Long)lastPTSMap.get(key);
+		if (firstPTS == null || lastPTS == null)
+			return;
+		long duration = MPEGVideoParser.getDuration(firstPTS.longValue(), lastPTS.longValue());
+		if (0 < duration)
+			setDuration(duration);
+	}
+	
+	protected void parse(ProbeReader reader) throws IOException
+	{
+		long fileLength = reader.length();
+		byte head[] = reader.read(0, (int)Math.min(HEAD_PROBE_SIZE, fileLength));
+		packetSize = getPacketSize(head, head.length);
+		if (packetSize <= 0)
+			return;
+		
+		pmtPID = -1;
+		pmtParsed = false;
+		videoPID = -1;
+		videoStreamType = -1;
+		firstPTSMap = new HashMap();
+		lastPTSMap = new HashMap();
+		videoData = new ByteArrayOutputStream();
+		try {
+			parsePackets(head, true);
+			parseResolution();
+			
+			// The tail is read at the packet boundary.
+			long tailPos = Math.max(head.length, fileLength - TAIL_PROBE_SIZE);
+			tailPos = (tailPos / packetSize) * packetSize;
+			if (tailPos < fileLength)
+				parsePackets(reader.read(tailPos, (int)(fileLength - tailPos)), false);
+			parseDuration();
+		}
+		finally {
+			firstPTSMap = null;
+			lastPTSMap = null;
+			videoData = null;
+		}
+	}
+	
+	////////////////////////////////////////////////
+	// Abstract Methods
+	////////////////////////////////////////////////
+	
+	public boolean equals(FormatHeader header)
+	{
+		return (0 < getPacketSize(header.getBytes(), header.getLength())) ? true : false;
+	}
+	
+	public FormatObject createObject(FormatHeader header)
+	{
+		return new MPEGTSFormat(header);
+	}
+	
+	public String getMimeType()
+	{
+		return "video/mp2t";
+	}
+}
@@ -0,0 +1,280 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File : MPEGVideoParser.java
+*
+*	Revision:
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object.format;
+
+// The PES timestamps and the video sizes in the MPEG-2 sequence header and the H.264 SPS,
+// which are shared by MPEGFormat for the program streams and MPEGTSFormat.
+public final class MPEGVideoParser
+{
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+
+	public final static int PTS_CLOCK = 90000;
+	public final static long PTS_WRAP = 1L << 33;
+
+	public final static int SEQUENCE_HEADER_CODE = 0xB3;
+	public final static int NAL_SPS = 7;
+
+	////////////////////////////////////////////////
+	// PES
+	////////////////////////////////////////////////
+
+	public final static boolean isVideoStreamID(int streamID)
+	{
+		return ((streamID & 0xF0) == 0xE0) ? true : false;
+	}
+
+	// Returns the PTS of the PES header at the offset, or -1.
+	public final static long getPTS(byte buf[], int offset, int end)
+	{
+		if (end < (offset + 14))
+			return -1;
+		if (buf[offset] != 0 || buf[offset + 1] != 0 || buf[offset + 2] != 1)
+			return -1;
+		// MPEG-2 PES header
+		if ((buf[offset + 6] & 0xC0) != 0x80)
+			return -1;
+		if ((buf[offset + 7] & 0x80) == 0)
+			return -1;
+		int pts = offset + 9;
+		return (((long)(buf[pts] & 0x0E)) << 29)
+			| ((buf[pts + 1] & 0xFF) << 22)
+			| ((buf[pts + 2] & 0xFE) << 14)
+			| ((buf[pts + 3] & 0xFF) << 7)
+			| ((buf[pts + 4] & 0xFE) >> 1);
+	}
+
+	// Returns the offset of the payload of the PES header at the offset.
+	public final static int getPESPayloadOffset(byte buf[], int offset, int end)
+	{
+		if (end < (offset + 9))
+			return end;
+		return Math.min(offset + 9 + (buf[offset + 8] & 0xFF), end);
+	}
+
+	// Returns the milliseconds between the PTSs which may be wrapped around.
+	public final static long getDuration(long firstPTS, long lastPTS)
+	{
+		if (firstPTS < 0 || lastPTS < 0)
+			return -1;
+		long diff = lastPTS - firstPTS;
+		if (diff < 0)
+			diff += PTS_WRAP;
+		return (diff * 1000) / PTS_CLOCK;
+	}
+
+	////////////////////////////////////////////////
+	// Resolution
+	////////////////////////////////////////////////
+
+	// Searches the MPEG-1/2 sequence header, and returns {width, height} or null.
+	public final static int[] findSequenceHeader(byte buf[], int offset, int end)
+	{
+		for (int n=offset; n<(end - 7); n++) {
+			if (buf[n] != 0 || buf[n + 1] != 0 || buf[n + 2] != 1 || (buf[n + 3] & 0xFF) != SEQUENCE_HEADER_CODE)
+				continue;
+			int width = ((buf[n + 4] & 0xFF) << 4) | ((buf[n + 5] & 0xF0) >> 4);
+			int height = ((buf[n + 5] & 0x0F) << 8) | (buf[n + 6] & 0xFF);
+			if (0 < width && 0 < height)
+				return new int[] {width, height};
+		}
+		return null;
+	}
+
+	// Searches the H.264 SPS, and returns {width, height} or null.
+	public final static int[] findSPS(byte buf[], int offset, int end)
+	{
+		for (int n=offset; n<(end - 4); n++) {
+			if (buf[n] != 0 || buf[n + 1] != 0 || buf[n + 2] != 1)
+				continue;
+			int nalHeader = buf[n + 3] & 0xFF;
+			// forbidden_zero_bit is 0, and nal_ref_idc of SPS isn't 0.
+			if ((nalHeader & 0x80) != 0 || (nalHeader & 0x60) == 0 || (nalHeader & 0x1F) != NAL_SPS)
+				continue;
+			int size[] = parseSPS(buf, n + 4, end);
+			if (size != null)
+				return size;
+		}
+		return null;
+	}
+
+	public final static int[] findResolution(byte buf[], int offset, int end)
+	{
+		int size[] = findSequenceHeader(buf, offset, end);
+		if (size != null)
+			return size;
+		return findSPS(buf, offset, end);
+	}
+
+	////////////////////////////////////////////////
+	// H.264 SPS
+	////////////////////////////////////////////////
+
+	private static class BitReader
+	{
+		byte buf[];
+		int end;
+		int bitPos;
+
+		BitReader(byte buf[], int offset, int end)
+		{
+			// The emulation prevention bytes (0x000003) are removed.
+			byte rbsp[] = new byte[end - offset];
+			int len = 0;
+			int zeroCnt = 0;
+			for (int n=offset; n<end; n++) {
+				int b = buf[n] & 0xFF;
+				if (2 <= zeroCnt && b == 0x03) {
+					zeroCnt = 0;
+					continue;
+				}
+				if (2 <= zeroCnt && b <= 0x02)
+					break;
+				zeroCnt = (b == 0) ? zeroCnt + 1 : 0;
+				rbsp[len++] = (byte)b;
+			}
+			this.buf = rbsp;
+			this.end = len * 8;
+			bitPos = 0;
+		}
+
+		int readBit()
+		{
+			if (end <= bitPos)
+				throw new IndexOutOfBoundsException();
+			int bit = (buf[bitPos >> 3] >> (7 - (bitPos & 7))) & 1;
+			bitPos++;
+			return bit;
+		}
+
+		int readBits(int n)
+		{
+			int value = 0;
+			for (int i=0; i<n; i++)
+				value = (value << 1) | readBit();
+			return value;
+		}
+
+		int readUE()
+		{
+			int zeroCnt = 0;
+			while (readBit() == 0) {
+				zeroCnt++;
+				if (31 <= zeroCnt)
+					throw new IndexOutOfBoundsException();
+			}
+			return ((1 << zeroCnt) - 1) + readBits(zeroCnt);
+		}
+
+		int readSE()
+		{
+			int value = readUE();
+			return ((value & 1) != 0) ? (value + 1) / 2 : -(value / 2);
+		}
+	}
+
+	private static boolean hasChromaFormat(int profileIDC)
+	{
+		switch (profileIDC) {
+		case 100: case 110: case 122: case 244: case 44: case 83:
+		case 86: case 118: case 128: case 138: case 139: case 134: case 135:
+			return true;
+		}
+		return false;
+	}
+
+	private static void skipScalingList(BitReader reader, int size)
+	{
+		int lastScale = 8;
+		int nextScale = 8;
+		for (int n=0; n<size; n++) {
+			if (nextScale != 0)
+				nextScale = (lastScale + reader.readSE() + 256) % 256;
+			lastScale = (nextScale == 0) ? lastScale : nextScale;
+		}
+	}
+
+	// Returns {width, height} of the SPS whose payload starts at the offset, or null.
+	public final static int[] parseSPS(byte buf[], int offset, int end)
+	{
+		try {
+			BitReader reader = new BitReader(buf, offset, end);
+			int profileIDC = reader.readBits(8);
+			reader.readBits(16); // constraint flags and level_idc
+			reader.readUE(); // seq_parameter_set_id
+			int chromaFormatIDC = 1;
+			boolean separateColourPlane = false;
+			if (hasChromaFormat(profileIDC) == true) {
+				chromaFormatIDC = reader.readUE();
+				if (chromaFormatIDC == 3)
+					separateColourPlane = (reader.readBit() == 1) ? true : false;
+				reader.readUE(); // bit_depth_luma_minus8
+				reader.readUE(); // bit_depth_chroma_minus8
+				reader.readBit(); // qpprime_y_zero_transform_bypass_flag
+				if (reader.readBit() == 1) {
+					int nLists = (chromaFormatIDC != 3) ? 8 : 12;
+					for (int n=0; n<nLists; n++) {
+						if (reader.readBit() == 1)
+							skipScalingList(reader, (n < 6) ? 16 : 64);
+					}
+				}
+			}
+			reader.readUE(); // log2_max_frame_num_minus4
+			int picOrderCntType = reader.readUE();
+			if (picOrderCntType == 0)
+				reader.readUE();
+			else if (picOrderCntType == 1) {
+				reader.readBit();
+				reader.readSE();
+				reader.readSE();
+				int nCycles = reader.readUE();
+				for (int n=0; n<nCycles; n++)
+					reader.readSE();
+			}
+			reader.readUE(); // max_num_ref_frames
+			reader.readBit(); // gaps_in_frame_num_value_allowed_flag
+			int widthInMbs = reader.readUE() + 1;
+			int heightInMapUnits = reader.readUE() + 1;
+			int frameMbsOnly = reader.readBit();
+			if (frameMbsOnly == 0)
+				reader.readBit();
+			reader.readBit(); // direct_8x8_inference_flag
+			int cropLeft = 0, cropRight = 0, cropTop = 0, cropBottom = 0;
+			if (reader.readBit() == 1) {
+				cropLeft = reader.readUE();
+				cropRight = reader.readUE();
+				cropTop = reader.readUE();
+				cropBottom = reader.readUE();
+			}
+			
+			int cropUnitX = 1;
+			int cropUnitY = 2 - frameMbsOnly;
+			if (chromaFormatIDC != 0 && separateColourPlane == false) {
+				cropUnitX = (chromaFormatIDC == 3) ? 1 : 2;
+				cropUnitY *= (chromaFormatIDC == 1) ? 2 : 1;
+			}
+			int width = widthInMbs * 16 - (cropLeft + cropRight) * cropUnitX;
+			int height = (2 - frameMbsOnly) * heightInMapUnits * 16 - (cropTop + cropBottom) * cropUnitY;
+			if (width <= 0 || height <= 0)
+				return null;
+			return new int[] {width, height};
+		}
+		catch (IndexOutOfBoundsException e) {
+			return null;
+		}
+	}
+}
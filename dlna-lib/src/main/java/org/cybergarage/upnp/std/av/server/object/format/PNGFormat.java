@@ -10,6 +10,9 @@
 *
 *	01/25/04
 *		- first revision.
+*	10/17/26
+*		- Changed to detect the format with FormatHeader.
+		- Added the resolution and the color depth of IHDR and the date of the eXIf chunk.
 *
 ******************************************************************/
 
@@ -21,6 +24,19 @@ import org.cybergarage.upnp.std.av.server.object.*;
 
 public class PNGFormat extends ImageIOFormat
 {
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+
+	public final static String IHDR = "IHDR";
+	public final static String EXIF = "eXIf";
+	public final static String IDAT = "IDAT";
+
+	private final static int SIGNATURE_SIZE = 8;
+	private final static int CHUNK_HEADER_SIZE = 8;
+	private final static int CHUNK_CRC_SIZE = 4;
+	private final static int IHDR_SIZE = 13;
+
 	////////////////////////////////////////////////
 	// Constroctor
 	////////////////////////////////////////////////
@@ -31,24 +47,81 @@ public class PNGFormat extends ImageIOFormat
 	
 	public PNGFormat(File file)
 	{
-		super(file);
+		this(new FormatHeader(file));
+	}
+	
+	public PNGFormat(FormatHeader header)
+	{
+		super(header.getFile());
+		probe(header);
+	}
+
+	////////////////////////////////////////////////
+	// parse
+	////////////////////////////////////////////////
+	
+	// Returns the samples per pixel of the color type.
+	private static int getChannels(int colorType)
+	{
+		switch (colorType) {
+		case 0: // Grayscale
+		case 3: // Indexed
+			return 1;
+		case 2: // Truecolor
+			return 3;
+		case 4: // Grayscale with alpha
+			return 2;
+		case 6: // Truecolor with alpha
+			return 4;
+		}
+		return 0;
+	}
+	
+	// IHDR is the first chunk. The following chunks are walked only in the header for eXIf.
+	protected void parse(FormatHeader header, ProbeReader reader) throws IOException
+	{
+		byte buf[] = reader.read(SIGNATURE_SIZE, CHUNK_HEADER_SIZE + IHDR_SIZE);
+		if (buf.length < (CHUNK_HEADER_SIZE + IHDR_SIZE))
+			return;
+		if (new String(buf, 4, 4).equals(IHDR) == false)
+			return;
+		int imgWidth = ProbeReader.getInt(buf, 8, 4);
+		int imgHeight = ProbeReader.getInt(buf, 12, 4);
+		int bitDepth = buf[16] & 0xFF;
+		int colorType = buf[17] & 0xFF;
+		setResolution(imgWidth, imgHeight);
+		setColorDepth(bitDepth * getChannels(colorType));
+		
+		byte headerBytes[] = header.getBytes();
+		int headerLen = header.getLength();
+		long pos = SIGNATURE_SIZE + CHUNK_HEADER_SIZE + ProbeReader.getLong(buf, 0, 4) + CHUNK_CRC_SIZE;
+		while ((pos + CHUNK_HEADER_SIZE) <= headerLen) {
+			long chunkLen = ProbeReader.getLong(headerBytes, (int)pos, 4);
+			String chunkType = new String(headerBytes, (int)pos + 4, 4);
+			if (chunkType.equals(IDAT) == true)
+				return;
+			long dataPos = pos + CHUNK_HEADER_SIZE;
+			if (chunkType.equals(EXIF) == true) {
+				if ((dataPos + chunkLen) <= headerLen)
+					setDateTime(ExifReader.getDateTime(headerBytes, (int)dataPos, (int)chunkLen));
+				return;
+			}
+			pos = dataPos + chunkLen + CHUNK_CRC_SIZE;
+		}
 	}
 
 	////////////////////////////////////////////////
 	// Abstract Methods
 	////////////////////////////////////////////////
 	
-	public boolean equals(File file)
+	public boolean equals(FormatHeader header)
 	{
-		String headerID = Header.getIDString(file, 1, 3);
-		if (headerID.startsWith("PNG") == true)
-			return true;		
-		return false;
+		return header.startsWith("PNG", 1);
 	}
 	
-	public FormatObject createObject(File file)
+	public FormatObject createObject(FormatHeader header)
 	{
-		return new PNGFormat(file);
+		return new PNGFormat(header);
 	}
 	
 	public String getMimeType()
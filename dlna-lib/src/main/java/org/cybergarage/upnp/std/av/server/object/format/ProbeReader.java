@@ -0,0 +1,153 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File : ProbeReader.java
+*
+*	Revision:
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object.format;
+
+import java.io.*;
+
+import org.cybergarage.upnp.std.av.server.object.*;
+
+// Reads the parts of a file for the format parsers. The bytes in FormatHeader are
+// reused, and the other reads are limited by the budget not to slow down the scan.
+public class ProbeReader
+{
+	////////////////////////////////////////////////
+	// Constants
+	////////////////////////////////////////////////
+
+	public final static int DEFAULT_BUDGET = 256 * 1024;
+
+	////////////////////////////////////////////////
+	// BudgetExceededException
+	////////////////////////////////////////////////
+
+	public static class BudgetExceededException extends IOException
+	{
+		public BudgetExceededException(int budget)
+		{
+			super("Probe budget exceeded : " + budget);
+		}
+	}
+
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+
+	public ProbeReader(FormatHeader header, int budget)
+	{
+		this.header = header;
+		this.budget = budget;
+		fileLength = header.getFileLength();
+		readBytes = 0;
+		in = null;
+	}
+
+	public ProbeReader(FormatHeader header)
+	{
+		this(header, DEFAULT_BUDGET);
+	}
+
+	////////////////////////////////////////////////
+	// Member
+	////////////////////////////////////////////////
+
+	private FormatHeader header;
+	private int budget;
+	private long fileLength;
+	private int readBytes;
+	private RandomAccessFile in;
+
+	public File getFile()
+	{
+		return header.getFile();
+	}
+
+	public long length()
+	{
+		return fileLength;
+	}
+
+	public int getBudget()
+	{
+		return budget;
+	}
+
+	public int getReadBytes()
+	{
+		return readBytes;
+	}
+
+	public int getRemainingBudget()
+	{
+		return budget - readBytes;
+	}
+
+	////////////////////////////////////////////////
+	// read
+	////////////////////////////////////////////////
+
+	// Returns the bytes at the position, which are shorter than len at the end of the file.
+	public byte[] read(long pos, int len) throws IOException
+	{
+		if (pos < 0 || fileLength <= pos || len <= 0)
+			return new byte[0];
+		if ((fileLength - pos) < len)
+			len = (int)(fileLength - pos);
+		byte buf[] = new byte[len];
+
+		if ((pos + len) <= header.getLength()) {
+			System.arraycopy(header.getBytes(), (int)pos, buf, 0, len);
+			return buf;
+		}
+
+		if (budget < (readBytes + len))
+			throw new BudgetExceededException(budget);
+		readBytes += len;
+		if (in == null)
+			in = new RandomAccessFile(header.getFile(), "r");
+		in.seek(pos);
+		in.readFully(buf);
+		return buf;
+	}
+
+	public void close()
+	{
+		if (in == null)
+			return;
+		try {
+			in.close();
+		}
+		catch (IOException e) {}
+		in = null;
+	}
+
+	////////////////////////////////////////////////
+	// Integer
+	////////////////////////////////////////////////
+
+	// Returns the big endian unsigned integer.
+	public final static long getLong(byte buf[], int offset, int len)
+	{
+		long value = 0;
+		for (int n=0; n<len; n++)
+			value = (value << 8) | (buf[offset + n] & 0xFF);
+		return value;
+	}
+
+	public final static int getInt(byte buf[], int offset, int len)
+	{
+		return (int)getLong(buf, offset, len);
+	}
+}
@@ -0,0 +1,202 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File : VideoFormat.java
+*
+*	Revision:
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object.format;
+
+import java.io.*;
+
+import org.cybergarage.xml.*;
+import org.cybergarage.util.*;
+import org.cybergarage.upnp.std.av.server.object.*;
+import org.cybergarage.upnp.std.av.server.object.item.*;
+
+// The container formats which parse only the headers for the duration, the bitrate and the resolution.
+public abstract class VideoFormat extends Header implements HeaderFormat, FormatObject
+{
+	////////////////////////////////////////////////
+	// Member
+	////////////////////////////////////////////////
+
+	private File videoFile;
+	// Milliseconds
+	private long duration;
+	// Bytes per second as res@bitrate
+	private long bitrate;
+	private int width;
+	private int height;
+
+	////////////////////////////////////////////////
+	// Constroctor
+	////////////////////////////////////////////////
+	
+	public VideoFormat()
+	{
+		this(null);
+	}
+	
+	public VideoFormat(File file)
+	{
+		videoFile = file;
+		duration = -1;
+		bitrate = -1;
+		width = 0;
+		height = 0;
+	}
+
+	////////////////////////////////////////////////
+	// probe
+	////////////////////////////////////////////////
+	
+	protected abstract void parse(ProbeReader reader) throws IOException;
+	
+	// Call it in the constructor of the subclass.
+	protected boolean probe(FormatHeader header)
+	{
+		ProbeReader reader = new ProbeReader(header);
+		try {
+			parse(reader);
+		}
+		catch (ProbeReader.BudgetExceededException e) {
+			// The values which are found until now are used.
+			Debug.message(e.getMessage() + " (" + header.getFile() + ")");
+		}
+		catch (Exception e) {
+			Debug.warning(e);
+			return false;
+		}
+		finally {
+			reader.close();
+		}
+		if (bitrate < 0 && 0 < duration)
+			bitrate = (reader.length() * 1000) / duration;
+		return true;
+	}
+	
+	////////////////////////////////////////////////
+	// Duration/Bitrate/Resolution
+	////////////////////////////////////////////////
+	
+	protected void setDuration(long msec)
+	{
+		duration = msec;
+	}
+	
+	public long getDuration()
+	{
+		return duration;
+	}
+	
+	protected void setBitrate(long bytesPerSec)
+	{
+		bitrate = bytesPerSec;
+	}
+	
+	public long getBitrate()
+	{
+		return bitrate;
+	}
+	
+	protected void setResolution(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+	}
+	
+	public int getWidth()
+	{
+		return width;
+	}
+	
+	public int getHeight()
+	{
+		return height;
+	}
+	
+	// Returns the duration as H+:MM:SS.F+ of res@duration.
+	public final static String getDurationString(long msec)
+	{
+		long sec = msec / 1000;
+		String mm = Long.toString((sec / 60) % 60);
+		String ss = Long.toString(sec % 60);
+		String fff = Long.toString(1000 + (msec % 1000)).substring(1);
+		return Long.toString(sec / 3600) + ":" + ((mm.length() < 2) ? "0" : "") + mm + ":" + ((ss.length() < 2) ? "0" : "") + ss + "." + fff;
+	}
+	
+	////////////////////////////////////////////////
+	// Abstract Methods
+	////////////////////////////////////////////////
+	
+	public abstract boolean equals(FormatHeader header);
+	public abstract FormatObject createObject(FormatHeader header);
+	public abstract String getMimeType();
+	
+	public boolean equals(File file)
+	{
+		return equals(new FormatHeader(file));
+	}
+	
+	public FormatObject createObject(File file)
+	{
+		return createObject(new FormatHeader(file));
+	}
+	
+	public String getMediaClass()
+	{
+		return "object.item.videoItem.movie";
+	}
+	
+	public AttributeList getAttributeList()
+	{
+		AttributeList attrList = new AttributeList();
+		
+		try {
+			// Size 
+			long fsize = videoFile.length();
+			attrList.add(new Attribute(ItemNode.SIZE, Long.toString(fsize)));
+			
+			// Duration
+			if (0 < duration)
+				attrList.add(new Attribute(ItemNode.DURATION, getDurationString(duration)));
+			
+			// Bitrate
+			if (0 < bitrate)
+				attrList.add(new Attribute(ItemNode.BITRATE, Long.toString(bitrate)));
+			
+			// Resolution (Width x Height)
+			if (0 < width && 0 < height)
+				attrList.add(new Attribute(ItemNode.RESOLUTION, Integer.toString(width) + "x" + Integer.toString(height)));
+		}
+		catch (Exception e) {
+			Debug.warning(e);
+		}
+		
+		return attrList;	
+	}
+	
+	public String getTitle()
+	{
+		String fname = videoFile.getName();
+		int idx = fname.lastIndexOf(".");
+		if (idx < 0)
+			return "";
+		String title = fname.substring(0, idx);
+		return title;
+	}
+	
+	public String getCreator()
+	{
+		return "";
+	}
+}
@@ -12,12 +12,19 @@
 *		- first revision.
 *	01/28/04
 *		- Added file and timestamp parameters.
+*	10/17/26
+*		- Added setAlbumArt() to set upnp:albumArtURI and the thumbnail res.
+*		- Added DURATION and BITRATE.
+*		- Added getContentFile().
+*		- Changed setAlbumArt() to use the thumbnail profiles only for the images within 160x160.
+*		- Added the thumbnail URL of setAlbumArt() which is published as JPEG_TN with the original image.
 *
 ******************************************************************/
 
 package org.cybergarage.upnp.std.av.server.object.item;
 
 import java.io.InputStream;
+import java.io.File;
 import java.util.Date;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -44,6 +51,19 @@ public class ItemNode extends ContentNode
 	public final static String IMPORT_URI = "importUri";
 	public final static String COLOR_DEPTH = "colorDepth";
 	public final static String RESOLUTION = "resolution";
+	public final static String DURATION = "duration";
+	public final static String BITRATE = "bitrate";
+	
+	public final static String DLNA_PROFILE_ID = "dlna:profileID";
+	public final static String JPEG_TN = "JPEG_TN";
+	public final static String JPEG_SM = "JPEG_SM";
+	public final static String JPEG_MED = "JPEG_MED";
+	public final static String JPEG_LRG = "JPEG_LRG";
+	public final static String PNG_TN = "PNG_TN";
+	public final static String PNG_LRG = "PNG_LRG";
+	
+	public final static int THUMBNAIL_MAX_WIDTH = 160;
+	public final static int THUMBNAIL_MAX_HEIGHT = 160;
 	
 	////////////////////////////////////////////////
 	// Constroctor
@@ -218,6 +238,127 @@ public class ItemNode extends ContentNode
 		return getPropertyValue(UPnP.ALBUMART_URI);
 	}
 	
+	private final static boolean isResolutionWithin(int width, int height, int maxWidth, int maxHeight)
+	{
+		if (width <= 0 || height <= 0)
+			return false;
+		return (width <= maxWidth && height <= maxHeight) ? true : false;
+	}
+	
+	// Returns the DLNA profile of the image which has the resolution, or "" when the resolution is unknown or too large.
+	// The thumbnail profiles such as JPEG_TN are used only when the image is within 160x160.
+	public final static String getImageProfileID(String mimeType, int width, int height)
+	{
+		if (mimeType.equals("image/jpeg") == true) {
+			if (isResolutionWithin(width, height, THUMBNAIL_MAX_WIDTH, THUMBNAIL_MAX_HEIGHT) == true)
+				return JPEG_TN;
+			if (isResolutionWithin(width, height, 640, 480) == true)
+				return JPEG_SM;
+			if (isResolutionWithin(width, height, 1024, 768) == true)
+				return JPEG_MED;
+			if (isResolutionWithin(width, height, 4096, 4096) == true)
+				return JPEG_LRG;
+			return "";
+		}
+		if (mimeType.equals("image/png") == true) {
+			if (isResolutionWithin(width, height, THUMBNAIL_MAX_WIDTH, THUMBNAIL_MAX_HEIGHT) == true)
+				return PNG_TN;
+			if (isResolutionWithin(width, height, 4096, 4096) == true)
+				return PNG_LRG;
+			return "";
+		}
+		return "";
+	}
+	
+	// Returns the resolution which is scaled to fit within maxWidth x maxHeight keeping the aspect ratio,
+	// or 0x0 when the resolution is unknown.
+	public final static int[] getThumbnailResolution(int width, int height, int maxWidth, int maxHeight)
+	{
+		if (width <= 0 || height <= 0)
+			return new int[] {0, 0};
+		if (width <= maxWidth && height <= maxHeight)
+			return new int[] {width, height};
+		double scale = Math.min((double)maxWidth / (double)width, (double)maxHeight / (double)height);
+		int thumbWidth = Math.max(1, (int)Math.round(width * scale));
+		int thumbHeight = Math.max(1, (int)Math.round(height * scale));
+		return new int[] {Math.min(thumbWidth, maxWidth), Math.min(thumbHeight, maxHeight)};
+	}
+	
+	private void addImageResource(String url, String mimeType, String profileID, int width, int height)
+	{
+		String additionalInfo = (0 < profileID.length()) ? "DLNA.ORG_PN=" + profileID : "*";
+		ContentProperty resProp = new ContentProperty(DIDLLite.RES, url);
+		resProp.setAttribute(DIDLLite.RES_PROTOCOLINFO, "http-get:*:" + mimeType + ":" + additionalInfo);
+		if (0 < width && 0 < height)
+			resProp.setAttribute(RESOLUTION, Integer.toString(width) + "x" + Integer.toString(height));
+		addProperty(resProp);
+	}
+	
+	private String albumArtURL = null;
+	private String albumArtThumbnailURL = null;
+	
+	// Sets upnp:albumArtURI and the res of the image. Call it after setResource() which sets the first res.
+	// The resolution of the image is 0 when it is unknown. thumbnailURL is the JPEG_TN of ThumbnailEncoder
+	// which is published as upnp:albumArtURI with another res, or null when no thumbnail is available.
+	public void setAlbumArt(String url, String mimeType, int width, int height, String thumbnailURL)
+	{
+		removeAlbumArt();
+		
+		String profileID = getImageProfileID(mimeType, width, height);
+		// The image is the thumbnail as it is.
+		if (profileID.equals(JPEG_TN) == true || profileID.equals(PNG_TN) == true)
+			thumbnailURL = null;
+		
+		addImageResource(url, mimeType, profileID, width, height);
+		if (thumbnailURL != null) {
+			int thumbSize[] = getThumbnailResolution(width, height, THUMBNAIL_MAX_WIDTH, THUMBNAIL_MAX_HEIGHT);
+			addImageResource(thumbnailURL, ThumbnailEncoder.MIME_TYPE, JPEG_TN, thumbSize[0], thumbSize[1]);
+			setAlbumArtURI(thumbnailURL);
+			setPropertyAttribure(UPnP.ALBUMART_URI, DLNA_PROFILE_ID, JPEG_TN);
+		}
+		else {
+			setAlbumArtURI(url);
+			if (0 < profileID.length())
+				setPropertyAttribure(UPnP.ALBUMART_URI, DLNA_PROFILE_ID, profileID);
+		}
+		
+		albumArtURL = url;
+		albumArtThumbnailURL = thumbnailURL;
+	}
+	
+	public void setAlbumArt(String url, String mimeType, int width, int height)
+	{
+		setAlbumArt(url, mimeType, width, height, null);
+	}
+	
+	public void setAlbumArt(String url, String mimeType)
+	{
+		setAlbumArt(url, mimeType, 0, 0, null);
+	}
+	
+	private boolean isAlbumArtURL(String url)
+	{
+		if (url == null)
+			return false;
+		return (url.equals(albumArtURL) == true || url.equals(albumArtThumbnailURL) == true || url.equals(getAlbumArtURI()) == true) ? true : false;
+	}
+	
+	public void removeAlbumArt()
+	{
+		String url = getAlbumArtURI();
+		if (url.length() <= 0 && albumArtURL == null)
+			return;
+		for (int n=getNProperties()-1; 0<=n; n--) {
+			ContentProperty prop = getProperty(n);
+			if (prop.getName().equals(DIDLLite.RES) == true && isAlbumArtURL(prop.getValue()) == true)
+				removeProperty(prop);
+		}
+		if (0 < url.length())
+			removeProperty(UPnP.ALBUMART_URI);
+		albumArtURL = null;
+		albumArtThumbnailURL = null;
+	}
+	
 	////////////////////////////////////////////////
 	// isXXXClass
 	////////////////////////////////////////////////
@@ -355,6 +496,28 @@ public class ItemNode extends ContentNode
 		return null;
 	}
 
+	// Returns the file of the content to read the ranges from the positions, or null when the content is only a stream.
+	public File getContentFile()
+	{
+		return null;
+	}
+
+	public String getAlbumArtMimeType()
+	{
+		return "";
+	}
+	
+	public byte[] getAlbumArtData()
+	{
+		return null;
+	}
+	
+	// Returns the key of the album art in ThumbnailCache which is changed when the content is modified.
+	public String getAlbumArtCacheKey()
+	{
+		return getID();
+	}
+	
 	public String getMimeType()
 	{
 		return "*/*";
@@ -10,6 +10,11 @@
 *
 *	02/12/04
 *		- first revision.
+*	10/17/26
+*		- Added the last time stamp and length of the file to detect the modified files without probing the format.
+*		- Added the format of the item not to detect it again in getMimeType().
+*		- Added the album art which is read from the offset in the file.
+*		- Added getContentFile() to return the ranges of the file.
 *
 ******************************************************************/
 
@@ -63,6 +68,137 @@ public class FileItemNode extends ItemNode
 		return itemFileTimeStamp;
 	}
 	
+	////////////////////////////////////////////////
+	// Last File Status
+	////////////////////////////////////////////////
+	
+	private long lastFileTimeStamp = 0;
+	private long lastFileLength = 0;
+	
+	public void setLastFileStatus(long timeStamp, long length)
+	{
+		lastFileTimeStamp = timeStamp;
+		lastFileLength = length;
+	}
+	
+	public long getLastFileTimeStamp()
+	{
+		return lastFileTimeStamp;
+	}
+
+	public long getLastFileLength()
+	{
+		return lastFileLength;
+	}
+	
+	public boolean isFileStatusChanged(long timeStamp, long length)
+	{
+		if (lastFileTimeStamp != timeStamp || lastFileLength != length)
+			return true;
+		return false;
+	}
+	
+	////////////////////////////////////////////////
+	// Format
+	////////////////////////////////////////////////
+	
+	private Format itemFormat = null;
+	
+	public void setFormat(Format format)
+	{
+		itemFormat = format;
+	}
+	
+	public Format getFormat()
+	{
+		return itemFormat;
+	}
+	
+	////////////////////////////////////////////////
+	// Album Art
+	////////////////////////////////////////////////
+	
+	public final static int MAX_ALBUMART_LENGTH = 16 * 1024 * 1024;
+	
+	private String albumArtMimeType = "";
+	private long albumArtOffset = -1;
+	private int albumArtLength = 0;
+	
+	// offset is -1 when the image isn't stored in the file as it is, and the image is extracted with the format again.
+	public void setAlbumArtSource(String mimeType, long offset, int length)
+	{
+		albumArtMimeType = (mimeType != null) ? mimeType : "";
+		albumArtOffset = offset;
+		albumArtLength = length;
+	}
+	
+	public boolean hasAlbumArt()
+	{
+		return (0 < albumArtMimeType.length()) ? true : false;
+	}
+	
+	public long getAlbumArtOffset()
+	{
+		return albumArtOffset;
+	}
+	
+	public int getAlbumArtLength()
+	{
+		return albumArtLength;
+	}
+	
+	public String getAlbumArtMimeType()
+	{
+		return albumArtMimeType;
+	}
+	
+	private byte[] readAlbumArt()
+	{
+		if (albumArtLength <= 0 || MAX_ALBUMART_LENGTH < albumArtLength)
+			return null;
+		byte data[] = new byte[albumArtLength];
+		RandomAccessFile in = null;
+		try {
+			in = new RandomAccessFile(itemFile, "r");
+			in.seek(albumArtOffset);
+			in.readFully(data);
+		}
+		catch (Exception e) {
+			Debug.warning(e);
+			return null;
+		}
+		finally {
+			if (in != null) {
+				try {
+					in.close();
+				}
+				catch (IOException e) {}
+			}
+		}
+		return data;
+	}
+	
+	// Reads only the image from the file.
+	public byte[] getAlbumArtData()
+	{
+		if (hasAlbumArt() == false || itemFile == null)
+			return null;
+		if (0 <= albumArtOffset)
+			return readAlbumArt();
+		Format format = getFormat();
+		if (format == null)
+			return null;
+		FormatObject formatObj = FormatList.createObject(format, new FormatHeader(itemFile));
+		if (!(formatObj instanceof AlbumArtFormatObject))
+			return null;
+		return ((AlbumArtFormatObject)formatObj).getAlbumArtData();
+	}
+	
+	public String getAlbumArtCacheKey()
+	{
+		return itemFile + ":" + lastFileTimeStamp + ":" + lastFileLength;
+	}
+	
 	public boolean equals(File file)
 	{
 		if (itemFile == null)
@@ -100,15 +236,23 @@ public class FileItemNode extends ItemNode
 		return null;
 	}
 
+	public File getContentFile()
+	{
+		return itemFile;
+	}
+
 	public String getMimeType()
 	{
-		ContentDirectory cdir = getContentDirectory();
-		File itemFile = getFile();
-		Format itemFormat = cdir.getFormat(itemFile);
-		if (itemFormat == null) {
-			return "*/*";
+		// The format is detected only once, and is usually set when the item is created.
+		Format format = itemFormat;
+		if (format == null) {
+			ContentDirectory cdir = getContentDirectory();
+			format = cdir.getFormat(getFile());
+			if (format == null)
+				return "*/*";
+			itemFormat = format;
 		}
-		return itemFormat.getMimeType();
+		return format.getMimeType();
 	}
 }
 
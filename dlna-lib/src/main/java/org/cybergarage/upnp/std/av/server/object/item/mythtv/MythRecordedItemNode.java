@@ -13,6 +13,8 @@
 *	08/10/04
 *		- Changed the mime type to video/mpeg.
 *		- Added the size attribure to the protocolInfo.
+*	10/17/26
+*		- Added getContentFile() to return the recorded file with ContentExportResponse.
 *
 ******************************************************************/
 
@@ -135,7 +137,12 @@ public class MythRecordedItemNode extends ItemNode
 		return null;
 	}
 
-	public String getMimeType()
+	public File getContentFile()
+	{
+		return getRecordedInfo().getFile();
+	}
+
+		public String getMimeType()
 	{
 		return MIME_TYPE;
 	}
@@ -0,0 +1,35 @@
+/******************************************************************
+*
+*	MediaServer for CyberLink
+*
+*	Copyright (C) Satoshi Konno 2003-2004
+*
+*	File: ClassSearchCap.java
+*
+*	Revision;
+*
+*	10/17/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.std.av.server.object.search;
+
+import org.cybergarage.upnp.std.av.server.object.*;
+
+public class ClassSearchCap implements SearchCap 
+{
+	public ClassSearchCap() 
+	{
+	}
+	
+	public String getPropertyName() 
+	{
+		return SearchCriteria.CLASS;
+	}
+
+	public boolean compare(SearchCriteria searchCri, ContentNode conNode)
+	{
+		return searchCri.compare(conNode.getUPnPClass());
+	}
+}
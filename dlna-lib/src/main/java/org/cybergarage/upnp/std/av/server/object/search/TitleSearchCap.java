@@ -10,6 +10,8 @@
 *
 *	08/21/04
 *		- first revision.
+*	10/17/26
+*		- Changed compare() to use SearchCriteria::compare() which fixes doesNotContain.
 *
 ******************************************************************/
 
@@ -30,23 +32,6 @@ public class TitleSearchCap implements SearchCap
 
 	public boolean compare(SearchCriteria searchCri, ContentNode conNode)
 	{
-		String searchCriTitle = searchCri.getValue();
-		String conTitle = conNode.getTitle();
-		if (searchCriTitle == null|| conTitle == null)
-				return false;
-		int cmpRet = conTitle.compareTo(searchCriTitle);
-		if (cmpRet == 0 && (searchCri.isEQ() || searchCri.isLE() || searchCri.isGE()))
-				return true;
-		else if (cmpRet < 0 && searchCri.isLT())
-			return true;
-		else if (0 < cmpRet && searchCri.isGT())
-			return true;
-		int idxRet = conTitle.indexOf(searchCriTitle);
-		if (0 <= idxRet && searchCri.isContains())
-			return true;
-		else if (searchCri.isDoesNotContain())
-			return true;
-		return false;
+		return searchCri.compare(conNode.getTitle());
 	}
 }
-
@@ -10,6 +10,8 @@
 *
 *	02/03/04
 *		- first revision.
+*	10/17/26
+*		- Added getSortKey() of SortKeyCap.
 *
 ******************************************************************/
 
@@ -19,7 +21,7 @@ import org.cybergarage.upnp.std.av.server.DC;
 import org.cybergarage.upnp.std.av.server.object.*;
 import org.cybergarage.upnp.std.av.server.object.item.*;
 
-public class DCDateSortCap implements SortCap 
+public class DCDateSortCap implements SortKeyCap 
 {
 	public DCDateSortCap() 
 	{
@@ -44,5 +46,12 @@ public class DCDateSortCap implements SortCap
 			return 0;
 		return (itemTime1 < itemTime2) ? -1 : 1;
 	}
+
+	public Comparable getSortKey(ContentNode conNode)
+	{
+		if (!(conNode instanceof ItemNode))
+			return null;
+		return Long.valueOf(((ItemNode)conNode).getDateTime());
+	}
 }
 
@@ -10,6 +10,8 @@
 *
 *	02/03/04
 *		- first revision.
+*	10/17/26
+*		- Added getSortKey() of SortKeyCap.
 *
 ******************************************************************/
 
@@ -18,7 +20,7 @@ package org.cybergarage.upnp.std.av.server.object.sort;
 import org.cybergarage.upnp.std.av.server.DC;
 import org.cybergarage.upnp.std.av.server.object.*;
 
-public class DCTitleSortCap implements SortCap 
+public class DCTitleSortCap implements SortKeyCap 
 {
 	public DCTitleSortCap() 
 	{
@@ -39,5 +41,10 @@ public class DCTitleSortCap implements SortCap
 			return 0;
 		return title1.compareTo(title2);
 	}
+
+	public Comparable getSortKey(ContentNode conNode)
+	{
+		return conNode.getTitle();
+	}
 }
 
@@ -10,6 +10,8 @@
 *
 *	02/03/04
 *		- first revision.
+*	10/17/26
+*		- Added getSortKey() of SortKeyCap.
 *
 ******************************************************************/
 
@@ -18,7 +20,7 @@ package org.cybergarage.upnp.std.av.server.object.sort;
 import org.cybergarage.upnp.std.av.server.UPnP;
 import org.cybergarage.upnp.std.av.server.object.*;
 
-public class UPnPClassSortCap implements SortCap 
+public class UPnPClassSortCap implements SortKeyCap 
 {
 	public UPnPClassSortCap() 
 	{
@@ -39,5 +41,10 @@ public class UPnPClassSortCap implements SortCap
 			return 0;
 		return upnpClass1.compareTo(upnpClass2);
 	}
+
+	public Comparable getSortKey(ContentNode conNode)
+	{
+		return conNode.getUPnPClass();
+	}
 }
 